@@ -0,0 +1,77 @@
+package me.synapsed.aws.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import me.synapsed.aws.lambda.CreateSubscriptionHandler;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Request handling cost of {@link CreateSubscriptionHandler} up to the Stripe
+ * call: idempotent retries that resolve to an existing subscription, and
+ * requests rejected by price validation. Checkout session creation itself is a
+ * network call to Stripe and is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreateSubscriptionHandlerBenchmark {
+    private static final String DID = "did:key:benchmark-subscriber";
+
+    private CreateSubscriptionHandler handler;
+    private Context context;
+    private APIGatewayProxyRequestEvent idempotentRetry;
+    private APIGatewayProxyRequestEvent invalidPrice;
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient()
+            .createTable("subscriptions", "did", "idempotencyKey")
+            .createTable("proofs", "did", "proof");
+        Map<String, AttributeValue> subscription = new HashMap<>();
+        subscription.put("did", AttributeValue.builder().s(DID).build());
+        subscription.put("idempotencyKey", AttributeValue.builder().s("benchmark-key").build());
+        subscription.put("stripeSubscriptionId", AttributeValue.builder().s("sub_benchmark").build());
+        subscription.put("status", AttributeValue.builder().s("active").build());
+        dynamoDb.seed("subscriptions", subscription);
+
+        handler = new CreateSubscriptionHandler(dynamoDb, "subscriptions", "proofs",
+            "sk_test_benchmark", "price_basic,price_pro");
+        context = new BenchmarkContext();
+
+        idempotentRetry = new APIGatewayProxyRequestEvent().withHttpMethod("POST").withBody(
+            "{\"did\":\"" + DID + "\",\"priceId\":\"price_pro\",\"idempotencyKey\":\"benchmark-key\","
+            + "\"metadata_plan\":\"pro\",\"metadata_source\":\"benchmark\"}");
+        invalidPrice = new APIGatewayProxyRequestEvent().withHttpMethod("POST").withBody(
+            "{\"did\":\"" + DID + "\",\"priceId\":\"price_unknown\"}");
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent idempotentRetry() {
+        return handler.handleRequest(idempotentRetry, context);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent invalidPrice() {
+        return handler.handleRequest(invalidPrice, context);
+    }
+}
@@ -0,0 +1,189 @@
+package me.synapsed.aws.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+/**
+ * DynamoDB fake backed by concurrent maps. It understands the subset of the API the
+ * handlers use: key lookups, puts, deletes, "SET a = :a, b = :b" updates,
+ * attribute_exists/attribute_not_exists conditions and equality key conditions
+ * joined by AND, with Limit and projection expressions. Queries scan the table,
+ * which is fine for the small data sets the benchmarks use.
+ */
+public class InMemoryDynamoDbClient implements DynamoDbClient {
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+
+    private static final class Table {
+        private final List<String> keyAttributes;
+        private final Map<List<AttributeValue>, Map<String, AttributeValue>> items = new ConcurrentHashMap<>();
+
+        private Table(List<String> keyAttributes) {
+            this.keyAttributes = keyAttributes;
+        }
+
+        private List<AttributeValue> keyOf(Map<String, AttributeValue> item) {
+            List<AttributeValue> key = new ArrayList<>(keyAttributes.size());
+            for (String attribute : keyAttributes) {
+                key.add(item.get(attribute));
+            }
+            return key;
+        }
+    }
+
+    public InMemoryDynamoDbClient createTable(String tableName, String... keyAttributes) {
+        tables.put(tableName, new Table(List.of(keyAttributes)));
+        return this;
+    }
+
+    public void seed(String tableName, Map<String, AttributeValue> item) {
+        Table table = table(tableName);
+        table.items.put(table.keyOf(item), new HashMap<>(item));
+    }
+
+    public int size(String tableName) {
+        return table(tableName).items.size();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> item = table.items.get(table.keyOf(request.key()));
+        GetItemResponse.Builder response = GetItemResponse.builder();
+        if (item != null) {
+            response.item(new HashMap<>(item));
+        }
+        return response.build();
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        Table table = table(request.tableName());
+        List<AttributeValue> key = table.keyOf(request.item());
+        checkCondition(request.conditionExpression(), table.items.get(key));
+        table.items.put(key, new HashMap<>(request.item()));
+        return PutItemResponse.builder().build();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        Table table = table(request.tableName());
+        List<AttributeValue> key = table.keyOf(request.key());
+        synchronized (table) {
+            Map<String, AttributeValue> existing = table.items.get(key);
+            checkCondition(request.conditionExpression(), existing);
+            Map<String, AttributeValue> item = existing != null ? new HashMap<>(existing) : new HashMap<>(request.key());
+            String expression = request.updateExpression().trim();
+            if (!expression.startsWith("SET ")) {
+                throw new UnsupportedOperationException("Unsupported update expression: " + expression);
+            }
+            for (String assignment : expression.substring(4).split(",")) {
+                String[] parts = assignment.split("=");
+                item.put(parts[0].trim(), request.expressionAttributeValues().get(parts[1].trim()));
+            }
+            table.items.put(key, item);
+        }
+        return UpdateItemResponse.builder().build();
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        Table table = table(request.tableName());
+        table.items.remove(table.keyOf(request.key()));
+        return DeleteItemResponse.builder().build();
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> conditions = new LinkedHashMap<>();
+        for (String condition : request.keyConditionExpression().split("(?i)\\s+AND\\s+")) {
+            String[] parts = condition.split("=");
+            conditions.put(parts[0].trim(), request.expressionAttributeValues().get(parts[1].trim()));
+        }
+        int limit = request.limit() != null ? request.limit() : Integer.MAX_VALUE;
+        List<Map<String, AttributeValue>> matches = new ArrayList<>();
+        for (Map<String, AttributeValue> item : table.items.values()) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            boolean matched = true;
+            for (Map.Entry<String, AttributeValue> condition : conditions.entrySet()) {
+                if (!condition.getValue().equals(item.get(condition.getKey()))) {
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                matches.add(project(item, request.projectionExpression()));
+            }
+        }
+        return QueryResponse.builder().items(matches).count(matches.size()).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Table table(String tableName) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            throw ResourceNotFoundException.builder().message("Table not found: " + tableName).build();
+        }
+        return table;
+    }
+
+    private static void checkCondition(String condition, Map<String, AttributeValue> existing) {
+        if (condition == null) {
+            return;
+        }
+        boolean passed;
+        if (condition.startsWith("attribute_not_exists(")) {
+            passed = existing == null;
+        } else if (condition.startsWith("attribute_exists(")) {
+            passed = existing != null;
+        } else {
+            throw new UnsupportedOperationException("Unsupported condition expression: " + condition);
+        }
+        if (!passed) {
+            throw ConditionalCheckFailedException.builder().message("The conditional request failed").build();
+        }
+    }
+
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, String projection) {
+        if (projection == null) {
+            return new HashMap<>(item);
+        }
+        Map<String, AttributeValue> projected = new HashMap<>();
+        for (String attribute : projection.split(",")) {
+            AttributeValue value = item.get(attribute.trim());
+            if (value != null) {
+                projected.put(attribute.trim(), value);
+            }
+        }
+        return projected;
+    }
+}
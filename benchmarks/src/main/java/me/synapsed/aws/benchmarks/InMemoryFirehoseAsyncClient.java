@@ -0,0 +1,70 @@
+package me.synapsed.aws.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.services.firehose.FirehoseAsyncClient;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchRequest;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponse;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponseEntry;
+import software.amazon.awssdk.services.firehose.model.PutRecordRequest;
+import software.amazon.awssdk.services.firehose.model.PutRecordResponse;
+import software.amazon.awssdk.services.firehose.model.Record;
+
+/**
+ * Firehose fake that accepts every record and only counts records and bytes.
+ * Calls complete immediately, so benchmarks measure dispatch overhead rather
+ * than network latency.
+ */
+public class InMemoryFirehoseAsyncClient implements FirehoseAsyncClient {
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+
+    @Override
+    public CompletableFuture<PutRecordResponse> putRecord(PutRecordRequest request) {
+        calls.incrementAndGet();
+        accept(request.record());
+        return CompletableFuture.completedFuture(PutRecordResponse.builder().recordId(Long.toString(records.get())).build());
+    }
+
+    @Override
+    public CompletableFuture<PutRecordBatchResponse> putRecordBatch(PutRecordBatchRequest request) {
+        calls.incrementAndGet();
+        List<PutRecordBatchResponseEntry> responses = new ArrayList<>(request.records().size());
+        for (Record record : request.records()) {
+            accept(record);
+            responses.add(PutRecordBatchResponseEntry.builder().recordId(Long.toString(records.get())).build());
+        }
+        return CompletableFuture.completedFuture(
+            PutRecordBatchResponse.builder().failedPutCount(0).requestResponses(responses).build());
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    private void accept(Record record) {
+        records.incrementAndGet();
+        bytes.addAndGet(record.data().asByteArrayUnsafe().length);
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
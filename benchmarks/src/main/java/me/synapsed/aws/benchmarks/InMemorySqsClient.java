@@ -0,0 +1,57 @@
+package me.synapsed.aws.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+
+/**
+ * SQS fake that accepts every message and only counts them, so the benchmark
+ * measures the handler rather than a growing queue.
+ */
+public class InMemorySqsClient implements SqsClient {
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public SendMessageResponse sendMessage(SendMessageRequest request) {
+        long id = sent.incrementAndGet();
+        bytes.addAndGet(request.messageBody().length());
+        return SendMessageResponse.builder().messageId(Long.toString(id)).build();
+    }
+
+    @Override
+    public SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request) {
+        List<SendMessageBatchResultEntry> successful = new ArrayList<>(request.entries().size());
+        for (SendMessageBatchRequestEntry entry : request.entries()) {
+            long id = sent.incrementAndGet();
+            bytes.addAndGet(entry.messageBody().length());
+            successful.add(SendMessageBatchResultEntry.builder().id(entry.id()).messageId(Long.toString(id)).build());
+        }
+        return SendMessageBatchResponse.builder().successful(successful).build();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
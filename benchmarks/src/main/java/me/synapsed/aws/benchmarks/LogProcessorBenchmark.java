@@ -0,0 +1,82 @@
+package me.synapsed.aws.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+
+import me.synapsed.aws.lambda.LogProcessor;
+
+/**
+ * Per-batch cost of {@link LogProcessor} enriching Kinesis log records and
+ * forwarding them to an in-memory Firehose, with and without record aggregation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogProcessorBenchmark {
+    @Param({"1", "100", "500"})
+    public int recordsPerBatch;
+
+    @Param({"0", "262144"})
+    public int aggregationMaxBytes;
+
+    private LogProcessor logProcessor;
+    private InMemoryFirehoseAsyncClient firehoseClient;
+    private Context context;
+    private KinesisEvent event;
+
+    @Setup
+    public void setUp() {
+        firehoseClient = new InMemoryFirehoseAsyncClient();
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", "benchmark-delivery-stream",
+            "RECORD_AGGREGATION_MAX_BYTES", String.valueOf(aggregationMaxBytes),
+            // Every iteration sends the same batch, which deduplication would skip entirely
+            "DEDUP_WINDOW_RECORDS", "0"));
+        context = new BenchmarkContext();
+
+        List<KinesisEvent.KinesisEventRecord> records = new ArrayList<>(recordsPerBatch);
+        for (int i = 0; i < recordsPerBatch; i++) {
+            String log = "{\"level\":\"" + (i % 10 == 0 ? "ERROR" : "INFO") + "\",\"service\":\"relay-server\","
+                + "\"message\":\"Forwarding offer from peer-" + i + " to peer-" + (i + 1) + "\","
+                + "\"did\":\"did:key:benchmark-" + i + "\",\"latencyMs\":" + (i % 250) + "}";
+            KinesisEvent.Record kinesis = new KinesisEvent.Record();
+            kinesis.setData(ByteBuffer.wrap(log.getBytes(StandardCharsets.UTF_8)));
+            kinesis.setSequenceNumber(String.format("495903382714902566085596925383615710959215759891365%05d", i));
+            kinesis.setPartitionKey("relay-server");
+            KinesisEvent.KinesisEventRecord record = new KinesisEvent.KinesisEventRecord();
+            record.setKinesis(kinesis);
+            record.setEventID("shardId-000000000000:" + kinesis.getSequenceNumber());
+            records.add(record);
+        }
+        event = new KinesisEvent();
+        event.setRecords(records);
+    }
+
+    @Benchmark
+    public long processBatch() {
+        logProcessor.handleRequest(event, context);
+        return firehoseClient.getRecords();
+    }
+}
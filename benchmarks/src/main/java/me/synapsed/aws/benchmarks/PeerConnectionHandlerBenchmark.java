@@ -0,0 +1,98 @@
+package me.synapsed.aws.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import me.synapsed.aws.lambda.PeerConnectionHandler;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Connection lifecycle throughput of {@link PeerConnectionHandler} for a peer
+ * that is already connected: reconnects, status checks and heartbeats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PeerConnectionHandlerBenchmark {
+    private static final String DID = "did:key:benchmark-peer";
+    private static final String PROOF = "benchmark-proof";
+
+    private PeerConnectionHandler handler;
+    private Context context;
+    private APIGatewayProxyRequestEvent connect;
+    private APIGatewayProxyRequestEvent status;
+    private APIGatewayProxyRequestEvent heartbeat;
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient()
+            .createTable("proofs", "did", "proof")
+            .createTable("peers", "peerId");
+        Map<String, AttributeValue> proof = new HashMap<>();
+        proof.put("did", AttributeValue.builder().s(DID).build());
+        proof.put("proof", AttributeValue.builder().s(PROOF).build());
+        proof.put("expiresAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis() + 86_400_000L)).build());
+        dynamoDb.seed("proofs", proof);
+
+        Map<String, String> env = new HashMap<>();
+        env.put("SUBSCRIPTION_PROOFS_TABLE", "proofs");
+        env.put("PEER_CONNECTIONS_TABLE", "peers");
+        handler = new PeerConnectionHandler(dynamoDb, env);
+        context = new BenchmarkContext();
+
+        connect = request("connect");
+        status = request("status");
+        heartbeat = request("heartbeat");
+        // Every measured connect is a reconnect of this connection
+        handler.handleRequest(connect, context);
+    }
+
+    private static APIGatewayProxyRequestEvent request(String action) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-DID", DID);
+        headers.put("X-Subscription-Proof", PROOF);
+        Map<String, String> pathParameters = new HashMap<>();
+        pathParameters.put("action", action);
+        APIGatewayProxyRequestEvent.ProxyRequestContext requestContext = new APIGatewayProxyRequestEvent.ProxyRequestContext()
+            .withIdentity(new APIGatewayProxyRequestEvent.RequestIdentity().withSourceIp("203.0.113.10"));
+        return new APIGatewayProxyRequestEvent()
+            .withHttpMethod("POST")
+            .withHeaders(headers)
+            .withPathParameters(pathParameters)
+            .withRequestContext(requestContext);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent reconnect() {
+        return handler.handleRequest(connect, context);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent status() {
+        return handler.handleRequest(status, context);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent heartbeat() {
+        return handler.handleRequest(heartbeat, context);
+    }
+}
@@ -0,0 +1,128 @@
+package me.synapsed.aws.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import me.synapsed.aws.lambda.RelayServer;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Signaling throughput of {@link RelayServer} for single offers, ICE candidates
+ * and batches, with DynamoDB and SQS replaced by in-memory fakes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelayServerBenchmark {
+    private static final String DID = "did:key:benchmark-caller";
+    private static final String PROOF = "benchmark-proof";
+    private static final String PEER_ID = "benchmark-peer";
+    private static final String SDP = "v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\n"
+        + "a=group:BUNDLE 0\\r\\nm=application 9 UDP/DTLS/SCTP webrtc-datachannel\\r\\nc=IN IP4 0.0.0.0\\r\\n";
+
+    @Param({"false", "true"})
+    public boolean ephemeralTurnCredentials;
+
+    private RelayServer relayServer;
+    private Context context;
+    private APIGatewayProxyRequestEvent offer;
+    private APIGatewayProxyRequestEvent iceCandidate;
+    private APIGatewayProxyRequestEvent batch;
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDb = new InMemoryDynamoDbClient()
+            .createTable("proofs", "did", "proof")
+            .createTable("peers", "peerId");
+        Map<String, AttributeValue> proof = new HashMap<>();
+        proof.put("did", AttributeValue.builder().s(DID).build());
+        proof.put("proof", AttributeValue.builder().s(PROOF).build());
+        proof.put("expiresAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis() + 86_400_000L)).build());
+        dynamoDb.seed("proofs", proof);
+        long now = System.currentTimeMillis();
+        Map<String, AttributeValue> peer = new HashMap<>();
+        peer.put("peerId", AttributeValue.builder().s(PEER_ID).build());
+        peer.put("did", AttributeValue.builder().s("did:key:benchmark-peer").build());
+        peer.put("status", AttributeValue.builder().s("connected").build());
+        peer.put("connectionId", AttributeValue.builder().s("benchmark-connection").build());
+        peer.put("endpoint", AttributeValue.builder().s("203.0.113.10").build());
+        peer.put("connectedAt", AttributeValue.builder().s(String.valueOf(now)).build());
+        peer.put("expiresAt", AttributeValue.builder().n(String.valueOf(now / 1000 + 86_400)).build());
+        dynamoDb.seed("peers", peer);
+
+        Map<String, String> env = new HashMap<>();
+        env.put("SUBSCRIPTION_PROOFS_TABLE", "proofs");
+        env.put("PEER_CONNECTIONS_TABLE", "peers");
+        env.put("SIGNALING_QUEUE_URL", "https://sqs.us-east-1.amazonaws.com/000000000000/signaling");
+        env.put("STUN_SERVER", "stun:stun.l.google.com:19302");
+        env.put("TURN_SERVER", "turn:turn.synapsed.app:3478,turn:turn.synapsed.app:443");
+        env.put("TURN_USERNAME", "benchmark");
+        env.put("TURN_CREDENTIAL", "benchmark-credential");
+        if (ephemeralTurnCredentials) {
+            env.put("TURN_SHARED_SECRET", "benchmark-shared-secret");
+        }
+        relayServer = new RelayServer(env, dynamoDb, new InMemorySqsClient());
+        context = new BenchmarkContext();
+
+        offer = request("/signaling",
+            "{\"type\":\"offer\",\"peerId\":\"" + PEER_ID + "\",\"fromPeerId\":\"caller\",\"sdp\":\"" + SDP + "\"}");
+        iceCandidate = request("/signaling", "{\"type\":\"ice-candidate\",\"peerId\":\"" + PEER_ID
+            + "\",\"candidate\":\"candidate:1 1 udp 2122260223 192.168.1.2 54321 typ host\"}");
+        StringBuilder messages = new StringBuilder("{\"messages\":[");
+        for (int i = 0; i < 10; i++) {
+            if (i > 0) {
+                messages.append(',');
+            }
+            messages.append("{\"type\":\"ice-candidate\",\"peerId\":\"").append(PEER_ID)
+                .append("\",\"candidate\":\"candidate:").append(i).append(" 1 udp 2122260223 192.168.1.2 5432")
+                .append(i).append(" typ host\"}");
+        }
+        batch = request("/signaling/batch", messages.append("]}").toString());
+    }
+
+    private static APIGatewayProxyRequestEvent request(String path, String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-DID", DID);
+        headers.put("X-Subscription-Proof", PROOF);
+        return new APIGatewayProxyRequestEvent()
+            .withPath(path)
+            .withHttpMethod("POST")
+            .withHeaders(headers)
+            .withBody(body);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent offer() {
+        return relayServer.handleRequest(offer, context);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent iceCandidate() {
+        return relayServer.handleRequest(iceCandidate, context);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent batchOfTenCandidates() {
+        return relayServer.handleRequest(batch, context);
+    }
+}
@@ -0,0 +1,175 @@
+package me.synapsed.aws.lambda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+/**
+ * ICE server configuration handed to WebRTC clients. The server list is
+ * serialized to JSON once, when the handler is constructed, and spliced into
+ * responses and SQS messages as a raw value. When an ephemeral credential
+ * generator is configured, TURN entries carry per-user HMAC credentials that are
+ * appended to the pre-serialized STUN entries for each response; if the shared
+ * secret cannot be loaded the STUN entries are served on their own.
+ */
+public class IceServerConfig {
+    static final String DEFAULT_STUN_SERVER = "stun:stun.l.google.com:19302";
+
+    private final ObjectMapper objectMapper;
+    private final List<String> stunUrls;
+    private final List<String> turnUrls;
+    private final TurnCredentialGenerator ephemeralCredentials;
+    private final String[] quotedTurnUrls;
+    private final Snapshot snapshot;
+
+    /**
+     * An immutable view of the ICE servers together with their serialized form.
+     */
+    public static final class Snapshot {
+        private final List<Map<String, String>> servers;
+        private final String json;
+        private final RawValue rawValue;
+        private final String stunPrefix;
+
+        private Snapshot(List<Map<String, String>> servers, String json, String stunPrefix) {
+            this.servers = servers;
+            this.json = json;
+            this.rawValue = new RawValue(json);
+            this.stunPrefix = stunPrefix;
+        }
+
+        public List<Map<String, String>> getServers() {
+            return servers;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        public RawValue getRawValue() {
+            return rawValue;
+        }
+    }
+
+    /**
+     * @param ephemeralCredentials per-user TURN credentials, or null to use the
+     *                             static TURN_USERNAME and TURN_CREDENTIAL
+     */
+    public IceServerConfig(Map<String, String> env, ObjectMapper objectMapper,
+                           TurnCredentialGenerator ephemeralCredentials) {
+        this.objectMapper = objectMapper;
+        this.stunUrls = parseUrls(env.getOrDefault("STUN_SERVER", DEFAULT_STUN_SERVER), "stun:");
+        this.turnUrls = parseUrls(env.getOrDefault("TURN_SERVER", ""), "turn:");
+        this.ephemeralCredentials = ephemeralCredentials;
+        this.quotedTurnUrls = new String[turnUrls.size()];
+        for (int i = 0; i < quotedTurnUrls.length; i++) {
+            quotedTurnUrls[i] = quote(turnUrls.get(i));
+        }
+        this.snapshot = build(env.getOrDefault("TURN_USERNAME", ""), env.getOrDefault("TURN_CREDENTIAL", ""));
+    }
+
+    private static List<String> parseUrls(String value, String scheme) {
+        List<String> urls = new ArrayList<>();
+        if (value.isEmpty()) {
+            return urls;
+        }
+        for (String url : value.split(",")) {
+            url = url.trim();
+            if (url.startsWith(scheme) && url.contains(":")) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    public Snapshot current() {
+        return snapshot;
+    }
+
+    public boolean hasEphemeralCredentials() {
+        return ephemeralCredentials != null && quotedTurnUrls.length > 0;
+    }
+
+    /**
+     * Returns the serialized ICE server list for the given user. With ephemeral
+     * credentials enabled each TURN entry carries a freshly generated
+     * username/credential pair; otherwise this is the shared snapshot.
+     */
+    public String jsonFor(String userId) {
+        Snapshot current = snapshot;
+        if (!hasEphemeralCredentials()) {
+            return current.json;
+        }
+        TurnCredentialGenerator.Credentials credentials;
+        try {
+            credentials = ephemeralCredentials.generate(userId);
+        } catch (RuntimeException e) {
+            // The shared secret could not be loaded, so clients get the STUN servers alone
+            return current.json;
+        }
+        String username = quote(credentials.username());
+        StringBuilder json = new StringBuilder(current.stunPrefix.length() + quotedTurnUrls.length * 128);
+        json.append(current.stunPrefix);
+        for (String url : quotedTurnUrls) {
+            json.append(",{\"urls\":").append(url)
+                .append(",\"username\":").append(username)
+                .append(",\"credential\":\"").append(credentials.credential()).append("\"}");
+        }
+        return json.append(']').toString();
+    }
+
+    public RawValue rawValueFor(String userId) {
+        return hasEphemeralCredentials() ? new RawValue(jsonFor(userId)) : snapshot.rawValue;
+    }
+
+    public List<String> getStunUrls() {
+        return stunUrls;
+    }
+
+    public List<String> getTurnUrls() {
+        return turnUrls;
+    }
+
+    private Snapshot build(String turnUsername, String turnCredential) {
+        List<Map<String, String>> servers = new ArrayList<>();
+        for (String url : stunUrls) {
+            servers.add(Map.of("urls", url));
+        }
+        if (servers.isEmpty()) {
+            servers.add(Map.of("urls", DEFAULT_STUN_SERVER));
+        }
+        int stunCount = servers.size();
+        String stunJson = serialize(servers);
+        if (!turnUsername.isEmpty() && !turnCredential.isEmpty() && ephemeralCredentials == null) {
+            for (String url : turnUrls) {
+                Map<String, String> turn = new LinkedHashMap<>();
+                turn.put("urls", url);
+                turn.put("username", turnUsername);
+                turn.put("credential", turnCredential);
+                servers.add(Collections.unmodifiableMap(turn));
+            }
+        }
+        String json = servers.size() == stunCount ? stunJson : serialize(servers);
+        return new Snapshot(Collections.unmodifiableList(servers), json,
+            stunJson.substring(0, stunJson.length() - 1));
+    }
+
+    private String serialize(List<Map<String, String>> servers) {
+        try {
+            return objectMapper.writeValueAsString(servers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize ICE server configuration", e);
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + '"';
+    }
+}
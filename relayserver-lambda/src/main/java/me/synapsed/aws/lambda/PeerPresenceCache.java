@@ -0,0 +1,53 @@
+package me.synapsed.aws.lambda;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Short-lived cache of peer connection records keyed by peerId, so repeated
+ * signaling messages to the same peer skip the peer-connections table read.
+ * Entries are dropped once they are older than the staleness bound, and the
+ * least recently used entries are evicted once the cache reaches its maximum size.
+ * Each Lambda container has its own cache and entries are not invalidated when a
+ * peer's record changes, so the TTL is how long a disconnect can go unseen.
+ */
+public class PeerPresenceCache {
+    private final long ttlMs;
+    private final BoundedTtlCache<String, Map<String, AttributeValue>> entries;
+
+    public PeerPresenceCache(int maxEntries, long ttlMs) {
+        this(maxEntries, ttlMs, System::currentTimeMillis);
+    }
+
+    public PeerPresenceCache(int maxEntries, long ttlMs, LongSupplier clock) {
+        this.ttlMs = ttlMs;
+        // Without a staleness bound nothing is cached
+        this.entries = new BoundedTtlCache<>(ttlMs > 0 ? maxEntries : 0, clock);
+    }
+
+    /**
+     * Returns the cached peer connection record, or null if there is no entry
+     * younger than the staleness bound and the table must be read.
+     */
+    public Map<String, AttributeValue> get(String peerId) {
+        return entries.get(peerId);
+    }
+
+    public void put(String peerId, Map<String, AttributeValue> item) {
+        entries.put(peerId, item, entries.now() + ttlMs);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+}
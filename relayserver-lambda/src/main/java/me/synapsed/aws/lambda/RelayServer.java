@@ -1,16 +1,18 @@
 package me.synapsed.aws.lambda;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -18,11 +20,18 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sqs.model.InvalidMessageContentsException;
 import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
 import software.amazon.awssdk.services.sqs.model.SqsException;
+import software.amazon.awssdk.services.ssm.SsmClient;
+import software.amazon.awssdk.services.ssm.model.GetParameterRequest;
 
 public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
     private final DynamoDbClient dynamoDbClient;
@@ -31,27 +40,16 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
     private final String peerConnectionsTable;
     private final String signalingQueueUrl;
     private final SqsClient sqsClient;
-    private final List<Map<String, String>> iceServers;
-    // Valid WebRTC signaling message types
-    private static final Set<String> VALID_SIGNALING_TYPES = new HashSet<>();
-    static {
-        VALID_SIGNALING_TYPES.add("offer");
-        VALID_SIGNALING_TYPES.add("answer");
-        VALID_SIGNALING_TYPES.add("ice-candidate");
-    }
-    // Required fields for each signaling type
-    private static final Map<String, Set<String>> REQUIRED_FIELDS = new HashMap<>();
-    static {
-        Set<String> offerFields = new HashSet<>();
-        offerFields.add("sdp");
-        REQUIRED_FIELDS.put("offer", offerFields);
-        Set<String> answerFields = new HashSet<>();
-        answerFields.add("sdp");
-        REQUIRED_FIELDS.put("answer", answerFields);
-        Set<String> iceFields = new HashSet<>();
-        iceFields.add("candidate");
-        REQUIRED_FIELDS.put("ice-candidate", iceFields);
-    }
+    private final IceServerConfig iceServerConfig;
+    private final SubscriptionProofCache proofCache;
+    private final PeerPresenceCache peerPresenceCache;
+    private final SignalingCodec signalingCodec;
+    // SQS SendMessageBatch limits
+    private static final int SQS_MAX_BATCH_ENTRIES = 10;
+    private static final int SQS_MAX_BATCH_BYTES = 256 * 1024;
+    // Upper bound on messages accepted by a single batch signaling request
+    private static final int MAX_BATCH_MESSAGES = 100;
+    private static final long CONNECTION_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     public RelayServer() {
         this(System.getenv());
     }
@@ -61,48 +59,57 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
     public RelayServer(Map<String, String> env, DynamoDbClient dynamoDbClient, SqsClient sqsClient) {
         this.dynamoDbClient = dynamoDbClient;
         this.objectMapper = new ObjectMapper();
+        this.signalingCodec = new SignalingCodec(objectMapper);
         this.subscriptionProofsTable = env.getOrDefault("SUBSCRIPTION_PROOFS_TABLE", "synapsed-subscription-proofs");
         this.peerConnectionsTable = env.getOrDefault("PEER_CONNECTIONS_TABLE", "synapsed-peer-connections");
         this.signalingQueueUrl = env.getOrDefault("SIGNALING_QUEUE_URL", "");
         this.sqsClient = sqsClient;
-        this.iceServers = new ArrayList<>();
-        String stunServers = env.getOrDefault("STUN_SERVER", "stun:stun.l.google.com:19302");
-        if (!stunServers.isEmpty()) {
-            for (String stunUrl : stunServers.split(",")) {
-                stunUrl = stunUrl.trim();
-                if (isValidStunUrl(stunUrl)) {
-                    Map<String, String> stunServer = new HashMap<>();
-                    stunServer.put("urls", stunUrl);
-                    this.iceServers.add(stunServer);
-                }
-            }
+        this.proofCache = new SubscriptionProofCache(
+            (int) parseLong(env, "PROOF_CACHE_MAX_ENTRIES", 10000),
+            parseLong(env, "PROOF_CACHE_TTL_MS", 5 * 60 * 1000),
+            parseLong(env, "PROOF_CACHE_NEGATIVE_TTL_MS", 30 * 1000));
+        this.peerPresenceCache = new PeerPresenceCache(
+            (int) parseLong(env, "PEER_PRESENCE_CACHE_MAX_ENTRIES", 10000),
+            parseLong(env, "PEER_PRESENCE_CACHE_TTL_MS", 5 * 1000));
+        // Per-DID credentials signed with the shared secret take the place of static TURN credentials
+        this.iceServerConfig = new IceServerConfig(env, objectMapper, turnCredentialGenerator(env));
+    }
+
+    /**
+     * Builds the ephemeral TURN credential generator from TURN_SHARED_SECRET or,
+     * if that is not set, the SSM parameter named by TURN_SHARED_SECRET_PARAMETER.
+     * Returns null when neither is configured, leaving the static credentials in use.
+     */
+    private static TurnCredentialGenerator turnCredentialGenerator(Map<String, String> env) {
+        long ttlSeconds = parseLong(env, "TURN_CREDENTIAL_TTL_SECONDS", 60 * 60);
+        String sharedSecret = env.getOrDefault("TURN_SHARED_SECRET", "");
+        if (!sharedSecret.isEmpty()) {
+            byte[] secret = sharedSecret.getBytes(StandardCharsets.UTF_8);
+            return new TurnCredentialGenerator(() -> secret, ttlSeconds);
         }
-        if (this.iceServers.isEmpty()) {
-            Map<String, String> defaultStunServer = new HashMap<>();
-            defaultStunServer.put("urls", "stun:stun.l.google.com:19302");
-            this.iceServers.add(defaultStunServer);
+        String secretParameter = env.getOrDefault("TURN_SHARED_SECRET_PARAMETER", "");
+        if (secretParameter.isEmpty()) {
+            return null;
         }
-        String turnServers = env.getOrDefault("TURN_SERVER", "");
-        String turnUsername = env.getOrDefault("TURN_USERNAME", "");
-        String turnCredential = env.getOrDefault("TURN_CREDENTIAL", "");
-        if (!turnServers.isEmpty() && !turnUsername.isEmpty() && !turnCredential.isEmpty()) {
-            for (String turnUrl : turnServers.split(",")) {
-                turnUrl = turnUrl.trim();
-                if (isValidTurnUrl(turnUrl)) {
-                    Map<String, String> turn = new HashMap<>();
-                    turn.put("urls", turnUrl);
-                    turn.put("username", turnUsername);
-                    turn.put("credential", turnCredential);
-                    this.iceServers.add(turn);
-                }
-            }
-        }
-    }
-    private boolean isValidStunUrl(String url) {
-        return url != null && url.startsWith("stun:") && url.contains(":");
+        SsmClient ssmClient = SsmClient.builder().build();
+        return new TurnCredentialGenerator(() -> ssmClient
+            .getParameter(GetParameterRequest.builder()
+                .name(secretParameter)
+                .withDecryption(true)
+                .build())
+            .parameter().value().getBytes(StandardCharsets.UTF_8), ttlSeconds);
     }
-    private boolean isValidTurnUrl(String url) {
-        return url != null && url.startsWith("turn:") && url.contains(":");
+
+    private static long parseLong(Map<String, String> env, String name, long defaultValue) {
+        String value = env.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
@@ -124,33 +131,24 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
                     .withStatusCode(403)
                     .withBody("Invalid or expired subscription proof");
             }
-            Map<String, Object> requestBody = objectMapper.readValue(input.getBody(), new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {});
-            String type = (String) requestBody.get("type");
-            String peerId = (String) requestBody.get("peerId");
-            if (type == null || peerId == null) {
+            if (isBatchRequest(input)) {
+                return handleBatchSignaling(input.getBody(), did, context);
+            }
+            SignalingMessage message;
+            try {
+                message = signalingCodec.readMessage(input.getBody());
+            } catch (JsonProcessingException e) {
                 return new APIGatewayProxyResponseEvent()
                     .withStatusCode(400)
-                    .withBody("Missing required fields: type, peerId");
+                    .withBody("Invalid message format");
             }
-            String validationError = validateSignalingMessage(type, requestBody);
+            String validationError = message.validate();
             if (validationError != null) {
                 return new APIGatewayProxyResponseEvent()
                     .withStatusCode(400)
                     .withBody(validationError);
             }
-            if (type.equals("offer") || type.equals("answer")) {
-                requestBody.put("iceServers", this.iceServers);
-            }
-            switch (type) {
-                case "offer":
-                case "answer":
-                case "ice-candidate":
-                    return handleSignaling(type, peerId, requestBody, context);
-                default:
-                    return new APIGatewayProxyResponseEvent()
-                        .withStatusCode(400)
-                        .withBody("Invalid signaling type");
-            }
+            return handleSignaling(message, did, context);
         } catch (Exception e) {
             context.getLogger().log("Error processing request: " + e.getMessage());
             return new APIGatewayProxyResponseEvent()
@@ -159,6 +157,10 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
         }
     }
     private boolean verifySubscriptionProof(String did, String proof) {
+        Boolean cached = proofCache.get(did, proof);
+        if (cached != null) {
+            return cached;
+        }
         try {
             Map<String, AttributeValue> key = new HashMap<>();
             key.put("did", AttributeValue.builder().s(did).build());
@@ -169,103 +171,45 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
                 .build();
             GetItemResponse response = dynamoDbClient.getItem(request);
             if (!response.hasItem()) {
+                proofCache.putRejected(did, proof);
                 return false;
             }
             String expiresAt = response.item().get("expiresAt").s();
             long expirationTime = Long.parseLong(expiresAt);
-            return System.currentTimeMillis() < expirationTime;
+            if (System.currentTimeMillis() < expirationTime) {
+                proofCache.putValid(did, proof, expirationTime);
+                return true;
+            }
+            proofCache.putRejected(did, proof);
+            return false;
         } catch (Exception e) {
+            // Lookup failures are not cached so a transient error does not lock the client out
             return false;
         }
     }
-    private String validateSignalingMessage(String type, Map<String, Object> data) {
-        if (!VALID_SIGNALING_TYPES.contains(type)) {
-            return "Invalid signaling type: " + type;
-        }
-        Set<String> requiredFields = REQUIRED_FIELDS.get(type);
-        if (requiredFields != null) {
-            for (String field : requiredFields) {
-                if (!data.containsKey(field) || data.get(field) == null) {
-                    return "Missing required field for " + type + ": " + field;
-                }
-            }
-        }
-        if (type.equals("offer") || type.equals("answer")) {
-            String sdp = (String) data.get("sdp");
-            if (sdp == null || !sdp.startsWith("v=0")) {
-                return "Invalid SDP format for " + type;
-            }
-        }
-        if (type.equals("ice-candidate")) {
-            String candidate = (String) data.get("candidate");
-            if (candidate == null || !candidate.startsWith("candidate:")) {
-                return "Invalid ICE candidate format";
-            }
-        }
-        return null;
+    SubscriptionProofCache getProofCache() {
+        return proofCache;
+    }
+    PeerPresenceCache getPeerPresenceCache() {
+        return peerPresenceCache;
     }
-    private APIGatewayProxyResponseEvent handleSignaling(String type, String peerId, Map<String, Object> data, Context context) {
+    private boolean isBatchRequest(APIGatewayProxyRequestEvent input) {
+        String path = input.getPath();
+        return path != null && path.endsWith("/signaling/batch");
+    }
+    private APIGatewayProxyResponseEvent handleSignaling(SignalingMessage message, String did, Context context) {
+        String type = message.getType();
+        String peerId = message.getPeerId();
         try {
-            // Look up the peer's connection information in DynamoDB
-            Map<String, AttributeValue> key = new HashMap<>();
-            key.put("peerId", AttributeValue.builder().s(peerId).build());
-
-            GetItemRequest request = GetItemRequest.builder()
-                .tableName(peerConnectionsTable)
-                .key(key)
-                .build();
-
-            GetItemResponse response = dynamoDbClient.getItem(request);
-            if (!response.hasItem()) {
-                return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(404)
-                    .withBody("Peer not found or not connected");
-            }
-
-            // Get the peer's connection information
-            Map<String, AttributeValue> peerInfo = response.item();
-            
-            // Check if the peer is connected
-            String status = peerInfo.get("status").s();
-            if (!"connected".equals(status)) {
-                return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(400)
-                    .withBody("Peer is not connected. Current status: " + status);
-            }
-            
-            // Check if the connection has timed out
-            String connectedAt = peerInfo.get("connectedAt").s();
-            long connectionTime = Long.parseLong(connectedAt);
-            long currentTime = System.currentTimeMillis();
-            long connectionTimeout = 30 * 60 * 1000; // 30 minutes in milliseconds
-            
-            if (currentTime - connectionTime > connectionTimeout) {
+            PeerTarget target = lookupPeer(peerId);
+            if (target.errorStatus() != 0) {
                 return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(400)
-                    .withBody("Peer connection has timed out");
-            }
-            
-            String peerConnectionId = peerInfo.get("connectionId").s();
-            String peerEndpoint = peerInfo.get("endpoint").s();
-
-            // Prepare the signaling message to forward
-            Map<String, Object> signalingMessage = new HashMap<>(data);
-            // Only add fromPeerId if it exists in the data
-            if (data.containsKey("fromPeerId")) {
-                signalingMessage.put("fromPeerId", data.get("fromPeerId"));
-            }
-            signalingMessage.put("timestamp", System.currentTimeMillis());
-            signalingMessage.put("targetPeerId", peerId);
-            signalingMessage.put("targetConnectionId", peerConnectionId);
-            signalingMessage.put("targetEndpoint", peerEndpoint);
-
-            // Add direct connection attempt flag for offer messages
-            if (type.equals("offer")) {
-                signalingMessage.put("attemptDirectConnection", true);
+                    .withStatusCode(target.errorStatus())
+                    .withBody(target.error());
             }
 
             // Convert the message to JSON
-            String messageBody = objectMapper.writeValueAsString(signalingMessage);
+            String messageBody = writeSignalingMessage(message, target);
 
             // Send the message to the SQS queue
             SendMessageRequest sendMessageRequest = SendMessageRequest.builder()
@@ -277,7 +221,7 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
                 SendMessageResponse sendMessageResponse = sqsClient.sendMessage(sendMessageRequest);
                 
                 // Log the signaling event
-                String fromPeerId = data.containsKey("fromPeerId") ? (String) data.get("fromPeerId") : "unknown";
+                String fromPeerId = message.getFromPeerId() != null ? message.getFromPeerId() : "unknown";
                 context.getLogger().log("Forwarding " + type + " from " + fromPeerId + " to " + peerId + " (MessageId: " + sendMessageResponse.messageId() + ")");
 
                 // For offer messages, include direct connection information in the response
@@ -285,7 +229,17 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
                     Map<String, Object> responseBody = new HashMap<>();
                     responseBody.put("message", "Signaling message forwarded");
                     responseBody.put("attemptDirectConnection", true);
-                    responseBody.put("iceServers", this.iceServers);
+                    responseBody.put("iceServers", iceServerConfig.rawValueFor(did));
+                    return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(200)
+                        .withBody(objectMapper.writeValueAsString(responseBody));
+                }
+
+                // Answering peers need their own TURN credentials when they are issued per DID
+                if (type.equals("answer") && iceServerConfig.hasEphemeralCredentials()) {
+                    Map<String, Object> responseBody = new HashMap<>();
+                    responseBody.put("message", "Signaling message forwarded");
+                    responseBody.put("iceServers", iceServerConfig.rawValueFor(did));
                     return new APIGatewayProxyResponseEvent()
                         .withStatusCode(200)
                         .withBody(objectMapper.writeValueAsString(responseBody));
@@ -317,4 +271,195 @@ public class RelayServer implements RequestHandler<APIGatewayProxyRequestEvent,
                 .withBody("Error forwarding signaling message: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+    /**
+     * Handles a POST to /signaling/batch with a body of the form {"messages": [...]}.
+     * Every message is validated on its own, messages are grouped by target peer so each
+     * peer is looked up once, and the valid ones are forwarded with SendMessageBatch.
+     * The response reports a result for each message in request order.
+     */
+    private APIGatewayProxyResponseEvent handleBatchSignaling(String body, String did, Context context) throws Exception {
+        List<SignalingMessage> messages;
+        try {
+            messages = signalingCodec.readBatch(body);
+        } catch (JsonProcessingException e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("Invalid message format");
+        }
+        if (messages == null || messages.isEmpty()) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("Missing required field: messages");
+        }
+        if (messages.size() > MAX_BATCH_MESSAGES) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("Too many messages in batch: maximum is " + MAX_BATCH_MESSAGES);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(messages.size());
+        Map<String, List<Integer>> indexesByPeer = new LinkedHashMap<>();
+        boolean includeIceServers = false;
+        for (int i = 0; i < messages.size(); i++) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            results.add(result);
+            SignalingMessage message = messages.get(i);
+            if (message == null) {
+                markFailed(result, 400, "Invalid message format");
+                continue;
+            }
+            String validationError = message.validate();
+            if (validationError != null) {
+                markFailed(result, 400, validationError);
+                continue;
+            }
+            includeIceServers |= message.carriesSessionDescription();
+            indexesByPeer.computeIfAbsent(message.getPeerId(), k -> new ArrayList<>()).add(i);
+        }
+
+        // Look up each target peer once and build the outgoing entries
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> peerEntry : indexesByPeer.entrySet()) {
+            String peerId = peerEntry.getKey();
+            PeerTarget target;
+            try {
+                target = lookupPeer(peerId);
+            } catch (Exception e) {
+                context.getLogger().log("Error looking up peer " + peerId + ": " + e.getMessage());
+                target = PeerTarget.error(500, "Error forwarding signaling message: " + e.getMessage());
+            }
+            for (int index : peerEntry.getValue()) {
+                if (target.errorStatus() != 0) {
+                    markFailed(results.get(index), target.errorStatus(), target.error());
+                    continue;
+                }
+                entries.add(SendMessageBatchRequestEntry.builder()
+                    .id(Integer.toString(index))
+                    .messageBody(writeSignalingMessage(messages.get(index), target))
+                    .build());
+            }
+        }
+
+        int forwarded = 0;
+        for (List<SendMessageBatchRequestEntry> chunk : chunkEntries(entries)) {
+            forwarded += sendBatch(chunk, results, context);
+        }
+        context.getLogger().log("Forwarded " + forwarded + " of " + messages.size() + " batched signaling messages to " + indexesByPeer.size() + " peers");
+
+        Map<String, Object> responseBody = new LinkedHashMap<>();
+        responseBody.put("forwarded", forwarded);
+        responseBody.put("failed", messages.size() - forwarded);
+        responseBody.put("results", results);
+        if (includeIceServers) {
+            responseBody.put("iceServers", iceServerConfig.rawValueFor(did));
+        }
+        return new APIGatewayProxyResponseEvent()
+            .withStatusCode(200)
+            .withBody(objectMapper.writeValueAsString(responseBody));
+    }
+    private List<List<SendMessageBatchRequestEntry>> chunkEntries(List<SendMessageBatchRequestEntry> entries) {
+        List<List<SendMessageBatchRequestEntry>> chunks = new ArrayList<>();
+        List<SendMessageBatchRequestEntry> current = new ArrayList<>();
+        int currentBytes = 0;
+        for (SendMessageBatchRequestEntry entry : entries) {
+            int entryBytes = entry.messageBody().getBytes(StandardCharsets.UTF_8).length;
+            if (!current.isEmpty() && (current.size() == SQS_MAX_BATCH_ENTRIES || currentBytes + entryBytes > SQS_MAX_BATCH_BYTES)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(entry);
+            currentBytes += entryBytes;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+    private int sendBatch(List<SendMessageBatchRequestEntry> chunk, List<Map<String, Object>> results, Context context) {
+        try {
+            SendMessageBatchResponse response = sqsClient.sendMessageBatch(SendMessageBatchRequest.builder()
+                .queueUrl(signalingQueueUrl)
+                .entries(chunk)
+                .build());
+            for (SendMessageBatchResultEntry success : response.successful()) {
+                Map<String, Object> result = results.get(Integer.parseInt(success.id()));
+                result.put("status", 200);
+                result.put("messageId", success.messageId());
+            }
+            for (BatchResultErrorEntry failure : response.failed()) {
+                context.getLogger().log("Error forwarding batched signaling message " + failure.id() + ": " + failure.code() + " " + failure.message());
+                markFailed(results.get(Integer.parseInt(failure.id())), Boolean.TRUE.equals(failure.senderFault()) ? 400 : 500,
+                    "Error forwarding signaling message: " + failure.message());
+            }
+            return response.successful().size();
+        } catch (SqsException e) {
+            context.getLogger().log("Error sending message batch to SQS: " + e.getMessage());
+            for (SendMessageBatchRequestEntry entry : chunk) {
+                markFailed(results.get(Integer.parseInt(entry.id())), 500, "Error forwarding signaling message: " + e.getMessage());
+            }
+            return 0;
+        }
+    }
+    private void markFailed(Map<String, Object> result, int status, String error) {
+        result.put("status", status);
+        result.put("error", error);
+    }
+    private PeerTarget lookupPeer(String peerId) {
+        Map<String, AttributeValue> peerInfo = peerPresenceCache.get(peerId);
+        if (peerInfo == null) {
+            // Look up the peer's connection information in DynamoDB
+            Map<String, AttributeValue> key = new HashMap<>();
+            key.put("peerId", AttributeValue.builder().s(peerId).build());
+
+            GetItemRequest request = GetItemRequest.builder()
+                .tableName(peerConnectionsTable)
+                .key(key)
+                .build();
+
+            GetItemResponse response = dynamoDbClient.getItem(request);
+            if (!response.hasItem()) {
+                return PeerTarget.error(404, "Peer not found or not connected");
+            }
+
+            // Get the peer's connection information
+            peerInfo = response.item();
+            // Only connected peers are cached, so a peer that reconnects is seen on its next message
+            if ("connected".equals(peerInfo.get("status").s())) {
+                peerPresenceCache.put(peerId, peerInfo);
+            }
+        }
+        
+        // Check if the peer is connected
+        String status = peerInfo.get("status").s();
+        if (!"connected".equals(status)) {
+            return PeerTarget.error(400, "Peer is not connected. Current status: " + status);
+        }
+        
+        // Check if the connection has timed out. DynamoDB TTL removes expired items
+        // lazily, so the expiresAt written by PeerConnectionHandler is still compared here.
+        AttributeValue expiresAt = peerInfo.get("expiresAt");
+        boolean expired = expiresAt != null && expiresAt.n() != null
+            ? Long.parseLong(expiresAt.n()) * 1000 <= System.currentTimeMillis()
+            : System.currentTimeMillis() - Long.parseLong(peerInfo.get("connectedAt").s()) > CONNECTION_TIMEOUT_MS;
+        if (expired) {
+            return PeerTarget.error(400, "Peer connection has timed out");
+        }
+        
+        AttributeValue peerDid = peerInfo.get("did");
+        return new PeerTarget(0, null, peerInfo.get("connectionId").s(), peerInfo.get("endpoint").s(),
+            peerDid != null ? peerDid.s() : peerId);
+    }
+    private String writeSignalingMessage(SignalingMessage message, PeerTarget target) throws IOException {
+        // Credentials embedded in the forwarded message belong to the receiving peer
+        String iceServersJson = message.carriesSessionDescription() ? iceServerConfig.jsonFor(target.did()) : null;
+        return signalingCodec.writeForwarded(message, message.getPeerId(), target.connectionId(), target.endpoint(),
+            iceServersJson, System.currentTimeMillis());
+    }
+    private record PeerTarget(int errorStatus, String error, String connectionId, String endpoint, String did) {
+        static PeerTarget error(int status, String message) {
+            return new PeerTarget(status, message, null, null, null);
+        }
+    }
+}
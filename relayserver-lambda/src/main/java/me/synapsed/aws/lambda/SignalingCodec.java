@@ -0,0 +1,141 @@
+package me.synapsed.aws.lambda;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streaming reader and writer for signaling payloads. Request bodies are read
+ * token by token into {@link SignalingMessage}s and forwarded SQS bodies are
+ * written through one JsonGenerator per thread over a reusable buffer, so the
+ * relay never builds intermediate maps for large SDP blobs.
+ */
+public class SignalingCodec {
+    private final JsonFactory jsonFactory;
+    private final ThreadLocal<ReusableGenerator> generators;
+
+    private static final class ReusableGenerator {
+        private final CharArrayWriter buffer = new CharArrayWriter(4096);
+        private final JsonGenerator generator;
+
+        private ReusableGenerator(JsonFactory jsonFactory) {
+            try {
+                this.generator = jsonFactory.createGenerator(buffer);
+                // Consecutive root-level objects are written without a separator
+                this.generator.setRootValueSeparator(null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public SignalingCodec(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.generators = ThreadLocal.withInitial(() -> new ReusableGenerator(jsonFactory));
+    }
+
+    /**
+     * Reads a single signaling message body.
+     *
+     * @throws JsonParseException if the body is not a JSON object
+     */
+    public SignalingMessage readMessage(String body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            return SignalingMessage.parse(parser);
+        }
+    }
+
+    /**
+     * Reads the "messages" array of a batch body. Elements that are not JSON
+     * objects are returned as null entries so callers can report them by index.
+     * Returns null if the body has no "messages" array.
+     */
+    public List<SignalingMessage> readBatch(String body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            List<SignalingMessage> messages = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (!"messages".equals(field) || token != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                messages = new ArrayList<>();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_OBJECT) {
+                        messages.add(SignalingMessage.parse(parser));
+                    } else {
+                        parser.skipChildren();
+                        messages.add(null);
+                    }
+                }
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * Writes the SQS body for a message being forwarded to the given peer connection.
+     * iceServersJson must already be a serialized JSON array.
+     */
+    public String writeForwarded(SignalingMessage message, String targetPeerId, String targetConnectionId,
+                                 String targetEndpoint, String iceServersJson, long timestamp) throws IOException {
+        ReusableGenerator reusable = generators.get();
+        JsonGenerator generator = reusable.generator;
+        reusable.buffer.reset();
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("type", message.getType());
+            generator.writeStringField("peerId", message.getPeerId());
+            if (message.getFromPeerId() != null) {
+                generator.writeStringField("fromPeerId", message.getFromPeerId());
+            }
+            if (message.getSdp() != null) {
+                generator.writeStringField("sdp", message.getSdp());
+            }
+            if (message.getCandidate() != null) {
+                generator.writeStringField("candidate", message.getCandidate());
+            }
+            for (Map.Entry<String, TreeNode> extra : message.getExtraFields().entrySet()) {
+                generator.writeFieldName(extra.getKey());
+                generator.writeTree(extra.getValue());
+            }
+            if (message.carriesSessionDescription() && iceServersJson != null) {
+                // Pre-serialized by IceServerConfig, spliced in without re-encoding
+                generator.writeFieldName("iceServers");
+                generator.writeRawValue(iceServersJson);
+            }
+            generator.writeNumberField("timestamp", timestamp);
+            generator.writeStringField("targetPeerId", targetPeerId);
+            generator.writeStringField("targetConnectionId", targetConnectionId);
+            generator.writeStringField("targetEndpoint", targetEndpoint);
+            if ("offer".equals(message.getType())) {
+                generator.writeBooleanField("attemptDirectConnection", true);
+            }
+            generator.writeEndObject();
+            generator.flush();
+        } catch (IOException | RuntimeException e) {
+            // A half-written object leaves the generator in an unusable state
+            generators.remove();
+            throw e;
+        }
+        return reusable.buffer.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package me.synapsed.aws.lambda;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.TreeNode;
+
+/**
+ * A WebRTC signaling message (offer, answer or ice-candidate) read from a request
+ * body with Jackson's streaming parser. The SDP and candidate prefixes are checked
+ * as the values are read, and fields the relay does not interpret are kept as
+ * trees so they can be forwarded unchanged.
+ */
+public final class SignalingMessage {
+    // Fields the relay sets on forwarded messages; client supplied values are dropped
+    static final Set<String> RELAY_FIELDS = Set.of(
+        "iceServers", "timestamp", "targetPeerId", "targetConnectionId", "targetEndpoint", "attemptDirectConnection");
+
+    private String type;
+    private String peerId;
+    private String fromPeerId;
+    private String sdp;
+    private String candidate;
+    private boolean sdpValid;
+    private boolean candidateValid;
+    private String parseError;
+    private Map<String, TreeNode> extraFields;
+
+    private SignalingMessage() {
+    }
+
+    /**
+     * Reads one message object. The parser must be positioned on the START_OBJECT
+     * token and is left on the matching END_OBJECT. Values of the wrong type are
+     * recorded as a validation error rather than thrown, so a batch can continue
+     * with the next message.
+     */
+    public static SignalingMessage parse(JsonParser parser) throws IOException {
+        SignalingMessage message = new SignalingMessage();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "type":
+                    message.type = message.readString(parser, token, field);
+                    break;
+                case "peerId":
+                    message.peerId = message.readString(parser, token, field);
+                    break;
+                case "fromPeerId":
+                    message.fromPeerId = message.readString(parser, token, field);
+                    break;
+                case "sdp":
+                    message.sdp = message.readString(parser, token, field);
+                    message.sdpValid = message.sdp != null && message.sdp.startsWith("v=0");
+                    break;
+                case "candidate":
+                    message.candidate = message.readString(parser, token, field);
+                    message.candidateValid = message.candidate != null && message.candidate.startsWith("candidate:");
+                    break;
+                default:
+                    if (RELAY_FIELDS.contains(field)) {
+                        parser.skipChildren();
+                    } else {
+                        if (message.extraFields == null) {
+                            message.extraFields = new LinkedHashMap<>();
+                        }
+                        message.extraFields.put(field, parser.readValueAsTree());
+                    }
+                    break;
+            }
+        }
+        return message;
+    }
+
+    private String readString(JsonParser parser, JsonToken token, String field) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token != JsonToken.VALUE_NULL && parseError == null) {
+            parseError = "Invalid value for field: " + field;
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Returns a client-facing error message, or null if the message can be forwarded.
+     */
+    public String validate() {
+        if (parseError != null) {
+            return parseError;
+        }
+        if (type == null || peerId == null) {
+            return "Missing required fields: type, peerId";
+        }
+        switch (type) {
+            case "offer":
+            case "answer":
+                if (sdp == null) {
+                    return "Missing required field for " + type + ": sdp";
+                }
+                return sdpValid ? null : "Invalid SDP format for " + type;
+            case "ice-candidate":
+                if (candidate == null) {
+                    return "Missing required field for " + type + ": candidate";
+                }
+                return candidateValid ? null : "Invalid ICE candidate format";
+            default:
+                return "Invalid signaling type: " + type;
+        }
+    }
+
+    public boolean carriesSessionDescription() {
+        return "offer".equals(type) || "answer".equals(type);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPeerId() {
+        return peerId;
+    }
+
+    public String getFromPeerId() {
+        return fromPeerId;
+    }
+
+    public String getSdp() {
+        return sdp;
+    }
+
+    public String getCandidate() {
+        return candidate;
+    }
+
+    public Map<String, TreeNode> getExtraFields() {
+        return extraFields == null ? Map.of() : extraFields;
+    }
+}
@@ -0,0 +1,79 @@
+package me.synapsed.aws.lambda;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, TTL-aware cache of subscription proof verification results.
+ * Valid proofs are cached until their own expiresAt (capped by a maximum TTL),
+ * rejected proofs are cached for a short negative TTL, and the least recently
+ * used entries are evicted once the cache reaches its maximum size.
+ */
+public class SubscriptionProofCache {
+    private final long maxTtlMs;
+    private final long negativeTtlMs;
+    private final BoundedTtlCache<String, Boolean> entries;
+
+    public SubscriptionProofCache(int maxEntries, long maxTtlMs, long negativeTtlMs) {
+        this(maxEntries, maxTtlMs, negativeTtlMs, System::currentTimeMillis);
+    }
+
+    public SubscriptionProofCache(int maxEntries, long maxTtlMs, long negativeTtlMs, LongSupplier clock) {
+        this.maxTtlMs = maxTtlMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.entries = new BoundedTtlCache<>(maxEntries, clock);
+    }
+
+    /**
+     * Returns the cached verification result for the given DID and proof,
+     * or null if there is no live entry and the proof must be looked up.
+     */
+    public Boolean get(String did, String proof) {
+        return entries.get(key(did, proof));
+    }
+
+    /**
+     * Caches a proof that was found and is valid until expiresAt (epoch millis).
+     */
+    public void putValid(String did, String proof, long expiresAt) {
+        long now = entries.now();
+        if (expiresAt <= now) {
+            putRejected(did, proof);
+            return;
+        }
+        entries.put(key(did, proof), true, Math.min(expiresAt, now + maxTtlMs));
+    }
+
+    /**
+     * Caches a proof that was missing or expired.
+     */
+    public void putRejected(String did, String proof) {
+        if (negativeTtlMs <= 0) {
+            return;
+        }
+        entries.put(key(did, proof), false, entries.now() + negativeTtlMs);
+    }
+
+    public void invalidate(String did, String proof) {
+        entries.invalidate(key(did, proof));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    private static String key(String did, String proof) {
+        return did + '\n' + proof;
+    }
+}
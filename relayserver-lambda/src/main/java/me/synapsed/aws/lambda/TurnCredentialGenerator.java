@@ -0,0 +1,117 @@
+package me.synapsed.aws.lambda;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Generates time-limited TURN credentials following the TURN REST API
+ * convention: the username is "expiry:userId" (expiry in epoch seconds) and
+ * the credential is base64(HMAC-SHA1(sharedSecret, username)). The TURN server
+ * validates them with the same shared secret, so no per-user state is stored.
+ */
+public class TurnCredentialGenerator {
+    private static final String HMAC_ALGORITHM = "HmacSHA1";
+    // How long a loaded secret is used before it is read again, so a rotated secret
+    // reaches warm containers without a cold start
+    static final long KEY_REFRESH_INTERVAL_MS = 5 * 60 * 1000;
+    // How long a failed secret load is remembered before the source is asked again
+    static final long RETRY_INTERVAL_MS = 30 * 1000;
+
+    private final Supplier<byte[]> secretSource;
+    private final long ttlSeconds;
+    private final LongSupplier clock;
+    private volatile SecretKeySpec key;
+    private volatile long reloadAt;
+    private final ThreadLocal<KeyedMac> macs = new ThreadLocal<>();
+
+    /**
+     * A username/credential pair and the epoch second it stops being accepted.
+     */
+    public record Credentials(String username, String credential, long expiresAt) {
+    }
+
+    // A thread's MAC and the key it was initialized with
+    private record KeyedMac(SecretKeySpec key, Mac mac) {
+    }
+
+    public TurnCredentialGenerator(Supplier<byte[]> secretSource, long ttlSeconds) {
+        this(secretSource, ttlSeconds, System::currentTimeMillis);
+    }
+
+    public TurnCredentialGenerator(Supplier<byte[]> secretSource, long ttlSeconds, LongSupplier clock) {
+        this.secretSource = secretSource;
+        this.ttlSeconds = ttlSeconds;
+        this.clock = clock;
+    }
+
+    /**
+     * @throws IllegalStateException if the shared secret cannot be loaded
+     */
+    public Credentials generate(String userId) {
+        SecretKeySpec current = key();
+        KeyedMac keyed = macs.get();
+        if (keyed == null || keyed.key() != current) {
+            keyed = new KeyedMac(current, newMac(current));
+            macs.set(keyed);
+        }
+        long expiresAt = clock.getAsLong() / 1000 + ttlSeconds;
+        String username = expiresAt + ":" + userId;
+        byte[] signature = keyed.mac().doFinal(username.getBytes(StandardCharsets.UTF_8));
+        return new Credentials(username, Base64.getEncoder().encodeToString(signature), expiresAt);
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize TURN credential HMAC", e);
+        }
+    }
+
+    /**
+     * Returns the shared secret, reading it again once the refresh interval has
+     * passed. Loading happens on first use rather than when the handler is
+     * constructed. A failed load is not retried on every request, so an SSM outage
+     * or throttling is not amplified, and a secret already loaded stays in use
+     * until a reload succeeds.
+     */
+    private SecretKeySpec key() {
+        SecretKeySpec current = key;
+        if (current != null && clock.getAsLong() < reloadAt) {
+            return current;
+        }
+        synchronized (this) {
+            current = key;
+            long now = clock.getAsLong();
+            if (now < reloadAt) {
+                if (current == null) {
+                    throw new IllegalStateException("TURN shared secret unavailable");
+                }
+                return current;
+            }
+            try {
+                current = new SecretKeySpec(secretSource.get(), HMAC_ALGORITHM);
+            } catch (RuntimeException e) {
+                reloadAt = now + RETRY_INTERVAL_MS;
+                if (key == null) {
+                    throw new IllegalStateException("Unable to load TURN shared secret", e);
+                }
+                return key;
+            }
+            // An unchanged secret keeps its key, so threads need not rebuild their MACs
+            if (key == null || !key.equals(current)) {
+                key = current;
+            }
+            reloadAt = now + KEY_REFRESH_INTERVAL_MS;
+            return key;
+        }
+    }
+}
@@ -3,7 +3,6 @@ package me.synapsed.aws.lambda;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,123 +10,160 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
 
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
 import software.amazon.awssdk.services.cloudwatch.model.Dimension;
 import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
 import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
-import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
-import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
-import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 
 /**
  * Lambda function for generating alert analytics and metrics.
- * Processes alert data from S3 and publishes metrics to CloudWatch.
+ * Rolls up the per-minute alert counters written by AlertRouter and publishes
+ * metrics to CloudWatch, so each run costs the same however large the alert
+ * archive in S3 grows.
  */
 public class AlertAnalytics implements RequestHandler<ScheduledEvent, String> {
+    private static final int DEFAULT_SCAN_MAX_IN_FLIGHT = 64;
+
     private final CloudWatchClient cloudWatchClient;
-    private final CloudWatchLogsClient logsClient;
-    private final S3Client s3Client;
-    private final String logGroupName;
-    private final String alertsBucket;
+    private final StructuredLogger logger;
+    private final AlertArchiveScanner archiveScanner;
+    private final AlertCounters alertCounters;
+    private final int windowHours;
 
     public AlertAnalytics() {
         this.cloudWatchClient = CloudWatchClient.create();
-        this.logsClient = CloudWatchLogsClient.create();
-        this.s3Client = S3Client.create();
-        this.logGroupName = System.getenv("LOG_GROUP_NAME");
-        this.alertsBucket = System.getenv("ALERTS_BUCKET");
+        this.logger = new StructuredLogger("alert-analytics");
+        this.archiveScanner = new AlertArchiveScanner(S3AsyncClient.builder()
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                    .maxConcurrency(parseInt(System.getenv("ALERT_SCAN_MAX_IN_FLIGHT"), DEFAULT_SCAN_MAX_IN_FLIGHT)))
+                .build(),
+            System.getenv("ALERTS_BUCKET"),
+            parseInt(System.getenv("ALERT_SCAN_MAX_IN_FLIGHT"), DEFAULT_SCAN_MAX_IN_FLIGHT));
+        this.alertCounters = new AlertCounters(DynamoDbClient.create(), System.getenv("ALERT_COUNTERS_TABLE"));
+        this.windowHours = Math.max(1, parseInt(System.getenv("ANALYTICS_WINDOW_HOURS"), 24));
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     @Override
     public String handleRequest(ScheduledEvent event, Context context) {
+        logger.begin(context);
         try {
-            context.getLogger().log("Starting alert analytics generation");
-            logEvent("Starting alert analytics generation");
-            
-            // Get alerts from the last 24 hours
-            Instant endTime = Instant.now();
-            Instant startTime = endTime.minus(24, ChronoUnit.HOURS);
-            
-            // List objects in the alerts bucket
-            ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                .bucket(alertsBucket)
-                .build();
-                
-            ListObjectsV2Response listResponse = s3Client.listObjectsV2(listRequest);
+            if (isBackfill(event)) {
+                return backfill(event, context);
+            }
+
+            logger.info("Starting alert analytics generation");
             
-            // Process alerts and generate metrics
-            Map<String, Integer> severityCounts = new HashMap<>();
-            Map<String, Integer> sourceCounts = new HashMap<>();
-            int totalAlerts = 0;
+            // Get alerts from the last 24 hours, up to the last complete minute
+            Instant endTime = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+            Instant startTime = endTime.minus(windowHours, ChronoUnit.HOURS);
             
-            for (S3Object object : listResponse.contents()) {
-                // Skip objects older than 24 hours
-                if (object.lastModified().isAfter(startTime)) {
-                    continue;
-                }
-                
-                // Count alerts by severity and source
-                String key = object.key();
-                if (key.startsWith("alerts/")) {
-                    String[] parts = key.split("/");
-                    if (parts.length >= 2) {
-                        String severity = parts[1].toUpperCase();
-                        severityCounts.merge(severity, 1, Integer::sum);
-                        
-                        // Extract source from the alert data
-                        String source = extractSourceFromAlert(object);
-                        if (source != null) {
-                            sourceCounts.merge(source, 1, Integer::sum);
-                        }
-                        
-                        totalAlerts++;
-                    }
-                }
-            }
+            AlertCounters.Totals totals = alertCounters.rollUp(startTime, endTime);
             
             // Publish metrics to CloudWatch
-            publishMetrics(totalAlerts, severityCounts, sourceCounts);
+            publishMetrics("", totals.total(), totals.bySeverity(), totals.bySource(), endTime);
             
             // Log analytics completion
-            logEvent("Completed alert analytics generation. Total alerts: " + totalAlerts);
+            logger.info("Completed alert analytics generation. Total alerts: " + totals.total());
             
             return "Successfully generated alert analytics";
         } catch (Exception e) {
-            String errorMsg = "Error generating alert analytics: " + e.getMessage();
-            context.getLogger().log(errorMsg);
-            logEvent(errorMsg);
+            logger.error("Error generating alert analytics: " + e.getMessage());
             throw new RuntimeException("Failed to generate alert analytics", e);
         }
     }
 
-    private String extractSourceFromAlert(S3Object object) {
-        // In a real implementation, you would read and parse the alert data from S3
-        // For this example, we'll return a placeholder
-        return "aws.securityhub";
+    /**
+     * Scheduled runs roll up the counters AlertRouter maintains; an event with
+     * {"mode": "backfill"} in its detail recounts a window from the S3 archive
+     * instead, for alerts routed before the counters existed.
+     */
+    private static boolean isBackfill(ScheduledEvent event) {
+        Map<String, Object> detail = event == null ? null : event.getDetail();
+        return detail != null && "backfill".equals(detail.get("mode"));
     }
 
-    private void publishMetrics(int totalAlerts, Map<String, Integer> severityCounts, Map<String, Integer> sourceCounts) {
+    /**
+     * Recounts the window given by "start" and "end" in the event detail, by default
+     * the rolling window. A backfill that does not finish in one invocation is
+     * resumed by invoking it again; an unfinished backfill over a different window
+     * is abandoned. Its totals are published under Backfill-prefixed metric names,
+     * so they never mix with the live rolling-window metrics.
+     */
+    private String backfill(ScheduledEvent event, Context context) {
+        Map<String, Object> detail = event.getDetail();
+        Instant endTime = detail.get("end") != null
+            ? Instant.parse(detail.get("end").toString())
+            : Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        Instant startTime = detail.get("start") != null
+            ? Instant.parse(detail.get("start").toString())
+            : endTime.minus(windowHours, ChronoUnit.HOURS);
+
+        AlertArchiveScanner.Checkpoint checkpoint = archiveScanner.loadCheckpoint();
+        boolean windowGiven = detail.get("start") != null || detail.get("end") != null;
+        if (checkpoint == null || (windowGiven && !(checkpoint.start().equals(startTime.toString())
+                && checkpoint.end().equals(endTime.toString())))) {
+            logger.info("Starting alert backfill from " + startTime + " to " + endTime);
+            checkpoint = archiveScanner.start(startTime, endTime);
+        } else {
+            logger.info("Resuming alert backfill from " + checkpoint.start() + " to " + checkpoint.end()
+                + " with " + checkpoint.total() + " alerts counted");
+        }
+
+        checkpoint = archiveScanner.scan(checkpoint, context::getRemainingTimeInMillis);
+        if (!checkpoint.finished()) {
+            logger.info("Paused alert backfill with " + checkpoint.pending().size() + " prefixes left and "
+                + checkpoint.total() + " alerts counted");
+            return "Alert backfill in progress; invoke again to resume";
+        }
+
+        AlertCounters.Totals totals = checkpoint.totals();
+        logger.info("Completed alert backfill from " + checkpoint.start() + " to " + checkpoint.end()
+            + ". Total alerts: " + totals.total() + ", by severity: " + totals.bySeverity()
+            + ", by source: " + totals.bySource());
+        try {
+            publishMetrics("Backfill", totals.total(), totals.bySeverity(), totals.bySource(),
+                Instant.parse(checkpoint.end()));
+        } finally {
+            // The counts are logged above, so a failed publish does not leave a
+            // finished backfill to be resumed
+            archiveScanner.deleteCheckpoint();
+        }
+        return "Successfully completed alert backfill";
+    }
+
+    private void publishMetrics(String namePrefix, long totalAlerts, Map<String, Long> severityCounts,
+                                Map<String, Long> sourceCounts, Instant timestamp) {
         List<MetricDatum> metrics = new ArrayList<>();
         
         // Add total alerts metric
         metrics.add(MetricDatum.builder()
-            .metricName("TotalAlerts")
+            .metricName(namePrefix + "TotalAlerts")
             .value((double) totalAlerts)
             .unit(software.amazon.awssdk.services.cloudwatch.model.StandardUnit.COUNT)
-            .timestamp(Instant.now())
+            .timestamp(timestamp)
             .build());
             
         // Add severity metrics
-        for (Map.Entry<String, Integer> entry : severityCounts.entrySet()) {
+        for (Map.Entry<String, Long> entry : severityCounts.entrySet()) {
             metrics.add(MetricDatum.builder()
-                .metricName("AlertsBySeverity")
+                .metricName(namePrefix + "AlertsBySeverity")
                 .value((double) entry.getValue())
                 .unit(software.amazon.awssdk.services.cloudwatch.model.StandardUnit.COUNT)
-                .timestamp(Instant.now())
+                .timestamp(timestamp)
                 .dimensions(Dimension.builder()
                     .name("Severity")
                     .value(entry.getKey())
@@ -136,12 +172,12 @@ public class AlertAnalytics implements RequestHandler<ScheduledEvent, String> {
         }
         
         // Add source metrics
-        for (Map.Entry<String, Integer> entry : sourceCounts.entrySet()) {
+        for (Map.Entry<String, Long> entry : sourceCounts.entrySet()) {
             metrics.add(MetricDatum.builder()
-                .metricName("AlertsBySource")
+                .metricName(namePrefix + "AlertsBySource")
                 .value((double) entry.getValue())
                 .unit(software.amazon.awssdk.services.cloudwatch.model.StandardUnit.COUNT)
-                .timestamp(Instant.now())
+                .timestamp(timestamp)
                 .dimensions(Dimension.builder()
                     .name("Source")
                     .value(entry.getKey())
@@ -158,19 +194,4 @@ public class AlertAnalytics implements RequestHandler<ScheduledEvent, String> {
         cloudWatchClient.putMetricData(putMetricDataRequest);
     }
 
-    private void logEvent(String message) {
-        List<InputLogEvent> logEvents = new ArrayList<>();
-        logEvents.add(InputLogEvent.builder()
-            .timestamp(System.currentTimeMillis())
-            .message(message)
-            .build());
-            
-        PutLogEventsRequest putLogEventsRequest = PutLogEventsRequest.builder()
-            .logGroupName(logGroupName)
-            .logStreamName("alert-analytics")
-            .logEvents(logEvents)
-            .build();
-            
-        logsClient.putLogEvents(putLogEventsRequest);
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,91 @@
+package me.synapsed.aws.lambda;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.firehose.FirehoseClient;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchRequest;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponse;
+import software.amazon.awssdk.services.firehose.model.Record;
+
+/**
+ * Archives routed alerts as newline-delimited JSON through a Firehose delivery
+ * stream. Firehose buffers alerts from every invocation and writes them to the
+ * alerts bucket as GZIP objects of many alerts under
+ * alerts/year=YYYY/month=MM/day=DD/hour=HH/, so the archive is one object per
+ * buffer interval rather than one per alert, and Athena and the analytics
+ * backfill can read it by hour.
+ */
+public class AlertArchive {
+    // PutRecordBatch limits
+    static final int MAX_BATCH_RECORDS = 500;
+    static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final FirehoseClient firehoseClient;
+    private final String deliveryStreamName;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public AlertArchive(FirehoseClient firehoseClient, String deliveryStreamName) {
+        this.firehoseClient = firehoseClient;
+        this.deliveryStreamName = deliveryStreamName;
+    }
+
+    /**
+     * Sends alerts with as few PutRecordBatch calls as the limits allow, retrying
+     * rejected entries once. Returns the alerts that could not be archived.
+     */
+    public List<Map<String, Object>> archive(List<Map<String, Object>> alerts) throws JsonProcessingException {
+        List<Map<String, Object>> pending = alerts;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Map<String, Object>> failed = new ArrayList<>();
+            int from = 0;
+            while (from < pending.size()) {
+                List<Record> records = new ArrayList<>();
+                int batchBytes = 0;
+                int to = from;
+                while (to < pending.size() && records.size() < MAX_BATCH_RECORDS) {
+                    byte[] line = (objectMapper.writeValueAsString(pending.get(to)) + "\n").getBytes(StandardCharsets.UTF_8);
+                    if (!records.isEmpty() && batchBytes + line.length > MAX_BATCH_BYTES) {
+                        break;
+                    }
+                    records.add(Record.builder().data(SdkBytes.fromByteArray(line)).build());
+                    batchBytes += line.length;
+                    to++;
+                }
+                failed.addAll(send(records, pending.subList(from, to)));
+                from = to;
+            }
+            pending = failed;
+        }
+        return pending;
+    }
+
+    private List<Map<String, Object>> send(List<Record> records, List<Map<String, Object>> alerts) {
+        PutRecordBatchResponse response;
+        try {
+            response = firehoseClient.putRecordBatch(PutRecordBatchRequest.builder()
+                .deliveryStreamName(deliveryStreamName)
+                .records(records)
+                .build());
+        } catch (RuntimeException e) {
+            // Throttling, service and network errors fail the whole call
+            return new ArrayList<>(alerts);
+        }
+        List<Map<String, Object>> failed = new ArrayList<>();
+        if (response.failedPutCount() != null && response.failedPutCount() > 0) {
+            for (int i = 0; i < response.requestResponses().size(); i++) {
+                if (response.requestResponses().get(i).errorCode() != null) {
+                    failed.add(alerts.get(i));
+                }
+            }
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,357 @@
+package me.synapsed.aws.lambda;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Recounts archived alerts for AlertAnalytics backfills. The archive holds
+ * newline-delimited JSON objects under alerts/year=/month=/day=/hour=/, written
+ * by {@link AlertArchive}, and older single-alert objects under
+ * alerts/<severity>/. It is listed in rounds: each round fetches the next
+ * ListObjectsV2 page of every hour and severity prefix in the window, maxInFlight
+ * prefixes at a time, and reads the listed objects to find the severity and source
+ * of each alert, with at most maxInFlight list and GetObject calls outstanding
+ * between them. The counts and each prefix's continuation token are saved to
+ * {@link #CHECKPOINT_KEY} after every round, and a scan stops between chunks of
+ * prefixes when the invocation is running out of time, so a backfill larger than
+ * one invocation resumes where the last one stopped instead of starting over.
+ */
+public class AlertArchiveScanner {
+    static final String CHECKPOINT_KEY = "analytics/backfill-checkpoint.json";
+    private static final String ARCHIVE_PREFIX = "alerts/";
+    private static final String PARTITION_PREFIX = "alerts/year=";
+    private static final DateTimeFormatter HOUR_PREFIX = DateTimeFormatter
+        .ofPattern("'alerts/year='yyyy'/month='MM'/day='dd'/hour='HH'/'")
+        .withZone(ZoneOffset.UTC);
+    // Firehose partitions and older alert keys use the time an alert reached S3 or
+    // Firehose, just after it was routed
+    private static final Duration KEY_SLACK = Duration.ofMinutes(1);
+    // Firehose buffering interval; a partition can hold alerts routed up to this
+    // long before its hour began
+    private static final Duration FIREHOSE_BUFFER = Duration.ofSeconds(60);
+    // Time left for the last chunk and the checkpoint write when a scan stops
+    private static final long RESERVED_MILLIS = 15_000;
+    // Alerts archived before they were written as JSON used Map.toString()
+    private static final Pattern LEGACY_SOURCE = Pattern.compile("[{ ]source=([^,}]*)");
+
+    private final S3AsyncClient s3Client;
+    private final String bucket;
+    private final int maxInFlight;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private record Alert(String severity, String source) {
+    }
+
+    /**
+     * Progress of a backfill over [start, end). Pending maps each prefix still to be
+     * listed to its next continuation token, or to "" before its first page.
+     */
+    public record Checkpoint(String start, String end, Map<String, String> pending,
+                             long total, Map<String, Long> bySeverity, Map<String, Long> bySource) {
+        public boolean finished() {
+            return pending.isEmpty();
+        }
+
+        public AlertCounters.Totals totals() {
+            return new AlertCounters.Totals(total, bySeverity, bySource);
+        }
+    }
+
+    public AlertArchiveScanner(S3AsyncClient s3Client, String bucket, int maxInFlight) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Starts a backfill over [start, end), with one pending prefix per hour of the
+     * window, starting from the hour Firehose delivered alerts routed at its start,
+     * and one per severity of the older layout.
+     */
+    public Checkpoint start(Instant start, Instant end) {
+        Map<String, String> pending = new LinkedHashMap<>();
+        Instant first = start.minus(FIREHOSE_BUFFER).truncatedTo(ChronoUnit.HOURS);
+        for (Instant hour = first; hour.isBefore(end); hour = hour.plus(1, ChronoUnit.HOURS)) {
+            pending.put(HOUR_PREFIX.format(hour), "");
+        }
+        String token = null;
+        do {
+            ListObjectsV2Response page = s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(ARCHIVE_PREFIX)
+                .delimiter("/")
+                .continuationToken(token)
+                .build()).join();
+            for (CommonPrefix prefix : page.commonPrefixes()) {
+                if (!isPartition(prefix.prefix())) {
+                    pending.put(prefix.prefix(), "");
+                }
+            }
+            token = Boolean.TRUE.equals(page.isTruncated()) ? page.nextContinuationToken() : null;
+        } while (token != null);
+        return new Checkpoint(start.toString(), end.toString(), pending, 0, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Continues a backfill until every prefix is listed or the remaining time runs
+     * low, saving the checkpoint after each round and when it stops. The time is
+     * checked before each chunk of prefixes, so a round over a long window can stop
+     * part way through.
+     */
+    public Checkpoint scan(Checkpoint checkpoint, LongSupplier remainingMillis) {
+        Instant start = Instant.parse(checkpoint.start());
+        Instant end = Instant.parse(checkpoint.end());
+        Map<String, String> pending = new LinkedHashMap<>(checkpoint.pending());
+        long total = checkpoint.total();
+        Map<String, Long> bySeverity = new HashMap<>(checkpoint.bySeverity());
+        Map<String, Long> bySource = new HashMap<>(checkpoint.bySource());
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        boolean outOfTime = false;
+        while (!pending.isEmpty() && !outOfTime) {
+            // A round lists the next page of every prefix, maxInFlight prefixes at a time
+            List<String> prefixes = new ArrayList<>(pending.keySet());
+            int listed = 0;
+            while (listed < prefixes.size()) {
+                if (remainingMillis.getAsLong() <= RESERVED_MILLIS) {
+                    outOfTime = true;
+                    break;
+                }
+                List<String> chunk = prefixes.subList(listed, Math.min(listed + maxInFlight, prefixes.size()));
+                listed += chunk.size();
+
+                Map<String, CompletableFuture<ListObjectsV2Response>> pages = new LinkedHashMap<>();
+                for (String prefix : chunk) {
+                    inFlight.acquireUninterruptibly();
+                    CompletableFuture<ListObjectsV2Response> page = listPage(prefix, pending.get(prefix), start);
+                    page.whenComplete((value, error) -> inFlight.release());
+                    pages.put(prefix, page);
+                }
+
+                // Read the alerts in the window, sharing the bound on calls in flight
+                Map<String, List<CompletableFuture<List<Alert>>>> alerts = new LinkedHashMap<>();
+                for (Map.Entry<String, CompletableFuture<ListObjectsV2Response>> page : pages.entrySet()) {
+                    String prefix = page.getKey();
+                    List<CompletableFuture<List<Alert>>> pageAlerts = new ArrayList<>();
+                    for (S3Object object : page.getValue().join().contents()) {
+                        // Partitioned objects are filtered by the alerts' own routing times
+                        if (!isPartition(prefix)
+                                && (object.lastModified().isBefore(start) || !object.lastModified().isBefore(end))) {
+                            continue;
+                        }
+                        inFlight.acquireUninterruptibly();
+                        CompletableFuture<List<Alert>> objectAlerts = fetchAlerts(prefix, object.key(), start, end);
+                        objectAlerts.whenComplete((value, error) -> inFlight.release());
+                        pageAlerts.add(objectAlerts);
+                    }
+                    alerts.put(prefix, pageAlerts);
+                }
+
+                // Count a prefix only once its whole page has been read, so the
+                // checkpoint never holds part of a page
+                for (Map.Entry<String, List<CompletableFuture<List<Alert>>>> entry : alerts.entrySet()) {
+                    String prefix = entry.getKey();
+                    for (CompletableFuture<List<Alert>> objectAlerts : entry.getValue()) {
+                        for (Alert alert : objectAlerts.join()) {
+                            bySeverity.merge(alert.severity(), 1L, Long::sum);
+                            bySource.merge(alert.source(), 1L, Long::sum);
+                            total++;
+                        }
+                    }
+
+                    ListObjectsV2Response page = pages.get(prefix).join();
+                    if (Boolean.TRUE.equals(page.isTruncated()) && (isPartition(prefix) || !pastEnd(prefix, page, end))) {
+                        pending.put(prefix, page.nextContinuationToken());
+                    } else {
+                        pending.remove(prefix);
+                    }
+                }
+            }
+
+            if (listed > 0) {
+                checkpoint = new Checkpoint(checkpoint.start(), checkpoint.end(), new LinkedHashMap<>(pending),
+                    total, new HashMap<>(bySeverity), new HashMap<>(bySource));
+                saveCheckpoint(checkpoint);
+            }
+        }
+        return checkpoint;
+    }
+
+    private CompletableFuture<ListObjectsV2Response> listPage(String prefix, String token, Instant start) {
+        ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+            .bucket(bucket)
+            .prefix(prefix);
+        if (token.isEmpty() && !isPartition(prefix)) {
+            // Keys sort by routing time, so older alerts need not be listed at all
+            request.startAfter(prefix + start.minus(KEY_SLACK));
+        } else if (!token.isEmpty()) {
+            request.continuationToken(token);
+        }
+        return s3Client.listObjectsV2(request.build());
+    }
+
+    /**
+     * True once a page has listed past the end of the window; later pages hold
+     * only newer alerts.
+     */
+    private static boolean pastEnd(String prefix, ListObjectsV2Response page, Instant end) {
+        List<S3Object> contents = page.contents();
+        return !contents.isEmpty()
+            && contents.get(contents.size() - 1).key().compareTo(prefix + end.plus(KEY_SLACK)) > 0;
+    }
+
+    private static boolean isPartition(String prefix) {
+        return prefix.startsWith(PARTITION_PREFIX);
+    }
+
+    private CompletableFuture<List<Alert>> fetchAlerts(String prefix, String key, Instant start, Instant end) {
+        return s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build(), AsyncResponseTransformer.toBytes())
+            .thenApply(bytes -> {
+                if (isPartition(prefix)) {
+                    return readAlerts(bytes.asByteArray(), start, end);
+                }
+                String severity = prefix.substring(ARCHIVE_PREFIX.length(), prefix.length() - 1).toUpperCase();
+                return List.of(new Alert(severity, sourceOf(bytes.asUtf8String())));
+            });
+    }
+
+    /**
+     * Reads the alerts routed within [start, end) from a newline-delimited JSON
+     * object, which Firehose may have GZIP-compressed.
+     */
+    private List<Alert> readAlerts(byte[] body, Instant start, Instant end) {
+        List<Alert> alerts = new ArrayList<>();
+        boolean gzip = body.length > 1 && (body[0] & 0xff) == 0x1f && (body[1] & 0xff) == 0x8b;
+        try (InputStream in = gzip ? new GZIPInputStream(new ByteArrayInputStream(body)) : new ByteArrayInputStream(body);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode alert = objectMapper.readTree(line);
+                JsonNode routedAt = alert.get("routedAt");
+                if (routedAt != null && routedAt.isTextual()) {
+                    Instant time = Instant.parse(routedAt.asText());
+                    if (time.isBefore(start) || !time.isBefore(end)) {
+                        continue;
+                    }
+                }
+                alerts.add(new Alert(text(alert, "severity").toUpperCase(), text(alert, "source")));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return alerts;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isTextual() && !value.asText().isEmpty() ? value.asText() : "unknown";
+    }
+
+    /**
+     * Reads the source of an archived alert, written either as JSON or, for older
+     * alerts, with Map.toString(). Returns "unknown" if there is none.
+     */
+    String sourceOf(String body) {
+        String trimmed = body.trim();
+        if (trimmed.startsWith("{\"")) {
+            try {
+                JsonNode source = objectMapper.readTree(trimmed).get("source");
+                if (source != null && source.isTextual() && !source.asText().isEmpty()) {
+                    return source.asText();
+                }
+            } catch (IOException e) {
+                // Fall through to the legacy format
+            }
+        }
+        Matcher matcher = LEGACY_SOURCE.matcher(trimmed);
+        if (matcher.find() && !matcher.group(1).isEmpty() && !"null".equals(matcher.group(1))) {
+            return matcher.group(1);
+        }
+        return "unknown";
+    }
+
+    /**
+     * Returns the saved checkpoint, or null if no backfill is in progress.
+     */
+    public Checkpoint loadCheckpoint() {
+        try {
+            byte[] body = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(CHECKPOINT_KEY)
+                    .build(), AsyncResponseTransformer.toBytes())
+                .join()
+                .asByteArray();
+            return objectMapper.readValue(body, Checkpoint.class);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NoSuchKeyException) {
+                return null;
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable backfill checkpoint " + CHECKPOINT_KEY, e);
+        }
+    }
+
+    private void saveCheckpoint(Checkpoint checkpoint) {
+        try {
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(CHECKPOINT_KEY)
+                    .contentType("application/json")
+                    .build(), AsyncRequestBody.fromBytes(objectMapper.writeValueAsBytes(checkpoint)))
+                .join();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write backfill checkpoint", e);
+        }
+    }
+
+    public void deleteCheckpoint() {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+            .bucket(bucket)
+            .key(CHECKPOINT_KEY)
+            .build()).join();
+    }
+}
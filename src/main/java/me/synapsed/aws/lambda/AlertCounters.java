@@ -0,0 +1,113 @@
+package me.synapsed.aws.lambda;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+/**
+ * Per-minute alert counters by severity and source. Each routed alert increments
+ * one atomic counter in an item keyed by its UTC hour and by minute, severity and
+ * source within the hour, so a day of alerts is at most 1440 items per
+ * severity/source pair however many alerts were routed, and rolling up a window
+ * reads one partition per hour instead of listing the alert archive. Items expire
+ * through DynamoDB TTL after {@link #RETENTION}.
+ */
+public class AlertCounters {
+    static final Duration RETENTION = Duration.ofDays(8);
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    /**
+     * Alert counts for a window.
+     */
+    public record Totals(long total, Map<String, Long> bySeverity, Map<String, Long> bySource) {
+    }
+
+    public AlertCounters(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Counts one alert routed at the given time.
+     */
+    public void increment(Instant routedAt, String severity, String source) {
+        increment(routedAt, severity, source, 1);
+    }
+
+    /**
+     * Counts alerts with the same severity and source routed in the same minute.
+     */
+    public void increment(Instant routedAt, String severity, String source, long count) {
+        String sourceValue = source == null || source.isEmpty() ? "unknown" : source;
+        int minute = routedAt.atZone(ZoneOffset.UTC).getMinute();
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(
+                "hourKey", AttributeValue.builder().s(HOUR.format(routedAt)).build(),
+                "minuteKey", AttributeValue.builder().s(minuteKey(minute, severity, sourceValue)).build()))
+            .updateExpression("ADD alertCount :count SET severity = :severity, alertSource = :source, expiresAt = :expiresAt")
+            .expressionAttributeValues(Map.of(
+                ":count", AttributeValue.builder().n(String.valueOf(count)).build(),
+                ":severity", AttributeValue.builder().s(severity).build(),
+                ":source", AttributeValue.builder().s(sourceValue).build(),
+                ":expiresAt", AttributeValue.builder()
+                    .n(String.valueOf(routedAt.plus(RETENTION).getEpochSecond())).build()))
+            .build();
+        dynamoDbClient.updateItem(request);
+    }
+
+    /**
+     * Sort key of a counter: the minute first, so an hour reads in time order.
+     */
+    static String minuteKey(int minute, String severity, String source) {
+        return String.format("%02d#%s#%s", minute, severity, source);
+    }
+
+    /**
+     * Sums the counters for minutes from start (inclusive) to end (exclusive).
+     */
+    public Totals rollUp(Instant start, Instant end) {
+        Instant startMinute = start.truncatedTo(ChronoUnit.MINUTES);
+        long total = 0;
+        Map<String, Long> bySeverity = new HashMap<>();
+        Map<String, Long> bySource = new HashMap<>();
+        for (Instant hour = start.truncatedTo(ChronoUnit.HOURS); hour.isBefore(end); hour = hour.plus(1, ChronoUnit.HOURS)) {
+            Map<String, AttributeValue> startKey = null;
+            do {
+                QueryResponse response = dynamoDbClient.query(QueryRequest.builder()
+                    .tableName(tableName)
+                    .keyConditionExpression("hourKey = :hour")
+                    .expressionAttributeValues(Map.of(":hour", AttributeValue.builder().s(HOUR.format(hour)).build()))
+                    .projectionExpression("minuteKey, severity, alertSource, alertCount")
+                    .exclusiveStartKey(startKey)
+                    .build());
+                for (Map<String, AttributeValue> item : response.items()) {
+                    Instant minute = hour.plus(Integer.parseInt(item.get("minuteKey").s().substring(0, 2)), ChronoUnit.MINUTES);
+                    if (minute.isBefore(startMinute) || !minute.isBefore(end)) {
+                        continue;
+                    }
+                    long count = Long.parseLong(item.get("alertCount").n());
+                    total += count;
+                    bySeverity.merge(item.get("severity").s(), count, Long::sum);
+                    bySource.merge(item.get("alertSource").s(), count, Long::sum);
+                }
+                startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey() : null;
+            } while (startKey != null);
+        }
+        return new Totals(total, bySeverity, bySource);
+    }
+}
@@ -1,107 +1,165 @@
 package me.synapsed.aws.lambda;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
-import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
-
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
-import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.firehose.FirehoseClient;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 
 /**
  * Lambda function for routing alerts based on severity.
- * Routes alerts to appropriate SNS topics and stores them in S3.
+ * Consumes EventBridge findings from the alert queue in batches, archives the batch
+ * to S3 through Firehose and then routes each archived alert to the appropriate SNS
+ * topic. Messages that fail are reported back to SQS as batch item failures, so only
+ * they are retried.
  */
-public class AlertRouter implements RequestHandler<ScheduledEvent, String> {
-    private final CloudWatchLogsClient logsClient;
+public class AlertRouter implements RequestHandler<SQSEvent, SQSBatchResponse> {
+    private final StructuredLogger logger;
     private final SnsClient snsClient;
-    private final S3Client s3Client;
-    private final String logGroupName;
     private final String criticalTopicArn;
     private final String warningTopicArn;
     private final String infoTopicArn;
-    private final String alertsBucket;
+    private final AlertArchive alertArchive;
+    private final AlertCounters alertCounters;
+    private final SeverityRulesLoader severityRules;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Alerts counted together: routed in the same minute with the same severity and source
+    private record CounterKey(Instant minute, String severity, String source) {
+    }
 
     public AlertRouter() {
-        this.logsClient = CloudWatchLogsClient.create();
-        this.snsClient = SnsClient.create();
-        this.s3Client = S3Client.create();
-        this.logGroupName = System.getenv("LOG_GROUP_NAME");
-        this.criticalTopicArn = System.getenv("CRITICAL_TOPIC_ARN");
-        this.warningTopicArn = System.getenv("WARNING_TOPIC_ARN");
-        this.infoTopicArn = System.getenv("INFO_TOPIC_ARN");
-        this.alertsBucket = System.getenv("ALERTS_BUCKET");
+        this(new StructuredLogger("alert-router"));
+    }
+
+    private AlertRouter(StructuredLogger logger) {
+        // Without an AppConfig application the built-in rules apply
+        this(logger, SnsClient.create(), System.getenv("CRITICAL_TOPIC_ARN"), System.getenv("WARNING_TOPIC_ARN"),
+            System.getenv("INFO_TOPIC_ARN"),
+            new AlertArchive(FirehoseClient.create(), System.getenv("ALERT_ARCHIVE_STREAM")),
+            new AlertCounters(DynamoDbClient.create(), System.getenv("ALERT_COUNTERS_TABLE")),
+            new SeverityRulesLoader(System.getenv("APPCONFIG_APPLICATION") == null ? null : AppConfigDataClient.create(),
+                System.getenv("APPCONFIG_APPLICATION"), System.getenv("APPCONFIG_ENVIRONMENT"),
+                System.getenv("APPCONFIG_PROFILE"), logger));
+    }
+
+    AlertRouter(StructuredLogger logger, SnsClient snsClient, String criticalTopicArn, String warningTopicArn,
+            String infoTopicArn, AlertArchive alertArchive, AlertCounters alertCounters,
+            SeverityRulesLoader severityRules) {
+        this.logger = logger;
+        this.snsClient = snsClient;
+        this.criticalTopicArn = criticalTopicArn;
+        this.warningTopicArn = warningTopicArn;
+        this.infoTopicArn = infoTopicArn;
+        this.alertArchive = alertArchive;
+        this.alertCounters = alertCounters;
+        this.severityRules = severityRules;
     }
 
     @Override
-    public String handleRequest(ScheduledEvent event, Context context) {
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        logger.begin(context);
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        List<SQSMessage> messages = event.getRecords() == null ? List.of() : event.getRecords();
+        logger.info("Processing " + messages.size() + " alert events");
+
+        // Classify each alert
+        List<Map<String, Object>> classified = new ArrayList<>();
+        Map<Map<String, Object>, String> messageIds = new IdentityHashMap<>();
+        for (SQSMessage message : messages) {
+            try {
+                Map<String, Object> alertData = parseAlertData(message.getBody());
+                alertData.put("severity", determineSeverity(alertData));
+                alertData.put("routedAt", Instant.now().toString());
+                classified.add(alertData);
+                messageIds.put(alertData, message.getMessageId());
+            } catch (Exception e) {
+                logger.error("Error parsing message " + message.getMessageId() + ": " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+            }
+        }
+
+        // Archive the batch for audit purposes before anything is published, so an
+        // alert that could not be archived is retried without paging anyone twice
+        List<Map<String, Object>> unarchived;
         try {
-            context.getLogger().log("Processing alert event: " + event);
-            logEvent("Processing alert event: " + event);
-            
-            // Parse the alert data
-            Map<String, Object> alertData = parseAlertData(event);
-            
-            // Determine alert severity
-            String severity = determineSeverity(alertData);
-            
-            // Route the alert to the appropriate SNS topic
-            String topicArn = routeAlert(severity, alertData);
-            
-            // Store alert in S3 for audit purposes
-            String alertKey = "alerts/" + severity.toLowerCase() + "/" + Instant.now().toString() + "-" + UUID.randomUUID().toString() + ".json";
-            storeAlertInS3(alertData, alertKey);
-            
-            // Log the routing decision
-            logEvent("Routed alert to " + severity + " topic: " + topicArn);
-            
-            return "Successfully routed alert to " + severity + " topic";
+            unarchived = alertArchive.archive(classified);
         } catch (Exception e) {
-            String errorMsg = "Error routing alert: " + e.getMessage();
-            context.getLogger().log(errorMsg);
-            logEvent(errorMsg);
-            throw new RuntimeException("Failed to route alert", e);
+            logger.error("Error archiving alerts: " + e.getMessage());
+            unarchived = classified;
+        }
+        for (Map<String, Object> alertData : unarchived) {
+            logger.error("Alert " + alertData.get("id") + " could not be archived");
+            failures.add(new SQSBatchResponse.BatchItemFailure(messageIds.remove(alertData)));
         }
+
+        // Route each archived alert to the appropriate SNS topic and count it for
+        // AlertAnalytics. An alert that fails to publish is retried, and archived again.
+        Map<CounterKey, Long> counts = new LinkedHashMap<>();
+        for (Map<String, Object> alertData : classified) {
+            String messageId = messageIds.get(alertData);
+            if (messageId == null) {
+                continue;
+            }
+            String severity = (String) alertData.get("severity");
+            try {
+                String topicArn = routeAlert(severity, alertData);
+                logger.info("Routed alert " + alertData.get("id") + " to " + severity + " topic: " + topicArn);
+            } catch (Exception e) {
+                logger.error("Error routing alert " + alertData.get("id") + ": " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(messageId));
+                continue;
+            }
+            counts.merge(new CounterKey(
+                Instant.parse((String) alertData.get("routedAt")).truncatedTo(ChronoUnit.MINUTES),
+                severity, (String) alertData.get("source")), 1L, Long::sum);
+        }
+        counts.forEach(this::countAlerts);
+
+        return new SQSBatchResponse(failures);
     }
 
-    private Map<String, Object> parseAlertData(ScheduledEvent event) {
+    /**
+     * Reads an EventBridge event delivered through the alert queue. The event id
+     * is kept as the alert id, so a redelivered alert keeps its identity.
+     */
+    private Map<String, Object> parseAlertData(String body) throws Exception {
+        Map<String, Object> event = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
         Map<String, Object> alertData = new HashMap<>();
-        alertData.put("id", UUID.randomUUID().toString());
-        alertData.put("timestamp", event.getTime().toString());
-        alertData.put("source", event.getSource());
-        alertData.put("detailType", "Scheduled Event");
-        alertData.put("account", event.getAccount());
-        alertData.put("region", event.getRegion());
-        alertData.put("resources", event.getResources());
-        alertData.put("detail", event.getDetail());
-        
+        alertData.put("id", event.getOrDefault("id", UUID.randomUUID().toString()));
+        alertData.put("timestamp", event.get("time"));
+        alertData.put("source", event.get("source"));
+        alertData.put("detailType", event.get("detail-type"));
+        alertData.put("account", event.get("account"));
+        alertData.put("region", event.get("region"));
+        alertData.put("resources", event.get("resources"));
+        alertData.put("detail", event.get("detail"));
+
         return alertData;
     }
 
+    @SuppressWarnings("unchecked")
     private String determineSeverity(Map<String, Object> alertData) {
-        // In a real implementation, you would analyze the alert data to determine severity
-        // For this example, we'll use a simple rule based on the source
-        String source = (String) alertData.get("source");
-        
-        if ("aws.securityhub".equals(source) || "aws.guardduty".equals(source)) {
-            return "CRITICAL";
-        } else if ("aws.config".equals(source)) {
-            return "WARNING";
-        } else {
-            return "INFO";
-        }
+        return severityRules.rules().classify((String) alertData.get("source"),
+            (String) alertData.get("detailType"), (Map<String, Object>) alertData.get("detail"));
     }
 
     private String routeAlert(String severity, Map<String, Object> alertData) {
@@ -129,28 +187,15 @@ public class AlertRouter implements RequestHandler<ScheduledEvent, String> {
         return topicArn;
     }
 
-    private void storeAlertInS3(Map<String, Object> alertData, String key) {
-        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-            .bucket(alertsBucket)
-            .key(key)
-            .build();
-            
-        s3Client.putObject(putObjectRequest, RequestBody.fromString(alertData.toString()));
-    }
-
-    private void logEvent(String message) {
-        List<InputLogEvent> logEvents = new ArrayList<>();
-        logEvents.add(InputLogEvent.builder()
-            .timestamp(System.currentTimeMillis())
-            .message(message)
-            .build());
-            
-        PutLogEventsRequest putLogEventsRequest = PutLogEventsRequest.builder()
-            .logGroupName(logGroupName)
-            .logStreamName("alert-router")
-            .logEvents(logEvents)
-            .build();
-            
-        logsClient.putLogEvents(putLogEventsRequest);
+    /**
+     * The alerts have already been published and archived, so a failed counter
+     * update is logged rather than failing their messages and re-sending them.
+     */
+    private void countAlerts(CounterKey key, long count) {
+        try {
+            alertCounters.increment(key.minute(), key.severity(), key.source(), count);
+        } catch (Exception e) {
+            logger.warn("Failed to count " + count + " " + key.severity() + " alerts: " + e.getMessage());
+        }
     }
-} 
\ No newline at end of file
+}
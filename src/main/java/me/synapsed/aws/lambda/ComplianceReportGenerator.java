@@ -12,9 +12,6 @@ import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
-import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.sns.SnsClient;
@@ -26,29 +23,27 @@ import software.amazon.awssdk.services.sns.model.PublishRequest;
  * generates compliance reports, and stores them in S3.
  */
 public class ComplianceReportGenerator implements RequestHandler<ScheduledEvent, String> {
-    private final CloudWatchLogsClient logsClient;
+    private final StructuredLogger logger;
     private final SnsClient snsClient;
     private final S3Client s3Client;
     private final ObjectMapper objectMapper;
-    private final String logGroupName;
     private final String notificationTopicArn;
     private final String complianceBucket;
 
     public ComplianceReportGenerator() {
-        this.logsClient = CloudWatchLogsClient.create();
+        this.logger = new StructuredLogger("compliance-reports");
         this.snsClient = SnsClient.create();
         this.s3Client = S3Client.create();
         this.objectMapper = new ObjectMapper();
-        this.logGroupName = System.getenv("LOG_GROUP_NAME");
         this.notificationTopicArn = System.getenv("NOTIFICATION_TOPIC_ARN");
         this.complianceBucket = System.getenv("COMPLIANCE_BUCKET");
     }
 
     @Override
     public String handleRequest(ScheduledEvent event, Context context) {
+        logger.begin(context);
         try {
-            context.getLogger().log("Starting compliance report generation");
-            logEvent("Starting compliance report generation");
+            logger.info("Starting compliance report generation");
             
             // Generate report with minimal processing
             Map<String, Object> report = generateComplianceReport();
@@ -56,7 +51,7 @@ public class ComplianceReportGenerator implements RequestHandler<ScheduledEvent,
             // Store report in S3 with minimal metadata
             String reportKey = "reports/compliance-" + Instant.now().toString() + ".json";
             storeReportInS3(report, reportKey);
-            logEvent("Stored compliance report in S3: " + reportKey);
+            logger.info("Stored compliance report in S3: " + reportKey);
             
             // Send notification only for important events
             if (report.containsKey("findings") && ((List<?>)report.get("findings")).size() > 0) {
@@ -65,9 +60,7 @@ public class ComplianceReportGenerator implements RequestHandler<ScheduledEvent,
             
             return "Successfully generated compliance report";
         } catch (Exception e) {
-            String errorMsg = "Error generating compliance report: " + e.getMessage();
-            context.getLogger().log(errorMsg);
-            logEvent(errorMsg);
+            logger.error("Error generating compliance report: " + e.getMessage());
             throw new RuntimeException("Failed to generate compliance report", e);
         }
     }
@@ -102,19 +95,4 @@ public class ComplianceReportGenerator implements RequestHandler<ScheduledEvent,
         snsClient.publish(publishRequest);
     }
 
-    private void logEvent(String message) {
-        List<InputLogEvent> logEvents = new ArrayList<>();
-        logEvents.add(InputLogEvent.builder()
-            .timestamp(System.currentTimeMillis())
-            .message(message)
-            .build());
-            
-        PutLogEventsRequest putLogEventsRequest = PutLogEventsRequest.builder()
-            .logGroupName(logGroupName)
-            .logStreamName("compliance-reports")
-            .logEvents(logEvents)
-            .build();
-            
-        logsClient.putLogEvents(putLogEventsRequest);
-    }
 } 
\ No newline at end of file
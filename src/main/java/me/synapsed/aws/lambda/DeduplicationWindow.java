@@ -0,0 +1,93 @@
+package me.synapsed.aws.lambda;
+
+import java.util.Arrays;
+
+/**
+ * Remembers recently delivered Kinesis records so redeliveries can be dropped.
+ * Each record is reduced to a 64-bit hash of its shard id and sequence number and
+ * kept in an open-addressed long set. Two generations are kept: when the current
+ * one holds capacity entries it becomes the previous one and the oldest is
+ * discarded. Memory is fixed at two tables of two to four slots per entry of
+ * capacity, and the last capacity to 2 * capacity records are remembered. A hash
+ * collision between two live records, which would drop a record that was never
+ * delivered, is a 64-bit event and is ignored.
+ */
+public class DeduplicationWindow {
+    private static final long EMPTY = 0L;
+
+    private final int capacity;
+    private long[] current;
+    private long[] previous;
+    private int size;
+
+    public DeduplicationWindow(int capacity) {
+        this.capacity = capacity;
+        // Keep the load factor at or below one half
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        this.current = new long[tableSize];
+        this.previous = new long[tableSize];
+    }
+
+    public synchronized boolean contains(long key) {
+        return contains(current, key) || contains(previous, key);
+    }
+
+    /**
+     * Records a key, rotating generations first if the current one is full.
+     */
+    public synchronized void add(long key) {
+        if (contains(current, key)) {
+            return;
+        }
+        if (size == capacity) {
+            long[] discarded = previous;
+            previous = current;
+            Arrays.fill(discarded, EMPTY);
+            current = discarded;
+            size = 0;
+        }
+        int mask = current.length - 1;
+        int slot = (int) key & mask;
+        while (current[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        current[slot] = key;
+        size++;
+    }
+
+    private static boolean contains(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = (int) key & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Hashes a shard id and sequence number to a non-zero key.
+     */
+    public static long key(String shardId, String sequenceNumber) {
+        long h = 0xcbf29ce484222325L;
+        h = hash(h, shardId);
+        h = (h ^ ':') * 0x100000001b3L;
+        h = hash(h, sequenceNumber);
+        // murmur3 finalizer, so the low bits used for the slot are well mixed
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1L : h;
+    }
+
+    private static long hash(long h, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -2,18 +2,13 @@ package me.synapsed.aws.lambda;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent;
 
-import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
-import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 
@@ -22,25 +17,23 @@ import software.amazon.awssdk.services.sns.model.PublishRequest;
  * Monitors alert response times and escalates to higher levels based on severity and time thresholds.
  */
 public class EscalationManager implements RequestHandler<SNSEvent, String> {
-    private final CloudWatchLogsClient logsClient;
+    private final StructuredLogger logger;
     private final SnsClient snsClient;
-    private final String logGroupName;
     private final String escalationTopicArn;
     private final Map<String, Instant> alertStartTimes;
 
     public EscalationManager() {
-        this.logsClient = CloudWatchLogsClient.create();
+        this.logger = new StructuredLogger("escalation-manager");
         this.snsClient = SnsClient.create();
-        this.logGroupName = System.getenv("LOG_GROUP_NAME");
         this.escalationTopicArn = System.getenv("ESCALATION_TOPIC_ARN");
         this.alertStartTimes = new HashMap<>();
     }
 
     @Override
     public String handleRequest(SNSEvent event, Context context) {
+        logger.begin(context);
         try {
-            context.getLogger().log("Processing escalation check: " + event.getRecords().size() + " records");
-            logEvent("Processing escalation check: " + event.getRecords().size() + " records");
+            logger.info("Processing escalation check: " + event.getRecords().size() + " records");
             
             for (SNSEvent.SNSRecord record : event.getRecords()) {
                 String message = record.getSNS().getMessage();
@@ -53,7 +46,7 @@ public class EscalationManager implements RequestHandler<SNSEvent, String> {
                 // Check if this is a new alert
                 if (!alertStartTimes.containsKey(alertId)) {
                     alertStartTimes.put(alertId, Instant.now());
-                    logEvent("New alert received: " + alertId + " with severity " + severity);
+                    logger.info("New alert received: " + alertId + " with severity " + severity);
                     continue;
                 }
                 
@@ -63,9 +56,7 @@ public class EscalationManager implements RequestHandler<SNSEvent, String> {
             
             return "Successfully processed " + event.getRecords().size() + " alerts for escalation";
         } catch (Exception e) {
-            String errorMsg = "Error managing escalations: " + e.getMessage();
-            context.getLogger().log(errorMsg);
-            logEvent(errorMsg);
+            logger.error("Error managing escalations: " + e.getMessage());
             throw new RuntimeException("Failed to manage escalations", e);
         }
     }
@@ -121,22 +112,7 @@ public class EscalationManager implements RequestHandler<SNSEvent, String> {
         snsClient.publish(publishRequest);
         
         // Log the escalation
-        logEvent("Escalated alert " + alertId + " after " + minutesSinceAlert + " minutes");
+        logger.info("Escalated alert " + alertId + " after " + minutesSinceAlert + " minutes");
     }
 
-    private void logEvent(String message) {
-        List<InputLogEvent> logEvents = new ArrayList<>();
-        logEvents.add(InputLogEvent.builder()
-            .timestamp(System.currentTimeMillis())
-            .message(message)
-            .build());
-            
-        PutLogEventsRequest putLogEventsRequest = PutLogEventsRequest.builder()
-            .logGroupName(logGroupName)
-            .logStreamName("escalation-manager")
-            .logEvents(logEvents)
-            .build();
-            
-        logsClient.putLogEvents(putLogEventsRequest);
-    }
 } 
\ No newline at end of file
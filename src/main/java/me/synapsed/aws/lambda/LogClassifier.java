@@ -0,0 +1,126 @@
+package me.synapsed.aws.lambda;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies log entries as application, security, audit or performance logs.
+ * Rules are compiled once and checked in order against top-level fields of the
+ * entry; the first match wins and entries matching no rule are application logs.
+ * The classifier only looks at the fields named by its rules, so callers that
+ * stream a log entry can capture just those.
+ */
+public class LogClassifier {
+    public enum Category {
+        APPLICATION, SECURITY, AUDIT, PERFORMANCE;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Matches when the field is present and, if a pattern is given, when its
+     * text value contains a match for the pattern.
+     */
+    public record Rule(Category category, String field, Pattern pattern) {
+        public static Rule present(Category category, String field) {
+            return new Rule(category, field, null);
+        }
+
+        public static Rule matching(Category category, String field, String regex) {
+            return new Rule(category, field, Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+        }
+
+        boolean matches(Map<String, String> fields) {
+            if (!fields.containsKey(field)) {
+                return false;
+            }
+            if (pattern == null) {
+                return true;
+            }
+            String value = fields.get(field);
+            return value != null && pattern.matcher(value).find();
+        }
+    }
+
+    static final List<Rule> DEFAULT_RULES = List.of(
+        // An explicit category set by the emitting service wins
+        Rule.matching(Category.AUDIT, "category", "^audit$"),
+        Rule.matching(Category.SECURITY, "category", "^security$"),
+        Rule.matching(Category.PERFORMANCE, "category", "^(performance|metrics?)$"),
+        Rule.matching(Category.APPLICATION, "category", "^(application|app)$"),
+        Rule.matching(Category.AUDIT, "log_type", "^audit$"),
+        Rule.matching(Category.SECURITY, "log_type", "^security$"),
+        Rule.matching(Category.PERFORMANCE, "log_type", "^(performance|metrics?)$"),
+        // CloudTrail-style records and explicit audit markers
+        Rule.present(Category.AUDIT, "eventName"),
+        Rule.present(Category.AUDIT, "userIdentity"),
+        Rule.matching(Category.AUDIT, "audit", "^true$"),
+        Rule.matching(Category.SECURITY, "service", "security|incident|auth|waf|guardduty"),
+        Rule.matching(Category.SECURITY, "message",
+            "\\b(unauthori[sz]ed|forbidden|access denied|authentication failed|invalid (signature|token|proof)|brute[- ]?force|intrusion)\\b"),
+        Rule.present(Category.PERFORMANCE, "latencyMs"),
+        Rule.present(Category.PERFORMANCE, "durationMs"),
+        Rule.present(Category.PERFORMANCE, "duration_ms"),
+        Rule.matching(Category.PERFORMANCE, "message", "\\b(latency|p9[59]|throughput|slow (query|request)|cold start)\\b")
+    );
+
+    private static final int MAX_PARTITION_VALUE_LENGTH = 64;
+
+    private final List<Rule> rules;
+    private final Set<String> fieldNames;
+
+    public LogClassifier() {
+        this(DEFAULT_RULES);
+    }
+
+    public LogClassifier(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+        Set<String> names = new LinkedHashSet<>();
+        for (Rule rule : rules) {
+            names.add(rule.field());
+        }
+        this.fieldNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * The top-level fields the rules read. A field that is present but not a
+     * string, number or boolean should be captured with a null value.
+     */
+    public Set<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    public Category classify(Map<String, String> fields) {
+        for (Rule rule : rules) {
+            if (rule.matches(fields)) {
+                return rule.category();
+            }
+        }
+        return Category.APPLICATION;
+    }
+
+    /**
+     * Normalizes a field value for use in an S3 partition prefix: lower case,
+     * characters other than letters, digits, '-' and '_' replaced with '-', and
+     * at most 64 characters. Missing or empty values become "unknown".
+     */
+    public static String partitionValue(String value) {
+        if (value == null || value.isEmpty()) {
+            return "unknown";
+        }
+        int length = Math.min(value.length(), MAX_PARTITION_VALUE_LENGTH);
+        StringBuilder normalized = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            normalized.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' ? c : '-');
+        }
+        return normalized.toString();
+    }
+}
@@ -4,54 +4,712 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
 import com.amazonaws.services.lambda.runtime.events.KinesisEvent.KinesisEventRecord;
-import software.amazon.awssdk.services.firehose.FirehoseClient;
-import software.amazon.awssdk.services.firehose.model.PutRecordRequest;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.firehose.FirehoseAsyncClient;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchRequest;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponseEntry;
 import software.amazon.awssdk.services.firehose.model.Record;
 import software.amazon.awssdk.core.SdkBytes;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
-public class LogProcessor implements RequestHandler<KinesisEvent, Void> {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final FirehoseClient firehoseClient = FirehoseClient.create();
-    private static final String DELIVERY_STREAM_NAME = System.getenv("DELIVERY_STREAM_NAME");
+/**
+ * Lambda function for enriching Kinesis log records and forwarding them to Firehose.
+ * Records that cannot be parsed or delivered are reported as batch item failures so
+ * Lambda retries them instead of dropping them.
+ */
+public class LogProcessor implements RequestHandler<KinesisEvent, StreamsEventResponse> {
+    private static final JsonFactory jsonFactory = new ObjectMapper().getFactory();
+    private static final Set<String> ENRICHED_FIELDS = Set.of("timestamp", "source", "processor_id", "partition_keys");
+    private static final Set<String> SAMPLING_KEYS = Set.of("trace_id", "request_id");
+    static final String METRICS_NAMESPACE = "Synapsed/Logging";
+    // Firehose limits for PutRecordBatch
+    static final int MAX_BATCH_RECORDS = 500;
+    static final long MAX_BATCH_BYTES = 4L * 1024 * 1024;
+    static final int MAX_RECORD_BYTES = 1000 * 1024;
+    private static final int MAX_PUT_ATTEMPTS = 5;
+    private static final long RETRY_BASE_DELAY_MS = 50;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    private static final int DEFAULT_DEDUP_WINDOW_RECORDS = 100_000;
+    private static final int MAX_DEDUP_WINDOW_RECORDS = 1 << 22;
+    private final FirehoseAsyncClient firehoseClient;
+    private final String deliveryStreamName;
+    // With RECORD_AGGREGATION_MAX_BYTES set, enriched lines are packed into newline-delimited
+    // records so small log lines do not each pay for a 5 KB Firehose billing increment
+    private final int aggregationMaxBytes;
+    private final int maxInFlight;
+    private final boolean preserveOrder;
+    private final LogClassifier classifier = new LogClassifier();
+    private final Set<String> capturedFields;
+    private final Set<String> partitionServices;
+    // Drops entries by level, service and per-source rate before they are sent
+    private final LogSampler sampler;
+    // Records already delivered by an earlier invocation of this container, keyed on
+    // shard id and sequence number, are skipped
+    private final DeduplicationWindow deduplication;
+    private final ThreadLocal<ByteArrayOutputStream> outputBuffer =
+        ThreadLocal.withInitial(() -> new ByteArrayOutputStream(8192));
+    private final ThreadLocal<ByteArrayOutputStream> attributesBuffer =
+        ThreadLocal.withInitial(() -> new ByteArrayOutputStream(8192));
+    private final ThreadLocal<Map<String, String>> capturedBuffer = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Set<String>> columnsBuffer = ThreadLocal.withInitial(HashSet::new);
+
+    public LogProcessor() {
+        this(System.getenv());
+    }
+
+    private LogProcessor(Map<String, String> env) {
+        this(FirehoseAsyncClient.builder()
+            .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(parseInt(env, "FIREHOSE_MAX_IN_FLIGHT", DEFAULT_MAX_IN_FLIGHT)))
+            .build(), env);
+    }
+
+    public LogProcessor(FirehoseAsyncClient firehoseClient, String deliveryStreamName) {
+        this(firehoseClient, Map.of("DELIVERY_STREAM_NAME", deliveryStreamName));
+    }
+
+    public LogProcessor(FirehoseAsyncClient firehoseClient, Map<String, String> env) {
+        this.firehoseClient = firehoseClient;
+        this.deliveryStreamName = env.get("DELIVERY_STREAM_NAME");
+        this.aggregationMaxBytes = Math.min(parseInt(env, "RECORD_AGGREGATION_MAX_BYTES", 0), MAX_RECORD_BYTES);
+        this.maxInFlight = Math.max(1, parseInt(env, "FIREHOSE_MAX_IN_FLIGHT", DEFAULT_MAX_IN_FLIGHT));
+        this.preserveOrder = Boolean.parseBoolean(env.getOrDefault("FIREHOSE_PRESERVE_ORDER", "false"));
+        Set<String> fields = new HashSet<>(classifier.getFieldNames());
+        fields.add("service");
+        fields.add("level");
+        this.capturedFields = fields;
+        this.partitionServices = parseSet(env, "LOG_PARTITION_SERVICES");
+        LogSampler logSampler = new LogSampler(env);
+        this.sampler = logSampler.isEnabled() ? logSampler : null;
+        int dedupWindowRecords = Math.min(parseInt(env, "DEDUP_WINDOW_RECORDS", DEFAULT_DEDUP_WINDOW_RECORDS),
+            MAX_DEDUP_WINDOW_RECORDS);
+        this.deduplication = dedupWindowRecords > 0 ? new DeduplicationWindow(dedupWindowRecords) : null;
+    }
+
+    static int parseInt(Map<String, String> env, String name, int defaultValue) {
+        String value = env.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    static Set<String> parseSet(Map<String, String> env, String name) {
+        String value = env.get(name);
+        if (value == null || value.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> values = new HashSet<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                values.add(item.trim());
+            }
+        }
+        return Set.copyOf(values);
+    }
+
+    /**
+     * Firehose records for one PutRecordBatch call, with the Kinesis sequence
+     * numbers each record was built from.
+     */
+    private static final class PendingBatch {
+        private final List<Record> records = new ArrayList<>();
+        private final List<List<String>> sequenceNumbers = new ArrayList<>();
+        private long bytes;
+
+        private boolean fits(int length) {
+            return records.size() < MAX_BATCH_RECORDS && bytes + length <= MAX_BATCH_BYTES;
+        }
+
+        private void add(byte[] data, List<String> sources) {
+            records.add(Record.builder().data(SdkBytes.fromByteArrayUnsafe(data)).build());
+            sequenceNumbers.add(sources);
+            bytes += data.length;
+        }
+    }
+
+    /**
+     * Entries dropped by the sampler in one invocation, by service. They are logged
+     * as embedded metric format documents rather than reported as failures.
+     */
+    private static final class DroppedCounts {
+        private final Map<String, int[]> byService = new HashMap<>();
+        private int total;
+
+        private void add(String service, LogSampler.Decision decision) {
+            int[] counts = byService.computeIfAbsent(service, key -> new int[2]);
+            counts[decision == LogSampler.Decision.SAMPLED ? 0 : 1]++;
+            total++;
+        }
+    }
+
+    /**
+     * The batches of one invocation and the PutRecordBatch calls sending them. Each
+     * call completes with the indexes of the records it could not deliver. Batches
+     * stay within the Firehose limits of 500 records and 4 MiB per call and go out
+     * through the async client with at most FIREHOSE_MAX_IN_FLIGHT calls outstanding,
+     * or one after another with FIREHOSE_PRESERVE_ORDER; the invocation waits for all
+     * of them before returning.
+     */
+    private final class Dispatcher {
+        private final Context context;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final List<PendingBatch> batches = new ArrayList<>();
+        private final List<CompletableFuture<List<Integer>>> results = new ArrayList<>();
+        private CompletableFuture<List<Integer>> previous = CompletableFuture.completedFuture(List.of());
+        private PendingBatch current = new PendingBatch();
+
+        private Dispatcher(Context context) {
+            this.context = context;
+        }
+
+        /**
+         * Adds a Firehose record, dispatching the current batch first if the record
+         * would take it past the PutRecordBatch limits.
+         */
+        private void add(byte[] data, List<String> sources) {
+            if (!current.fits(data.length)) {
+                dispatch();
+            }
+            current.add(data, sources);
+        }
+
+        private void dispatch() {
+            if (current.records.isEmpty()) {
+                return;
+            }
+            PendingBatch batch = current;
+            current = new PendingBatch();
+            batches.add(batch);
+            List<Integer> all = new ArrayList<>(batch.records.size());
+            for (int i = 0; i < batch.records.size(); i++) {
+                all.add(i);
+            }
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(CompletableFuture.completedFuture(all));
+                return;
+            }
+            CompletableFuture<List<Integer>> result = preserveOrder
+                ? previous.thenCompose(ignored -> send(batch, all, 0, context))
+                : send(batch, all, 0, context);
+            result.whenComplete((undelivered, error) -> inFlight.release());
+            previous = result;
+            results.add(result);
+        }
+
+        /**
+         * Waits for every call and adds the Kinesis records behind undelivered
+         * entries to failures. Returns the number of Kinesis records delivered.
+         */
+        private int await(List<StreamsEventResponse.BatchItemFailure> failures) {
+            dispatch();
+            int delivered = 0;
+            for (int i = 0; i < batches.size(); i++) {
+                PendingBatch batch = batches.get(i);
+                List<Integer> undelivered = results.get(i).join();
+                for (List<String> sources : batch.sequenceNumbers) {
+                    delivered += sources.size();
+                }
+                if (!undelivered.isEmpty()) {
+                    context.getLogger().log("Unable to deliver " + undelivered.size() + " records to Firehose");
+                }
+                for (int index : undelivered) {
+                    List<String> sources = batch.sequenceNumbers.get(index);
+                    delivered -= sources.size();
+                    for (String sequenceNumber : sources) {
+                        failures.add(new StreamsEventResponse.BatchItemFailure(sequenceNumber));
+                    }
+                }
+            }
+            return delivered;
+        }
+    }
 
     @Override
-    public Void handleRequest(KinesisEvent event, Context context) {
+    public StreamsEventResponse handleRequest(KinesisEvent event, Context context) {
         List<KinesisEventRecord> records = event.getRecords();
         context.getLogger().log("Processing " + records.size() + " records");
 
-        for (KinesisEventRecord record : records) {
+        boolean aggregate = aggregationMaxBytes > 0;
+        // A newline is appended to each line when aggregating
+        int maxLineBytes = aggregate ? MAX_RECORD_BYTES - 1 : MAX_RECORD_BYTES;
+        List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<>();
+        Dispatcher dispatcher = new Dispatcher(context);
+        ByteArrayOutputStream aggregated = aggregate ? new ByteArrayOutputStream(aggregationMaxBytes) : null;
+        List<String> aggregatedSources = new ArrayList<>();
+        DroppedCounts dropped = new DroppedCounts();
+        // Keys of the records to remember once delivered; zero for duplicates
+        long[] keys = deduplication != null ? new long[records.size()] : null;
+        int duplicates = 0;
+        for (int i = 0; i < records.size(); i++) {
+            KinesisEventRecord record = records.get(i);
+            String sequenceNumber = record.getKinesis().getSequenceNumber();
+            if (keys != null) {
+                long key = DeduplicationWindow.key(shardId(record), sequenceNumber);
+                if (deduplication.contains(key)) {
+                    duplicates++;
+                    continue;
+                }
+                keys[i] = key;
+            }
+            byte[] payload;
             try {
-                // Extract log data from Kinesis record
-                String data = new String(record.getKinesis().getData().array(), StandardCharsets.UTF_8);
-                ObjectNode logEntry = (ObjectNode) objectMapper.readTree(data);
-
-                // Add metadata
-                logEntry.put("timestamp", Instant.now().toString());
-                logEntry.put("source", "kinesis");
-                logEntry.put("processor_id", context.getAwsRequestId());
-
-                // Forward to Firehose
-                PutRecordRequest putRecordRequest = PutRecordRequest.builder()
-                    .deliveryStreamName(DELIVERY_STREAM_NAME)
-                    .record(Record.builder()
-                        .data(SdkBytes.fromString(objectMapper.writeValueAsString(logEntry), StandardCharsets.UTF_8))
-                        .build())
-                    .build();
+                payload = enrich(record.getKinesis().getData(), System.currentTimeMillis(), context.getAwsRequestId(),
+                    sequenceNumber, dropped);
+            } catch (Exception e) {
+                context.getLogger().log("Error processing record " + sequenceNumber + ": " + e.getMessage());
+                failures.add(new StreamsEventResponse.BatchItemFailure(sequenceNumber));
+                continue;
+            }
+            if (payload == null) {
+                continue;
+            }
+            if (payload.length > maxLineBytes) {
+                context.getLogger().log("Rejecting record " + sequenceNumber
+                    + ": " + payload.length + " bytes exceeds the Firehose record limit");
+                failures.add(new StreamsEventResponse.BatchItemFailure(sequenceNumber));
+                continue;
+            }
+            if (!aggregate) {
+                dispatcher.add(payload, List.of(sequenceNumber));
+                continue;
+            }
+            if (aggregated.size() > 0 && aggregated.size() + payload.length + 1 > aggregationMaxBytes) {
+                dispatcher.add(aggregated.toByteArray(), List.copyOf(aggregatedSources));
+                aggregated.reset();
+                aggregatedSources.clear();
+            }
+            aggregated.write(payload, 0, payload.length);
+            aggregated.write('\n');
+            aggregatedSources.add(sequenceNumber);
+        }
+        if (aggregate && aggregated.size() > 0) {
+            dispatcher.add(aggregated.toByteArray(), List.copyOf(aggregatedSources));
+        }
+        int delivered = dispatcher.await(failures);
+        if (keys != null) {
+            remember(records, keys, failures);
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, int[]> entry : dropped.byService.entrySet()) {
+            Map<String, Integer> metrics = new LinkedHashMap<>();
+            metrics.put("LogsSampledOut", entry.getValue()[0]);
+            metrics.put("LogsRateLimited", entry.getValue()[1]);
+            context.getLogger().log(metricsDocument(now, "Service", entry.getKey(), metrics));
+        }
+        if (keys != null) {
+            Map<String, Integer> metrics = new LinkedHashMap<>();
+            metrics.put("RecordsReceived", records.size());
+            metrics.put("DuplicatesDropped", duplicates);
+            context.getLogger().log(metricsDocument(now, null, null, metrics));
+        }
 
-                firehoseClient.putRecord(putRecordRequest);
-                context.getLogger().log("Successfully processed record: " + record.getKinesis().getSequenceNumber());
+        context.getLogger().log("Delivered " + delivered + " records to Firehose, " + failures.size() + " failed, "
+            + dropped.total + " dropped by sampling, " + duplicates + " duplicates skipped");
+        // Lambda resumes the shard from the lowest failed sequence number
+        return new StreamsEventResponse(failures);
+    }
 
-            } catch (Exception e) {
-                context.getLogger().log("Error processing record: " + e.getMessage());
+    /**
+     * Copies a JSON log object from the Kinesis payload token by token and appends the
+     * timestamp, source, processor_id and partition_keys fields, replacing any existing
+     * values. The payload is parsed in place from the record's buffer and no tree is
+     * built, which keeps per-record garbage low; only the top-level fields the
+     * classifier needs are captured on the way. The partition_keys (category from
+     * {@link LogClassifier}, service and level) drive the delivery stream's dynamic
+     * partitioning in S3.
+     * Top-level fields that are schema columns are written through {@link #writeColumn},
+     * and only the first of several spellings of the same column is kept. Every other
+     * field is collected into one JSON object written as the attributes column, so the
+     * Parquet archive keeps fields the schema does not name.
+     * Returns null if the sampler drops the entry, keyed by its trace id, request id or
+     * failing both the sequence number, and counts it in dropped.
+     *
+     * @throws JsonParseException if the payload is not a JSON object
+     */
+    private byte[] enrich(ByteBuffer data, long timestamp, String processorId, String sequenceNumber,
+                          DroppedCounts dropped) throws IOException {
+        ByteArrayOutputStream out = outputBuffer.get();
+        out.reset();
+        ByteArrayOutputStream attributesOut = attributesBuffer.get();
+        attributesOut.reset();
+        Map<String, String> captured = capturedBuffer.get();
+        captured.clear();
+        Set<String> columns = columnsBuffer.get();
+        columns.clear();
+        try (JsonParser parser = createParser(data);
+             JsonGenerator generator = jsonFactory.createGenerator(out);
+             JsonGenerator attributes = jsonFactory.createGenerator(attributesOut)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            generator.writeStartObject();
+            attributes.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                LogSchema.Column column = LogSchema.columnFor(field);
+                if (ENRICHED_FIELDS.contains(field) || (column != null && ENRICHED_FIELDS.contains(column.name()))) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (capturedFields.contains(field)) {
+                    captured.put(field, token.isScalarValue() ? parser.getText() : null);
+                }
+                if (column != null && SAMPLING_KEYS.contains(column.name()) && token.isScalarValue()) {
+                    captured.putIfAbsent(column.name(), parser.getText());
+                }
+                if (column != null) {
+                    // The first spelling of a column wins; a second one would give the row two
+                    // values for the column, which the Parquet conversion cannot resolve
+                    if (columns.add(column.name())) {
+                        writeColumn(generator, column, parser, token);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    continue;
+                }
+                attributes.writeFieldName(field);
+                attributes.copyCurrentStructure(parser);
+            }
+            String category = classifier.classify(captured).key();
+            String service = servicePartition(captured.get("service"));
+            String level = levelPartition(captured.get("level"));
+            if (sampler != null) {
+                String key = captured.getOrDefault("trace_id", captured.getOrDefault("request_id", sequenceNumber));
+                LogSampler.Decision decision = sampler.decide(category, service, level, key);
+                if (decision != LogSampler.Decision.KEEP) {
+                    dropped.add(service, decision);
+                    return null;
+                }
+            }
+            attributes.writeEndObject();
+            attributes.flush();
+            generator.writeFieldName(LogSchema.ATTRIBUTES.name());
+            generator.writeUTF8String(attributesOut.toByteArray(), 0, attributesOut.size());
+            generator.writeNumberField("timestamp", timestamp);
+            generator.writeStringField("source", "kinesis");
+            generator.writeStringField("processor_id", processorId);
+            // Read by the delivery stream's dynamic partitioning query
+            generator.writeObjectFieldStart("partition_keys");
+            generator.writeStringField("category", category);
+            generator.writeStringField("service", service);
+            generator.writeStringField("level", level);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Adds the records of this invocation that were not reported as failures to the
+     * deduplication window, so a redelivery of the batch skips them.
+     */
+    private void remember(List<KinesisEventRecord> records, long[] keys,
+                          List<StreamsEventResponse.BatchItemFailure> failures) {
+        Set<String> failed = new HashSet<>();
+        for (StreamsEventResponse.BatchItemFailure failure : failures) {
+            failed.add(failure.getItemIdentifier());
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0 && !failed.contains(records.get(i).getKinesis().getSequenceNumber())) {
+                deduplication.add(keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the shard id from the record's event id, which has the form
+     * shardId-000000000000:sequenceNumber.
+     */
+    private static String shardId(KinesisEventRecord record) {
+        String eventId = record.getEventID();
+        if (eventId == null) {
+            return "";
+        }
+        int separator = eventId.indexOf(':');
+        return separator < 0 ? eventId : eventId.substring(0, separator);
+    }
+
+    /**
+     * Builds an embedded metric format document with count metrics and at most one
+     * dimension. Each document has to be logged as its own event.
+     */
+    private static String metricsDocument(long timestamp, String dimension, String dimensionValue,
+                                          Map<String, Integer> metrics) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("_aws");
+            generator.writeNumberField("Timestamp", timestamp);
+            generator.writeArrayFieldStart("CloudWatchMetrics");
+            generator.writeStartObject();
+            generator.writeStringField("Namespace", METRICS_NAMESPACE);
+            generator.writeArrayFieldStart("Dimensions");
+            generator.writeStartArray();
+            if (dimension != null) {
+                generator.writeString(dimension);
+            }
+            generator.writeEndArray();
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("Metrics");
+            for (String name : metrics.keySet()) {
+                generator.writeStartObject();
+                generator.writeStringField("Name", name);
+                generator.writeStringField("Unit", "Count");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            if (dimension != null) {
+                generator.writeStringField(dimension, dimensionValue);
+            }
+            for (Map.Entry<String, Integer> metric : metrics.entrySet()) {
+                generator.writeNumberField(metric.getKey(), metric.getValue());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write metrics", e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Bounds the service partition to LOG_PARTITION_SERVICES when it is set, so an
+     * unexpected service name cannot open a new S3 partition.
+     */
+    private String servicePartition(String service) {
+        String value = LogClassifier.partitionValue(service);
+        if (partitionServices.isEmpty() || value.equals("unknown") || partitionServices.contains(value)) {
+            return value;
+        }
+        return "other";
+    }
+
+    static String levelPartition(String level) {
+        String value = LogClassifier.partitionValue(level);
+        switch (value) {
+            case "unknown":
+                return value;
+            case "warning":
+                return "warn";
+            case "critical":
+                return "fatal";
+            default:
+                return LogSchema.LEVELS.contains(value) ? value : "other";
+        }
+    }
+
+    /**
+     * Writes the value at the parser's current token under the column name, coerced
+     * to the column type, so the delivery stream's Parquet conversion does not reject
+     * the record. Numeric strings become numbers, ISO-8601 strings and epoch seconds
+     * become epoch milliseconds, and values that cannot be coerced are written as null.
+     */
+    private static void writeColumn(JsonGenerator generator, LogSchema.Column column, JsonParser parser,
+                                    JsonToken token) throws IOException {
+        generator.writeFieldName(column.name());
+        if (token == JsonToken.VALUE_NULL) {
+            generator.writeNull();
+            return;
+        }
+        if (!token.isScalarValue()) {
+            if (column.type() == LogSchema.Type.STRING) {
+                generator.writeString(parser.readValueAsTree().toString());
+            } else {
+                parser.skipChildren();
+                generator.writeNull();
             }
+            return;
+        }
+        Double number;
+        switch (column.type()) {
+            case STRING:
+                generator.writeString(parser.getText());
+                break;
+            case BOOLEAN:
+                if (token.isBoolean()) {
+                    generator.writeBoolean(token == JsonToken.VALUE_TRUE);
+                } else if (token == JsonToken.VALUE_STRING && isBoolean(parser.getText())) {
+                    generator.writeBoolean(Boolean.parseBoolean(parser.getText().trim()));
+                } else {
+                    generator.writeNull();
+                }
+                break;
+            case BIGINT:
+                if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                    generator.writeNumber(parser.getLongValue());
+                    break;
+                }
+                number = toDouble(parser, token);
+                if (number == null || Math.abs(number) >= Long.MAX_VALUE) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(Math.round(number));
+                }
+                break;
+            case DOUBLE:
+                number = toDouble(parser, token);
+                if (number == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(number);
+                }
+                break;
+            case TIMESTAMP_MILLIS:
+                Long millis = toEpochMillis(parser, token);
+                if (millis == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(millis);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unhandled column type " + column.type());
+        }
+    }
+
+    private static boolean isBoolean(String text) {
+        String value = text.trim();
+        return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false");
+    }
+
+    private static Double toDouble(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isNumeric()) {
+            return parser.getDoubleValue();
         }
+        if (token != JsonToken.VALUE_STRING) {
+            return null;
+        }
+        try {
+            double value = Double.parseDouble(parser.getText().trim());
+            return Double.isFinite(value) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads epoch seconds or milliseconds, as a number or numeric string, or an
+     * ISO-8601 date-time; date-times without an offset are taken as UTC.
+     */
+    private static Long toEpochMillis(JsonParser parser, JsonToken token) throws IOException {
+        Double number = toDouble(parser, token);
+        if (number != null) {
+            // Epoch seconds stay below 1e11 until the year 5138, epoch millis pass it in 1973
+            return Math.round(Math.abs(number) < 1e11 ? number * 1000 : number);
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            return null;
+        }
+        String text = parser.getText().trim();
+        try {
+            return Instant.parse(text).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // Fall through to a local date-time
+        }
+        try {
+            return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private JsonParser createParser(ByteBuffer data) throws IOException {
+        if (data.hasArray()) {
+            return jsonFactory.createParser(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return jsonFactory.createParser(bytes);
+    }
+
+    /**
+     * Sends the pending records of a batch with PutRecordBatch and retries the
+     * entries Firehose rejected, waiting with exponential backoff and full jitter
+     * between attempts.
+     * Completes with the indexes still undelivered after the last attempt.
+     */
+    private CompletableFuture<List<Integer>> send(PendingBatch batch, List<Integer> pending, int attempt, Context context) {
+        if (pending.isEmpty() || attempt == MAX_PUT_ATTEMPTS) {
+            return CompletableFuture.completedFuture(pending);
+        }
+        Executor executor = attempt == 0 ? Runnable::run
+            : CompletableFuture.delayedExecutor(backoffDelay(attempt), TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> {
+                List<Record> records = new ArrayList<>(pending.size());
+                for (int index : pending) {
+                    records.add(batch.records.get(index));
+                }
+                return PutRecordBatchRequest.builder()
+                    .deliveryStreamName(deliveryStreamName)
+                    .records(records)
+                    .build();
+            }, executor)
+            .thenCompose(request -> firehoseClient.putRecordBatch(request))
+            .handle((response, error) -> {
+                if (error != null) {
+                    // Throttling, service and network errors fail the whole call, so every record is retried
+                    context.getLogger().log("PutRecordBatch failed: " + error.getMessage());
+                    return pending;
+                }
+                Integer failedPutCount = response.failedPutCount();
+                if (failedPutCount == null || failedPutCount == 0) {
+                    return List.<Integer>of();
+                }
+                // Response entries are in request order; failed ones carry an error code
+                List<PutRecordBatchResponseEntry> entries = response.requestResponses();
+                List<Integer> retry = new ArrayList<>(failedPutCount);
+                for (int i = 0; i < entries.size(); i++) {
+                    if (entries.get(i).errorCode() != null) {
+                        retry.add(pending.get(i));
+                    }
+                }
+                return retry;
+            })
+            .thenCompose(retry -> send(batch, retry, attempt + 1, context));
+    }
 
-        return null;
+    /**
+     * Returns a random delay of up to RETRY_BASE_DELAY_MS * 2^(attempt - 1).
+     */
+    private static long backoffDelay(int attempt) {
+        return ThreadLocalRandom.current().nextLong((RETRY_BASE_DELAY_MS << (attempt - 1)) + 1);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+package me.synapsed.aws.lambda;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which log entries are forwarded when ingestion has to be capped.
+ * Entries are sampled by level (LOG_SAMPLE_RATES, e.g. "debug=0.1,info=0.5") and by
+ * service (LOG_SERVICE_SAMPLE_RATES), the lower rate applying, and each service is
+ * then held to a token bucket of LOG_RATE_LIMIT_PER_SOURCE entries per second with
+ * bursts of LOG_RATE_LIMIT_BURST. The sampling decision is a hash of the entry's
+ * trace or request id compared with the rate, so all entries of a request are kept
+ * or dropped together, and a request kept at a low rate is also kept at any higher
+ * one. Error and fatal entries and security and audit entries are always kept.
+ * The bucket is per Lambda container, so the limit for a source across the stream
+ * scales with the number of concurrent shard processors.
+ */
+public class LogSampler {
+    public enum Decision {
+        KEEP, SAMPLED, RATE_LIMITED
+    }
+
+    private static final Set<String> EXEMPT_LEVELS = Set.of("error", "fatal");
+    private static final Set<String> EXEMPT_CATEGORIES = Set.of("security", "audit");
+
+    private final Map<String, Double> levelRates;
+    private final Map<String, Double> serviceRates;
+    private final double ratePerSecond;
+    private final double burst;
+    private final LongSupplier nanoClock;
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+    }
+
+    public LogSampler(Map<String, String> env) {
+        this(env, System::nanoTime);
+    }
+
+    LogSampler(Map<String, String> env, LongSupplier nanoClock) {
+        this.levelRates = parseRates(env.get("LOG_SAMPLE_RATES"));
+        this.serviceRates = parseRates(env.get("LOG_SERVICE_SAMPLE_RATES"));
+        this.ratePerSecond = parseDouble(env.get("LOG_RATE_LIMIT_PER_SOURCE"), 0);
+        this.burst = Math.max(1, parseDouble(env.get("LOG_RATE_LIMIT_BURST"), ratePerSecond));
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Parses comma-separated name=rate pairs; names are matched as partition values
+     * and rates are clamped to [0, 1]. Malformed pairs are ignored.
+     */
+    static Map<String, Double> parseRates(String value) {
+        Map<String, Double> rates = new HashMap<>();
+        if (value == null || value.isEmpty()) {
+            return rates;
+        }
+        for (String pair : value.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            double rate = parseDouble(pair.substring(separator + 1), Double.NaN);
+            if (!Double.isNaN(rate)) {
+                rates.put(LogClassifier.partitionValue(pair.substring(0, separator).trim()),
+                    Math.min(1, Math.max(0, rate)));
+            }
+        }
+        return rates;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean isEnabled() {
+        return !levelRates.isEmpty() || !serviceRates.isEmpty() || ratePerSecond > 0;
+    }
+
+    /**
+     * Decides whether an entry is forwarded. Category, service and level are the
+     * entry's partition values; key identifies the request the entry belongs to.
+     */
+    public synchronized Decision decide(String category, String service, String level, String key) {
+        if (EXEMPT_LEVELS.contains(level) || EXEMPT_CATEGORIES.contains(category)) {
+            return Decision.KEEP;
+        }
+        double rate = Math.min(levelRates.getOrDefault(level, 1.0), serviceRates.getOrDefault(service, 1.0));
+        if (rate < 1 && sampleValue(key) >= rate) {
+            return Decision.SAMPLED;
+        }
+        if (ratePerSecond > 0 && !tryAcquire(service)) {
+            return Decision.RATE_LIMITED;
+        }
+        return Decision.KEEP;
+    }
+
+    private boolean tryAcquire(String source) {
+        long now = nanoClock.getAsLong();
+        TokenBucket bucket = buckets.get(source);
+        if (bucket == null) {
+            bucket = new TokenBucket(burst, now);
+            buckets.put(source, bucket);
+        } else {
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.refilledAt) * ratePerSecond / 1e9);
+            bucket.refilledAt = now;
+        }
+        if (bucket.tokens < 1) {
+            return false;
+        }
+        bucket.tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Maps a key to [0, 1). String.hashCode is specified by the language, so every
+     * container makes the same decision; the murmur3 finalizer spreads similar ids.
+     */
+    static double sampleValue(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h >>> 8) / (double) (1 << 24);
+    }
+}
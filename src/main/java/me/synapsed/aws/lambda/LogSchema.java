@@ -0,0 +1,92 @@
+package me.synapsed.aws.lambda;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Columns of the archived log table. Firehose converts delivered records to
+ * Parquet against a Glue table built from these columns, and {@link LogProcessor}
+ * renames top-level fields to their columns and coerces them to the column types
+ * first, so that a string where a number is expected does not fail the
+ * conversion. Fields outside the schema are archived together as a JSON object in
+ * the {@link #ATTRIBUTES} column; add a column here to make one queryable with its
+ * own type. Category, service and level are partition columns of the table and
+ * are therefore not listed here.
+ */
+public final class LogSchema {
+    public enum Type {
+        STRING("string"),
+        BIGINT("bigint"),
+        DOUBLE("double"),
+        BOOLEAN("boolean"),
+        /** Epoch milliseconds, stored as bigint */
+        TIMESTAMP_MILLIS("bigint");
+
+        private final String glueType;
+
+        Type(String glueType) {
+            this.glueType = glueType;
+        }
+
+        public String glueType() {
+            return glueType;
+        }
+    }
+
+    public record Column(String name, Type type) {
+    }
+
+    public static final List<Column> COLUMNS = List.of(
+        new Column("timestamp", Type.TIMESTAMP_MILLIS),
+        new Column("event_time", Type.TIMESTAMP_MILLIS),
+        new Column("message", Type.STRING),
+        new Column("logger", Type.STRING),
+        new Column("request_id", Type.STRING),
+        new Column("trace_id", Type.STRING),
+        new Column("error", Type.STRING),
+        new Column("status_code", Type.BIGINT),
+        new Column("latency_ms", Type.DOUBLE),
+        new Column("duration_ms", Type.DOUBLE),
+        new Column("source", Type.STRING),
+        new Column("processor_id", Type.STRING)
+    );
+
+    /**
+     * Every top-level field that is not one of the columns, as a JSON object. It is
+     * not matched by {@link #columnFor}, so a field named attributes is kept inside it.
+     */
+    public static final Column ATTRIBUTES = new Column("attributes", Type.STRING);
+
+    /** Log levels that get their own partition; anything else is filed under "other" */
+    public static final Set<String> LEVELS = Set.of("trace", "debug", "info", "warn", "error", "fatal");
+
+    private static final Map<String, Column> BY_NAME = new HashMap<>();
+    private static final Map<String, Column> BY_KEY = new HashMap<>();
+
+    static {
+        for (Column column : COLUMNS) {
+            BY_NAME.put(column.name(), column);
+            BY_KEY.put(key(column.name()), column);
+        }
+    }
+
+    private LogSchema() {
+    }
+
+    /**
+     * Returns the column a top-level field is written to, or null if the field is
+     * not part of the schema. Case and underscores are ignored, so latencyMs and
+     * latency_ms both map to the latency_ms column.
+     */
+    public static Column columnFor(String field) {
+        Column column = BY_NAME.get(field);
+        return column != null ? column : BY_KEY.get(key(field));
+    }
+
+    private static String key(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,17 +1,12 @@
 package me.synapsed.aws.lambda;
 
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent;
 
-import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-import software.amazon.awssdk.services.cloudwatchlogs.model.InputLogEvent;
-import software.amazon.awssdk.services.cloudwatchlogs.model.PutLogEventsRequest;
 import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.ses.model.Body;
 import software.amazon.awssdk.services.ses.model.Content;
@@ -24,23 +19,21 @@ import software.amazon.awssdk.services.ses.model.SendEmailRequest;
  * Processes SNS messages and sends notifications to the appropriate recipients.
  */
 public class NotificationSender implements RequestHandler<SNSEvent, String> {
-    private final CloudWatchLogsClient logsClient;
+    private final StructuredLogger logger;
     private final SesClient sesClient;
-    private final String logGroupName;
     private final String senderEmail;
 
     public NotificationSender() {
-        this.logsClient = CloudWatchLogsClient.create();
+        this.logger = new StructuredLogger("notification-sender");
         this.sesClient = SesClient.create();
-        this.logGroupName = System.getenv("LOG_GROUP_NAME");
         this.senderEmail = System.getenv("SENDER_EMAIL");
     }
 
     @Override
     public String handleRequest(SNSEvent event, Context context) {
+        logger.begin(context);
         try {
-            context.getLogger().log("Processing notification event: " + event.getRecords().size() + " records");
-            logEvent("Processing notification event: " + event.getRecords().size() + " records");
+            logger.info("Processing notification event: " + event.getRecords().size() + " records");
             
             for (SNSEvent.SNSRecord record : event.getRecords()) {
                 String message = record.getSNS().getMessage();
@@ -54,14 +47,12 @@ public class NotificationSender implements RequestHandler<SNSEvent, String> {
                 sendEmailNotification(severity, message, alertId);
                 
                 // Log the notification
-                logEvent("Sent " + severity + " notification for alert " + alertId);
+                logger.info("Sent " + severity + " notification for alert " + alertId);
             }
             
             return "Successfully processed " + event.getRecords().size() + " notifications";
         } catch (Exception e) {
-            String errorMsg = "Error sending notification: " + e.getMessage();
-            context.getLogger().log(errorMsg);
-            logEvent(errorMsg);
+            logger.error("Error sending notification: " + e.getMessage());
             throw new RuntimeException("Failed to send notification", e);
         }
     }
@@ -96,19 +87,4 @@ public class NotificationSender implements RequestHandler<SNSEvent, String> {
         sesClient.sendEmail(sendEmailRequest);
     }
 
-    private void logEvent(String message) {
-        List<InputLogEvent> logEvents = new ArrayList<>();
-        logEvents.add(InputLogEvent.builder()
-            .timestamp(System.currentTimeMillis())
-            .message(message)
-            .build());
-            
-        PutLogEventsRequest putLogEventsRequest = PutLogEventsRequest.builder()
-            .logGroupName(logGroupName)
-            .logStreamName("notification-sender")
-            .logEvents(logEvents)
-            .build();
-            
-        logsClient.putLogEvents(putLogEventsRequest);
-    }
 } 
\ No newline at end of file
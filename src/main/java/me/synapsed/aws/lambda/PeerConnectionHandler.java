@@ -1,6 +1,7 @@
 package me.synapsed.aws.lambda;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -12,25 +13,37 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
 public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
     private final DynamoDbClient dynamoDbClient;
     private final ObjectMapper objectMapper;
     private final String peerConnectionsTable;
     private final String subscriptionProofsTable;
+    private final long heartbeatWriteIntervalMs;
+    private final Map<String, Heartbeat> heartbeats;
     private static final long CONNECTION_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
+    private static final double DEFAULT_HEARTBEAT_WRITE_FRACTION = 0.25;
+    private static final int MAX_TRACKED_HEARTBEATS = 10000;
+
+    // Last connectedAt this container wrote or read for a DID
+    private record Heartbeat(AttributeValue peerId, long connectedAt) {
+    }
 
     public PeerConnectionHandler() {
         this.dynamoDbClient = DynamoDbClient.create();
         this.objectMapper = new ObjectMapper();
         this.peerConnectionsTable = System.getenv("PEER_CONNECTIONS_TABLE");
         this.subscriptionProofsTable = System.getenv("SUBSCRIPTION_PROOFS_TABLE");
+        this.heartbeatWriteIntervalMs = heartbeatWriteInterval(System.getenv("HEARTBEAT_WRITE_FRACTION"));
+        this.heartbeats = newHeartbeatMap();
     }
 
     public PeerConnectionHandler(DynamoDbClient dynamoDbClient) {
@@ -38,6 +51,8 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
         this.objectMapper = new ObjectMapper();
         this.peerConnectionsTable = System.getenv("PEER_CONNECTIONS_TABLE");
         this.subscriptionProofsTable = System.getenv("SUBSCRIPTION_PROOFS_TABLE");
+        this.heartbeatWriteIntervalMs = heartbeatWriteInterval(System.getenv("HEARTBEAT_WRITE_FRACTION"));
+        this.heartbeats = newHeartbeatMap();
     }
 
     public PeerConnectionHandler(DynamoDbClient dynamoDbClient, Map<String, String> env) {
@@ -45,6 +60,36 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
         this.objectMapper = new ObjectMapper();
         this.peerConnectionsTable = env.getOrDefault("PEER_CONNECTIONS_TABLE", System.getenv("PEER_CONNECTIONS_TABLE"));
         this.subscriptionProofsTable = env.getOrDefault("SUBSCRIPTION_PROOFS_TABLE", System.getenv("SUBSCRIPTION_PROOFS_TABLE"));
+        this.heartbeatWriteIntervalMs = heartbeatWriteInterval(env.getOrDefault("HEARTBEAT_WRITE_FRACTION", System.getenv("HEARTBEAT_WRITE_FRACTION")));
+        this.heartbeats = newHeartbeatMap();
+    }
+
+    /**
+     * Heartbeats only write connectedAt once it is older than this fraction of the
+     * connection timeout; the ones in between are acknowledged without a write.
+     */
+    private static long heartbeatWriteInterval(String fraction) {
+        double value = DEFAULT_HEARTBEAT_WRITE_FRACTION;
+        if (fraction != null && !fraction.isEmpty()) {
+            try {
+                value = Double.parseDouble(fraction.trim());
+            } catch (NumberFormatException e) {
+                value = DEFAULT_HEARTBEAT_WRITE_FRACTION;
+            }
+        }
+        if (value < 0 || value >= 1) {
+            value = DEFAULT_HEARTBEAT_WRITE_FRACTION;
+        }
+        return (long) (CONNECTION_TIMEOUT_MS * value);
+    }
+
+    private static Map<String, Heartbeat> newHeartbeatMap() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Heartbeat> eldest) {
+                return size() > MAX_TRACKED_HEARTBEATS;
+            }
+        };
     }
 
     @Override
@@ -99,6 +144,8 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
                     return handleDisconnect(did, context);
                 case "status":
                     return handleStatus(did, context);
+                case "heartbeat":
+                    return handleHeartbeat(did, context);
                 default:
                     return new APIGatewayProxyResponseEvent()
                         .withStatusCode(400)
@@ -140,32 +187,12 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
     private APIGatewayProxyResponseEvent handleConnect(String did, APIGatewayProxyRequestEvent input, Context context) {
         try {
             // Check if the peer is already connected
-            Map<String, AttributeValue> queryKey = new HashMap<>();
-            queryKey.put("did", AttributeValue.builder().s(did).build());
-
-            QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(peerConnectionsTable)
-                .indexName("DidIndex")
-                .keyConditionExpression("did = :did")
-                .expressionAttributeValues(Map.of(":did", AttributeValue.builder().s(did).build()))
-                .build();
-
-            QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+            Map<String, AttributeValue> connection = findConnectionByDid(did);
             
-            // If the peer is already connected, return the existing peer ID
-            if (queryResponse.hasItems() && !queryResponse.items().isEmpty()) {
-                String existingPeerId = queryResponse.items().get(0).get("peerId").s();
-                
-                // Update the connection timestamp
-                Map<String, AttributeValue> updateItem = new HashMap<>(queryResponse.items().get(0));
-                updateItem.put("connectedAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis())).build());
-                
-                PutItemRequest updateRequest = PutItemRequest.builder()
-                    .tableName(peerConnectionsTable)
-                    .item(updateItem)
-                    .build();
-                
-                dynamoDbClient.putItem(updateRequest);
+            // If the peer is already connected, refresh its timestamp and return the existing peer ID
+            long connectedAt = System.currentTimeMillis();
+            if (connection != null && touchConnection(did, connection.get("peerId"), connectedAt)) {
+                String existingPeerId = connection.get("peerId").s();
                 
                 // Return the existing peer ID
                 Map<String, String> response = new HashMap<>();
@@ -187,7 +214,8 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
             item.put("endpoint", AttributeValue.builder().s(input.getRequestContext().getIdentity().getSourceIp()).build());
             // Generate a unique connection ID since it's not available in the request context
             item.put("connectionId", AttributeValue.builder().s(UUID.randomUUID().toString()).build());
-            item.put("connectedAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis())).build());
+            item.put("connectedAt", AttributeValue.builder().s(String.valueOf(connectedAt)).build());
+            item.put("expiresAt", expiresAt(connectedAt));
             item.put("status", AttributeValue.builder().s("connected").build());
 
             PutItemRequest request = PutItemRequest.builder()
@@ -196,6 +224,7 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
                 .build();
 
             dynamoDbClient.putItem(request);
+            rememberHeartbeat(did, new Heartbeat(item.get("peerId"), connectedAt));
             
             // Log the connection
             context.getLogger().log("Peer connected: " + did + " with peerId: " + peerId);
@@ -219,19 +248,9 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
     private APIGatewayProxyResponseEvent handleDisconnect(String did, Context context) {
         try {
             // Find the peer connection by DID
-            Map<String, AttributeValue> queryKey = new HashMap<>();
-            queryKey.put("did", AttributeValue.builder().s(did).build());
-
-            QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(peerConnectionsTable)
-                .indexName("DidIndex")
-                .keyConditionExpression("did = :did")
-                .expressionAttributeValues(Map.of(":did", AttributeValue.builder().s(did).build()))
-                .build();
-
-            QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+            Map<String, AttributeValue> connection = findConnectionByDid(did);
             
-            if (!queryResponse.hasItems() || queryResponse.items().isEmpty()) {
+            if (connection == null) {
                 return new APIGatewayProxyResponseEvent()
                     .withStatusCode(404)
                     .withBody("No active connection found for this DID");
@@ -239,7 +258,7 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
             
             // Delete the peer connection information from DynamoDB
             Map<String, AttributeValue> key = new HashMap<>();
-            key.put("peerId", queryResponse.items().get(0).get("peerId"));
+            key.put("peerId", connection.get("peerId"));
             
             DeleteItemRequest request = DeleteItemRequest.builder()
                 .tableName(peerConnectionsTable)
@@ -247,6 +266,7 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
                 .build();
 
             dynamoDbClient.deleteItem(request);
+            forgetHeartbeat(did);
             
             // Log the disconnection
             context.getLogger().log("Peer disconnected: " + did);
@@ -262,22 +282,67 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
         }
     }
     
-    private APIGatewayProxyResponseEvent handleStatus(String did, Context context) {
+    /**
+     * Keeps a connection alive without rewriting it on every call. connectedAt is
+     * only written once it is older than the heartbeat write interval; earlier
+     * heartbeats are acknowledged from this container's memory or the index read.
+     */
+    private APIGatewayProxyResponseEvent handleHeartbeat(String did, Context context) {
         try {
-            // Find the peer connection by DID
-            Map<String, AttributeValue> queryKey = new HashMap<>();
-            queryKey.put("did", AttributeValue.builder().s(did).build());
+            long now = System.currentTimeMillis();
+            Heartbeat heartbeat = recentHeartbeat(did);
+            if (heartbeat == null || now - heartbeat.connectedAt() >= heartbeatWriteIntervalMs) {
+                Map<String, AttributeValue> connection = findConnectionByDid(did);
+                if (connection == null) {
+                    forgetHeartbeat(did);
+                    return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(404)
+                        .withBody("No active connection found for this DID");
+                }
+                heartbeat = new Heartbeat(connection.get("peerId"), Long.parseLong(connection.get("connectedAt").s()));
+                if (isExpired(connection, now)) {
+                    forgetHeartbeat(did);
+                    Map<String, String> response = new HashMap<>();
+                    response.put("status", "timeout");
 
-            QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(peerConnectionsTable)
-                .indexName("DidIndex")
-                .keyConditionExpression("did = :did")
-                .expressionAttributeValues(Map.of(":did", AttributeValue.builder().s(did).build()))
-                .build();
+                    return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(200)
+                        .withBody(objectMapper.writeValueAsString(response));
+                }
+                if (now - heartbeat.connectedAt() < heartbeatWriteIntervalMs) {
+                    // Another container refreshed it recently
+                    rememberHeartbeat(did, heartbeat);
+                } else if (touchConnection(did, heartbeat.peerId(), now)) {
+                    heartbeat = new Heartbeat(heartbeat.peerId(), now);
+                } else {
+                    return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(404)
+                        .withBody("No active connection found for this DID");
+                }
+            }
+
+            Map<String, String> response = new HashMap<>();
+            response.put("status", "connected");
+            response.put("peerId", heartbeat.peerId().s());
+            response.put("connectedAt", String.valueOf(heartbeat.connectedAt()));
+
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withBody(objectMapper.writeValueAsString(response));
+        } catch (Exception e) {
+            context.getLogger().log("Error handling heartbeat: " + e.getMessage());
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(500)
+                .withBody("Error handling heartbeat: " + e.getMessage());
+        }
+    }
 
-            QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+    private APIGatewayProxyResponseEvent handleStatus(String did, Context context) {
+        try {
+            // Find the peer connection by DID
+            Map<String, AttributeValue> connection = findConnectionByDid(did);
             
-            if (!queryResponse.hasItems() || queryResponse.items().isEmpty()) {
+            if (connection == null) {
                 Map<String, String> response = new HashMap<>();
                 response.put("status", "disconnected");
                 
@@ -286,22 +351,12 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
                     .withBody(objectMapper.writeValueAsString(response));
             }
             
-            // Check if the connection has timed out
-            String connectedAtStr = queryResponse.items().get(0).get("connectedAt").s();
-            long connectedAt = Long.parseLong(connectedAtStr);
-            long now = System.currentTimeMillis();
+            // Check if the connection has timed out. Expired items are removed by
+            // DynamoDB TTL and PeerConnectionSweeper, so nothing is deleted here.
+            String connectedAtStr = connection.get("connectedAt").s();
             
-            if (now - connectedAt > CONNECTION_TIMEOUT_MS) {
-                // Connection has timed out, delete it
-                Map<String, AttributeValue> key = new HashMap<>();
-                key.put("peerId", queryResponse.items().get(0).get("peerId"));
-                
-                DeleteItemRequest deleteRequest = DeleteItemRequest.builder()
-                    .tableName(peerConnectionsTable)
-                    .key(key)
-                    .build();
-
-                dynamoDbClient.deleteItem(deleteRequest);
+            if (isExpired(connection, System.currentTimeMillis())) {
+                forgetHeartbeat(did);
                 
                 Map<String, String> response = new HashMap<>();
                 response.put("status", "timeout");
@@ -314,7 +369,7 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
             // Connection is active
             Map<String, String> response = new HashMap<>();
             response.put("status", "connected");
-            response.put("peerId", queryResponse.items().get(0).get("peerId").s());
+            response.put("peerId", connection.get("peerId").s());
             response.put("connectedAt", connectedAtStr);
             
             return new APIGatewayProxyResponseEvent()
@@ -327,4 +382,86 @@ public class PeerConnectionHandler implements RequestHandler<APIGatewayProxyRequ
                 .withBody("Error checking peer status: " + e.getMessage());
         }
     }
+
+    /**
+     * Looks up the connection for a DID on DidIndex. Only the first match is read
+     * and only the attributes the handlers use are returned.
+     */
+    private Map<String, AttributeValue> findConnectionByDid(String did) {
+        QueryRequest queryRequest = QueryRequest.builder()
+            .tableName(peerConnectionsTable)
+            .indexName("DidIndex")
+            .keyConditionExpression("did = :did")
+            .expressionAttributeValues(Map.of(":did", AttributeValue.builder().s(did).build()))
+            .projectionExpression("peerId, connectedAt, expiresAt")
+            .limit(1)
+            .build();
+
+        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+        if (!queryResponse.hasItems() || queryResponse.items().isEmpty()) {
+            return null;
+        }
+        return queryResponse.items().get(0);
+    }
+
+    /**
+     * Refreshes connectedAt on an existing connection. Returns false if the item
+     * was deleted after the index lookup, in which case the caller reconnects from scratch.
+     */
+    private boolean touchConnection(String did, AttributeValue peerId, long connectedAt) {
+        UpdateItemRequest updateRequest = UpdateItemRequest.builder()
+            .tableName(peerConnectionsTable)
+            .key(Map.of("peerId", peerId))
+            .updateExpression("SET connectedAt = :connectedAt, expiresAt = :expiresAt")
+            .conditionExpression("attribute_exists(peerId)")
+            .expressionAttributeValues(Map.of(
+                ":connectedAt", AttributeValue.builder().s(String.valueOf(connectedAt)).build(),
+                ":expiresAt", expiresAt(connectedAt)))
+            .build();
+        try {
+            dynamoDbClient.updateItem(updateRequest);
+            rememberHeartbeat(did, new Heartbeat(peerId, connectedAt));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            forgetHeartbeat(did);
+            return false;
+        }
+    }
+
+    /**
+     * The DynamoDB TTL attribute: epoch seconds at which the connection times out.
+     */
+    private static AttributeValue expiresAt(long connectedAt) {
+        return AttributeValue.builder().n(String.valueOf((connectedAt + CONNECTION_TIMEOUT_MS) / 1000)).build();
+    }
+
+    /**
+     * TTL deletion runs in the background, so expired items can still be read for a while.
+     * Items written before the TTL attribute existed fall back to connectedAt.
+     */
+    private static boolean isExpired(Map<String, AttributeValue> connection, long now) {
+        AttributeValue expiresAt = connection.get("expiresAt");
+        if (expiresAt != null && expiresAt.n() != null) {
+            return Long.parseLong(expiresAt.n()) * 1000 <= now;
+        }
+        return now - Long.parseLong(connection.get("connectedAt").s()) > CONNECTION_TIMEOUT_MS;
+    }
+
+    private Heartbeat recentHeartbeat(String did) {
+        synchronized (heartbeats) {
+            return heartbeats.get(did);
+        }
+    }
+
+    private void rememberHeartbeat(String did, Heartbeat heartbeat) {
+        synchronized (heartbeats) {
+            heartbeats.put(did, heartbeat);
+        }
+    }
+
+    private void forgetHeartbeat(String did) {
+        synchronized (heartbeats) {
+            heartbeats.remove(did);
+        }
+    }
 } 
\ No newline at end of file
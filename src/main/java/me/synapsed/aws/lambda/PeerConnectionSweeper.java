@@ -0,0 +1,94 @@
+package me.synapsed.aws.lambda;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+/**
+ * Lambda function for removing expired peer connections.
+ * DynamoDB TTL deletes expired items in the background and may lag behind, so this
+ * scheduled sweep deletes the stragglers. A heartbeat can refresh a connection
+ * between the scan and the delete, so each delete repeats the expiry check as a
+ * condition and refreshed connections are left alone; BatchWriteItem cannot carry
+ * conditions, so deletes are issued one item at a time.
+ */
+public class PeerConnectionSweeper implements RequestHandler<ScheduledEvent, String> {
+    private final DynamoDbClient dynamoDbClient;
+    private final String peerConnectionsTable;
+    private static final long CONNECTION_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
+    // Items written before the TTL attribute existed are matched on connectedAt
+    private static final String EXPIRED = "expiresAt <= :now OR (attribute_not_exists(expiresAt) AND connectedAt < :cutoff)";
+
+    public PeerConnectionSweeper() {
+        this.dynamoDbClient = DynamoDbClient.create();
+        this.peerConnectionsTable = System.getenv("PEER_CONNECTIONS_TABLE");
+    }
+
+    public PeerConnectionSweeper(DynamoDbClient dynamoDbClient, Map<String, String> env) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.peerConnectionsTable = env.getOrDefault("PEER_CONNECTIONS_TABLE", System.getenv("PEER_CONNECTIONS_TABLE"));
+    }
+
+    @Override
+    public String handleRequest(ScheduledEvent event, Context context) {
+        long now = System.currentTimeMillis();
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":now", AttributeValue.builder().n(String.valueOf(now / 1000)).build());
+        values.put(":cutoff", AttributeValue.builder().s(String.valueOf(now - CONNECTION_TIMEOUT_MS)).build());
+
+        int deleted = 0;
+        int refreshed = 0;
+        int failed = 0;
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResponse response = dynamoDbClient.scan(ScanRequest.builder()
+                .tableName(peerConnectionsTable)
+                .filterExpression(EXPIRED)
+                .expressionAttributeValues(values)
+                .projectionExpression("peerId")
+                .exclusiveStartKey(startKey)
+                .build());
+
+            for (Map<String, AttributeValue> item : response.items()) {
+                try {
+                    dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                        .tableName(peerConnectionsTable)
+                        .key(Map.of("peerId", item.get("peerId")))
+                        .conditionExpression(EXPIRED)
+                        .expressionAttributeValues(values)
+                        .build());
+                    deleted++;
+                } catch (ConditionalCheckFailedException e) {
+                    // Refreshed by a heartbeat or reconnect since the scan read it
+                    refreshed++;
+                } catch (DynamoDbException e) {
+                    context.getLogger().log("Unable to delete expired peer connection " + item.get("peerId").s() + ": " + e.getMessage());
+                    failed++;
+                }
+            }
+            startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                ? response.lastEvaluatedKey() : null;
+        } while (startKey != null);
+
+        String result = "Deleted " + deleted + " expired peer connections";
+        if (refreshed > 0) {
+            result += ", kept " + refreshed + " refreshed since the scan";
+        }
+        if (failed > 0) {
+            result += ", " + failed + " left for the next sweep";
+        }
+        context.getLogger().log(result);
+        return result;
+    }
+}
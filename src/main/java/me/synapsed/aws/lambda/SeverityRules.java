@@ -0,0 +1,273 @@
+package me.synapsed.aws.lambda;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Alert severity rules, compiled for lookup. Rules come from the alertSeverityRules
+ * section of the AppConfig profile:
+ * <pre>
+ * {"alertSeverityRules": {
+ *   "default": "INFO",
+ *   "rules": [
+ *     {"source": "aws.guardduty", "detail": {"severity": [7, 8]}, "severity": "CRITICAL"},
+ *     {"source": "aws.securityhub", "detailType": "Security Hub Findings - Imported",
+ *      "detail": {"findings.0.Severity.Label": "CRITICAL"}, "severity": "CRITICAL"},
+ *     {"source": "aws.config", "severity": "WARNING"}]}}
+ * </pre>
+ * A rule matches when the alert's source, detail-type and each listed detail field
+ * (a dotted path, with numbers indexing lists) equal one of the rule's values;
+ * anything a rule leaves out matches any value. The first matching rule in the
+ * list wins, and alerts no rule matches get the default severity.
+ * <p>
+ * Compiling indexes the rules by source and detail-type, and within those by the
+ * value of each rule's first detail field, so classifying an alert costs four
+ * hash lookups per detail field in use rather than a pass over every rule.
+ */
+public final class SeverityRules {
+    static final Set<String> SEVERITIES = Set.of("CRITICAL", "WARNING", "INFO");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** The rules AlertRouter applied before rules were configurable */
+    static final SeverityRules DEFAULT = parse("{\"default\": \"INFO\", \"rules\": ["
+        + "{\"source\": [\"aws.securityhub\", \"aws.guardduty\"], \"severity\": \"CRITICAL\"},"
+        + "{\"source\": \"aws.config\", \"severity\": \"WARNING\"}]}");
+
+    private record Condition(String[] path, Set<String> values) {
+    }
+
+    private record Rule(int order, String severity, List<Condition> conditions) {
+        private boolean matches(Map<String, Object> detail) {
+            for (Condition condition : conditions) {
+                if (!condition.values().contains(valueAt(detail, condition.path()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // A null source or detail-type stands for any
+    private record Key(String source, String detailType) {
+    }
+
+    private record FieldIndex(String[] path, Map<String, List<Rule>> rules) {
+    }
+
+    /** The rules for one source and detail-type */
+    private static final class Dispatch {
+        private Rule unconditional;
+        private final Map<String, FieldIndex> fields = new LinkedHashMap<>();
+    }
+
+    private final Map<Key, Dispatch> table;
+    private final String defaultSeverity;
+    private final int ruleCount;
+
+    private SeverityRules(Map<Key, Dispatch> table, String defaultSeverity, int ruleCount) {
+        this.table = table;
+        this.defaultSeverity = defaultSeverity;
+        this.ruleCount = ruleCount;
+    }
+
+    public int size() {
+        return ruleCount;
+    }
+
+    /**
+     * Compiles the rules in an AppConfig configuration document, or returns the
+     * built-in rules if the document has no alertSeverityRules section.
+     *
+     * @throws IllegalArgumentException if the rules are malformed
+     */
+    public static SeverityRules fromConfiguration(JsonNode document) {
+        JsonNode rules = document == null ? null : document.get("alertSeverityRules");
+        return rules == null || rules.isNull() ? DEFAULT : compile(rules);
+    }
+
+    static SeverityRules parse(String json) {
+        try {
+            return compile(objectMapper.readTree(json));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Severity rules are not valid JSON", e);
+        }
+    }
+
+    /**
+     * Compiles a {"default": ..., "rules": [...]} object.
+     *
+     * @throws IllegalArgumentException if the rules are malformed
+     */
+    public static SeverityRules compile(JsonNode config) {
+        if (config == null || !config.isObject()) {
+            throw new IllegalArgumentException("Severity rules must be an object");
+        }
+        String defaultSeverity = config.has("default") ? severity(config.get("default"), "default") : "INFO";
+        JsonNode rules = config.path("rules");
+        if (!rules.isMissingNode() && !rules.isArray()) {
+            throw new IllegalArgumentException("Severity rules must be a list");
+        }
+
+        Map<Key, Dispatch> table = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            JsonNode node = rules.get(i);
+            String name = "Rule " + (i + 1);
+            if (!node.isObject()) {
+                throw new IllegalArgumentException(name + " must be an object");
+            }
+            List<Condition> conditions = new ArrayList<>();
+            JsonNode detail = node.path("detail");
+            if (!detail.isMissingNode()) {
+                if (!detail.isObject()) {
+                    throw new IllegalArgumentException(name + ": detail must be an object");
+                }
+                detail.fields().forEachRemaining(field -> conditions.add(
+                    new Condition(field.getKey().split("\\."), values(field.getValue(), name))));
+            }
+            Rule rule = new Rule(i, severity(node.get("severity"), name), conditions);
+
+            for (String source : keys(node.get("source"), name)) {
+                for (String detailType : keys(node.get("detailType"), name)) {
+                    index(table.computeIfAbsent(new Key(source, detailType), key -> new Dispatch()), rule);
+                }
+            }
+        }
+        return new SeverityRules(table, defaultSeverity, rules.size());
+    }
+
+    /**
+     * Rules are indexed in order, so each list of candidates is sorted by precedence.
+     */
+    private static void index(Dispatch dispatch, Rule rule) {
+        if (rule.conditions().isEmpty()) {
+            if (dispatch.unconditional == null) {
+                dispatch.unconditional = rule;
+            }
+            return;
+        }
+        Condition first = rule.conditions().get(0);
+        FieldIndex field = dispatch.fields.computeIfAbsent(String.join(".", first.path()),
+            path -> new FieldIndex(first.path(), new HashMap<>()));
+        for (String value : first.values()) {
+            field.rules().computeIfAbsent(value, v -> new ArrayList<>()).add(rule);
+        }
+    }
+
+    private static String severity(JsonNode node, String name) {
+        String severity = node == null ? null : node.asText().toUpperCase(Locale.ROOT);
+        if (severity == null || !SEVERITIES.contains(severity)) {
+            throw new IllegalArgumentException(name + ": severity must be one of " + SEVERITIES);
+        }
+        return severity;
+    }
+
+    /**
+     * The keys a rule is indexed under: its values, or a single null if it has none.
+     */
+    private static Set<String> keys(JsonNode node, String name) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (node == null || node.isNull()) {
+            keys.add(null);
+        } else {
+            keys.addAll(values(node, name));
+        }
+        return keys;
+    }
+
+    private static Set<String> values(JsonNode node, String name) {
+        Set<String> values = new LinkedHashSet<>();
+        if (node.isArray()) {
+            node.forEach(value -> values.add(scalar(value, name)));
+        } else {
+            values.add(scalar(node, name));
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException(name + ": empty list of values");
+        }
+        return values;
+    }
+
+    private static String scalar(JsonNode node, String name) {
+        if (node.isNumber()) {
+            return normalize(node.numberValue());
+        }
+        if (!node.isValueNode() || node.isNull()) {
+            throw new IllegalArgumentException(name + ": values must be strings, numbers or booleans");
+        }
+        return node.asText();
+    }
+
+    /**
+     * Numbers compare by value, so a GuardDuty severity of 8.0 matches a rule value of 8.
+     */
+    private static String normalize(Number number) {
+        double value = number.doubleValue();
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static String valueAt(Map<String, Object> detail, String[] path) {
+        Object current = detail;
+        for (String segment : path) {
+            if (current instanceof Map<?, ?> map) {
+                current = map.get(segment);
+            } else if (current instanceof List<?> list && !segment.isEmpty()
+                    && segment.chars().allMatch(Character::isDigit) && segment.length() < 10
+                    && Integer.parseInt(segment) < list.size()) {
+                current = list.get(Integer.parseInt(segment));
+            } else {
+                return null;
+            }
+        }
+        if (current instanceof Number number) {
+            return normalize(number);
+        }
+        return current == null || current instanceof Map || current instanceof List ? null : current.toString();
+    }
+
+    /**
+     * Returns the severity of the first rule matching the alert.
+     */
+    public String classify(String source, String detailType, Map<String, Object> detail) {
+        Map<String, Object> fields = detail == null ? Map.of() : detail;
+        Rule best = null;
+        for (Key key : new Key[] {
+                new Key(source, detailType), new Key(source, null), new Key(null, detailType), new Key(null, null)}) {
+            Dispatch dispatch = table.get(key);
+            if (dispatch == null) {
+                continue;
+            }
+            if (dispatch.unconditional != null && (best == null || dispatch.unconditional.order() < best.order())) {
+                best = dispatch.unconditional;
+            }
+            for (FieldIndex field : dispatch.fields.values()) {
+                List<Rule> candidates = field.rules().get(valueAt(fields, field.path()));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Rule rule : candidates) {
+                    if (best != null && rule.order() >= best.order()) {
+                        break;
+                    }
+                    if (rule.matches(fields)) {
+                        best = rule;
+                        break;
+                    }
+                }
+            }
+        }
+        return best == null ? defaultSeverity : best.severity();
+    }
+}
@@ -0,0 +1,96 @@
+package me.synapsed.aws.lambda;
+
+import java.util.function.LongSupplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataClient;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationRequest;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionRequest;
+
+/**
+ * Keeps AlertRouter's severity rules current with the AppConfig profile. The
+ * profile is polled through the AppConfig Data API no more often than AppConfig
+ * asks, and a new configuration is compiled once when it is deployed, so rule
+ * changes reach warm functions without a redeploy or a cold start. Until the
+ * first configuration arrives, and whenever one is invalid or AppConfig cannot
+ * be reached, the rules already loaded stay in use.
+ */
+public class SeverityRulesLoader {
+    static final int MIN_POLL_INTERVAL_SECONDS = 45;
+
+    private final AppConfigDataClient appConfigClient;
+    private final String application;
+    private final String environment;
+    private final String profile;
+    private final StructuredLogger logger;
+    private final LongSupplier clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile SeverityRules rules = SeverityRules.DEFAULT;
+    private String token;
+    private long nextPollAt;
+
+    public SeverityRulesLoader(AppConfigDataClient appConfigClient, String application, String environment,
+            String profile, StructuredLogger logger) {
+        this(appConfigClient, application, environment, profile, logger, System::currentTimeMillis);
+    }
+
+    SeverityRulesLoader(AppConfigDataClient appConfigClient, String application, String environment,
+            String profile, StructuredLogger logger, LongSupplier clock) {
+        this.appConfigClient = appConfigClient;
+        this.application = application;
+        this.environment = environment;
+        this.profile = profile;
+        this.logger = logger;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the current rules, first fetching the latest configuration if the
+     * poll interval has passed.
+     */
+    public synchronized SeverityRules rules() {
+        long now = clock.getAsLong();
+        if (appConfigClient == null || now < nextPollAt) {
+            return rules;
+        }
+        GetLatestConfigurationResponse response;
+        try {
+            if (token == null) {
+                token = appConfigClient.startConfigurationSession(StartConfigurationSessionRequest.builder()
+                    .applicationIdentifier(application)
+                    .environmentIdentifier(environment)
+                    .configurationProfileIdentifier(profile)
+                    .requiredMinimumPollIntervalInSeconds(MIN_POLL_INTERVAL_SECONDS)
+                    .build())
+                    .initialConfigurationToken();
+            }
+            response = appConfigClient.getLatestConfiguration(GetLatestConfigurationRequest.builder()
+                .configurationToken(token)
+                .build());
+        } catch (Exception e) {
+            // Tokens expire after 24 hours and can only be used once, so start a new session next time
+            token = null;
+            nextPollAt = now + MIN_POLL_INTERVAL_SECONDS * 1000L;
+            logger.warn("Failed to poll severity rules, keeping " + rules.size() + " rules: " + e.getMessage());
+            return rules;
+        }
+
+        token = response.nextPollConfigurationToken();
+        Integer interval = response.nextPollIntervalInSeconds();
+        nextPollAt = now + (interval == null ? MIN_POLL_INTERVAL_SECONDS : interval) * 1000L;
+
+        // An empty configuration means it has not changed since the last poll
+        if (response.configuration() != null && response.configuration().asByteArray().length > 0) {
+            try {
+                rules = SeverityRules.fromConfiguration(objectMapper.readTree(response.configuration().asByteArray()));
+                logger.info("Loaded " + rules.size() + " severity rules from AppConfig");
+            } catch (Exception e) {
+                logger.warn("Invalid severity rules in AppConfig, keeping " + rules.size() + " rules: " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+}
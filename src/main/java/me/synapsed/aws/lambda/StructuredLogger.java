@@ -0,0 +1,82 @@
+package me.synapsed.aws.lambda;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.function.LongSupplier;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Structured logger shared by the alerting, incident and compliance functions.
+ * Each entry is a JSON object with timestamp, level, service, message and the
+ * invocation's request_id, so the log processor can classify and archive it.
+ * Entries are written to stdout, which the Lambda runtime ships to the log group
+ * set in the function's logging config without holding up the handler.
+ */
+public class StructuredLogger {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    // Keeps every entry well under the 256 KiB event limit even at 3 bytes per char
+    static final int MAX_MESSAGE_CHARS = 32 * 1024;
+
+    private final String service;
+    private final PrintStream out;
+    private final LongSupplier clock;
+    private String requestId;
+
+    public StructuredLogger(String service) {
+        this(service, System.out, System::currentTimeMillis);
+    }
+
+    StructuredLogger(String service, PrintStream out, LongSupplier clock) {
+        this.service = service;
+        this.out = out;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts an invocation; entries logged until the next call carry its request id.
+     */
+    public synchronized void begin(Context context) {
+        this.requestId = context == null ? null : context.getAwsRequestId();
+    }
+
+    public void info(String message) {
+        log("INFO", message);
+    }
+
+    public void warn(String message) {
+        log("WARN", message);
+    }
+
+    public void error(String message) {
+        log("ERROR", message);
+    }
+
+    private synchronized void log(String level, String message) {
+        out.println(format(clock.getAsLong(), level, message));
+    }
+
+    private String format(long timestamp, String level, String message) {
+        if (message != null && message.length() > MAX_MESSAGE_CHARS) {
+            message = message.substring(0, MAX_MESSAGE_CHARS) + "...";
+        }
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("timestamp", timestamp);
+            generator.writeStringField("level", level);
+            generator.writeStringField("service", service);
+            generator.writeStringField("message", message);
+            if (requestId != null) {
+                generator.writeStringField("request_id", requestId);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to format log entry", e);
+        }
+        return writer.toString();
+    }
+}
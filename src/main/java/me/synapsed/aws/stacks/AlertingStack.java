@@ -13,24 +13,38 @@ import software.amazon.awscdk.services.cloudwatch.Dashboard;
 import software.amazon.awscdk.services.cloudwatch.DashboardProps;
 import software.amazon.awscdk.services.cloudwatch.GraphWidget;
 import software.amazon.awscdk.services.cloudwatch.Metric;
+import software.amazon.awscdk.services.dynamodb.Attribute;
+import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.events.EventPattern;
 import software.amazon.awscdk.services.events.Rule;
 import software.amazon.awscdk.services.events.RuleProps;
 import software.amazon.awscdk.services.events.Schedule;
 import software.amazon.awscdk.services.events.targets.LambdaFunction;
+import software.amazon.awscdk.services.events.targets.SqsQueue;
 import software.amazon.awscdk.services.iam.Effect;
 import software.amazon.awscdk.services.iam.PolicyStatement;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.RoleProps;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.kinesisfirehose.CfnDeliveryStream;
+import software.amazon.awscdk.services.kinesisfirehose.CfnDeliveryStreamProps;
 import software.amazon.awscdk.services.lambda.Code;
 import software.amazon.awscdk.services.lambda.Function;
 import software.amazon.awscdk.services.lambda.FunctionProps;
 import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.lambda.eventsources.SqsEventSource;
+import software.amazon.awscdk.services.lambda.eventsources.SqsEventSourceProps;
 import software.amazon.awscdk.services.s3.Bucket;
 import software.amazon.awscdk.services.s3.LifecycleRule;
 import software.amazon.awscdk.services.sns.Topic;
 import software.amazon.awscdk.services.sns.TopicProps;
 import software.amazon.awscdk.services.sns.subscriptions.EmailSubscription;
+import software.amazon.awscdk.services.sqs.DeadLetterQueue;
+import software.amazon.awscdk.services.sqs.Queue;
+import software.amazon.awscdk.services.sqs.QueueEncryption;
+import software.amazon.awscdk.services.sqs.QueueProps;
 import software.amazon.awscdk.services.stepfunctions.Chain;
 import software.amazon.awscdk.services.stepfunctions.Choice;
 import software.amazon.awscdk.services.stepfunctions.Condition;
@@ -50,6 +64,10 @@ import software.constructs.Construct;
  */
 @Getter
 public class AlertingStack extends Stack {
+    // Firehose writes each alert under the UTC hour it arrived in
+    static final String ALERT_ARCHIVE_PREFIX = "alerts/year=!{timestamp:yyyy}/month=!{timestamp:MM}"
+        + "/day=!{timestamp:dd}/hour=!{timestamp:HH}/";
+
     private final Topic criticalAlertsTopic;
     private final Topic warningAlertsTopic;
     private final Topic infoAlertsTopic;
@@ -57,11 +75,18 @@ public class AlertingStack extends Stack {
     private final Function alertRouter;
     private final Function notificationSender;
     private final Function escalationManager;
+    private final Function alertAnalytics;
     private final StateMachine alertWorkflow;
     private final Dashboard alertDashboard;
     private final Role alertRole;
     private final Bucket alertsBucket;
-    private final Rule alertProcessingRule;
+    private final Role alertArchiveRole;
+    private final CfnDeliveryStream alertArchiveStream;
+    private final Queue alertQueue;
+    private final Queue alertDeadLetterQueue;
+    private final Rule[] alertProcessingRules;
+    private final Rule alertAnalyticsRule;
+    private final Table alertCountersTable;
 
     public AlertingStack(final Construct scope, final String id, final StackProps props,
                         final LoggingStack loggingStack, final SecurityMonitoringStack securityStack,
@@ -92,6 +117,7 @@ public class AlertingStack extends Stack {
                 "logs:PutLogEvents",
                 "cloudwatch:GetMetricData",
                 "cloudwatch:GetMetricStatistics",
+                "cloudwatch:PutMetricData",
                 "sns:Publish",
                 "ses:SendEmail",
                 "ses:SendRawEmail",
@@ -138,6 +164,98 @@ public class AlertingStack extends Stack {
             ))
             .build();
 
+        // Per-minute alert counts by severity and source, kept by AlertRouter and
+        // rolled up by AlertAnalytics instead of re-listing the alerts bucket
+        this.alertCountersTable = Table.Builder.create(this, "AlertCountersTable")
+            .tableName("synapsed-alert-counters")
+            .partitionKey(Attribute.builder()
+                .name("hourKey")
+                .type(AttributeType.STRING)
+                .build())
+            .sortKey(Attribute.builder()
+                .name("minuteKey")
+                .type(AttributeType.STRING)
+                .build())
+            .billingMode(BillingMode.PAY_PER_REQUEST)
+            .timeToLiveAttribute("expiresAt")
+            .build();
+
+        alertRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "dynamodb:UpdateItem",
+                "dynamodb:Query"
+            ))
+            .resources(Arrays.asList(alertCountersTable.getTableArn()))
+            .build());
+
+        // Archive routed alerts as hourly-partitioned GZIP NDJSON objects instead of
+        // one S3 object per alert
+        this.alertArchiveRole = new Role(this, "AlertArchiveRole",
+            RoleProps.builder()
+                .assumedBy(new ServicePrincipal("firehose.amazonaws.com"))
+                .build());
+        alertsBucket.grantReadWrite(alertArchiveRole);
+
+        this.alertArchiveStream = new CfnDeliveryStream(this, "AlertArchiveStream",
+            CfnDeliveryStreamProps.builder()
+                .deliveryStreamName("synapsed-alert-archive")
+                .deliveryStreamType("DirectPut")
+                .extendedS3DestinationConfiguration(CfnDeliveryStream.ExtendedS3DestinationConfigurationProperty.builder()
+                    .bucketArn(alertsBucket.getBucketArn())
+                    .roleArn(alertArchiveRole.getRoleArn())
+                    .bufferingHints(CfnDeliveryStream.BufferingHintsProperty.builder()
+                        .intervalInSeconds(60)
+                        .sizeInMBs(5)
+                        .build())
+                    .compressionFormat("GZIP")
+                    .prefix(ALERT_ARCHIVE_PREFIX)
+                    .errorOutputPrefix("alert-errors/!{firehose:error-output-type}/year=!{timestamp:yyyy}/month=!{timestamp:MM}/day=!{timestamp:dd}/")
+                    .build())
+                .build());
+
+        // The role policy must exist before Firehose validates access to the bucket
+        alertArchiveStream.getNode().addDependency(alertArchiveRole);
+
+        alertRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList("firehose:PutRecordBatch"))
+            .resources(Arrays.asList(alertArchiveStream.getAttrArn()))
+            .build());
+
+        // Analytics backfills read the archive and keep their checkpoint under analytics/
+        alertRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "s3:GetObject",
+                "s3:ListBucket"
+            ))
+            .resources(Arrays.asList(
+                alertsBucket.getBucketArn(),
+                alertsBucket.arnForObjects("alerts/*")
+            ))
+            .build());
+
+        alertRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "s3:PutObject",
+                "s3:GetObject",
+                "s3:DeleteObject"
+            ))
+            .resources(Arrays.asList(alertsBucket.arnForObjects("analytics/*")))
+            .build());
+
+        // AlertRouter polls its severity rules from the AppConfig profile
+        alertRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "appconfig:StartConfigurationSession",
+                "appconfig:GetLatestConfiguration"
+            ))
+            .resources(Arrays.asList("*"))
+            .build());
+
         // Create Lambda function for alert routing
         this.alertRouter = new Function(this, "AlertRouter",
             FunctionProps.builder()
@@ -147,11 +265,16 @@ public class AlertingStack extends Stack {
                 .role(alertRole)
                 .memorySize(256)
                 .timeout(Duration.seconds(60))
+                .logGroup(loggingStack.getAuditLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getAuditLogs().getLogGroupName(),
                     "CRITICAL_TOPIC_ARN", criticalAlertsTopic.getTopicArn(),
                     "WARNING_TOPIC_ARN", warningAlertsTopic.getTopicArn(),
-                    "INFO_TOPIC_ARN", infoAlertsTopic.getTopicArn()
+                    "INFO_TOPIC_ARN", infoAlertsTopic.getTopicArn(),
+                    "ALERT_ARCHIVE_STREAM", alertArchiveStream.getRef(),
+                    "ALERT_COUNTERS_TABLE", alertCountersTable.getTableName(),
+                    "APPCONFIG_APPLICATION", ConfigurationManagementStack.APP_CONFIG_APPLICATION,
+                    "APPCONFIG_ENVIRONMENT", ConfigurationManagementStack.APP_CONFIG_ENVIRONMENT,
+                    "APPCONFIG_PROFILE", ConfigurationManagementStack.APP_CONFIG_PROFILE
                 ))
                 .build());
 
@@ -164,8 +287,8 @@ public class AlertingStack extends Stack {
                 .role(alertRole)
                 .memorySize(256)
                 .timeout(Duration.seconds(60))
+                .logGroup(loggingStack.getAuditLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getAuditLogs().getLogGroupName(),
                     "SLACK_WORKSPACE_ID", System.getenv().getOrDefault("SLACK_WORKSPACE_ID", ""),
                     "SLACK_CHANNEL_ID", System.getenv().getOrDefault("SLACK_CHANNEL_ID", ""),
                     "TEAMS_WEBHOOK_URL", System.getenv().getOrDefault("TEAMS_WEBHOOK_URL", ""),
@@ -184,14 +307,33 @@ public class AlertingStack extends Stack {
                 .role(alertRole)
                 .memorySize(256)
                 .timeout(Duration.seconds(60))
+                .logGroup(loggingStack.getAuditLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getAuditLogs().getLogGroupName(),
                     "CRITICAL_TOPIC_ARN", criticalAlertsTopic.getTopicArn(),
                     "WARNING_TOPIC_ARN", warningAlertsTopic.getTopicArn(),
                     "ESCALATION_TOPIC_ARN", escalationTopic.getTopicArn()
                 ))
                 .build());
 
+        // Create Lambda function for alert analytics
+        this.alertAnalytics = new Function(this, "AlertAnalytics",
+            FunctionProps.builder()
+                .runtime(Runtime.JAVA_21)
+                .handler("me.synapsed.aws.lambda.AlertAnalytics::handleRequest")
+                .code(Code.fromAsset("src/main/java/me/synapsed/aws/lambda"))
+                .role(alertRole)
+                .memorySize(256)
+                // Backfills scan the archive until shortly before the timeout, then checkpoint
+                .timeout(Duration.minutes(5))
+                .logGroup(loggingStack.getAuditLogs())
+                .environment(Map.of(
+                    "ALERTS_BUCKET", alertsBucket.getBucketName(),
+                    "ALERT_COUNTERS_TABLE", alertCountersTable.getTableName(),
+                    "ANALYTICS_WINDOW_HOURS", "24",
+                    "ALERT_SCAN_MAX_IN_FLIGHT", "64"
+                ))
+                .build());
+
         // Create Step Functions workflow for alert processing
         Pass startState = new Pass(this, "StartState", PassProps.builder()
             .result(Result.fromObject(Map.of("status", "STARTED")))
@@ -232,11 +374,77 @@ public class AlertingStack extends Stack {
                 .timeout(Duration.minutes(5))
                 .build());
 
-        // Create EventBridge Rule for scheduled alert processing
-        this.alertProcessingRule = new Rule(this, "AlertProcessingRule",
+        // Alerts that still fail after five deliveries are parked here
+        this.alertDeadLetterQueue = new Queue(this, "AlertDeadLetterQueue",
+            QueueProps.builder()
+                .encryption(QueueEncryption.SQS_MANAGED)
+                .retentionPeriod(Duration.days(14))
+                .build());
+
+        // Buffers findings between EventBridge and AlertRouter so bursts queue up instead of
+        // throttling; the visibility timeout covers six AlertRouter timeouts
+        this.alertQueue = new Queue(this, "AlertQueue",
+            QueueProps.builder()
+                .encryption(QueueEncryption.SQS_MANAGED)
+                .visibilityTimeout(Duration.minutes(6))
+                .deadLetterQueue(DeadLetterQueue.builder()
+                    .queue(alertDeadLetterQueue)
+                    .maxReceiveCount(5)
+                    .build())
+                .build());
+
+        // Route findings as they are published rather than on a schedule. Each source has
+        // its own rule so only actionable findings reach the queue: informational and low
+        // findings, findings Security Hub has archived and compliant evaluations are dropped
+        this.alertProcessingRules = new Rule[] {
+            new Rule(this, "SecurityHubAlertRule",
+                RuleProps.builder()
+                    .eventPattern(EventPattern.builder()
+                        .source(Arrays.asList("aws.securityhub"))
+                        .detailType(Arrays.asList("Security Hub Findings - Imported"))
+                        .detail(Map.of("findings", Map.of(
+                            "Severity", Map.of("Label", Arrays.asList("CRITICAL", "HIGH", "MEDIUM")),
+                            "RecordState", Arrays.asList("ACTIVE"))))
+                        .build())
+                    .targets(Arrays.asList(new SqsQueue(alertQueue)))
+                    .build()),
+
+            new Rule(this, "GuardDutyAlertRule",
+                RuleProps.builder()
+                    .eventPattern(EventPattern.builder()
+                        .source(Arrays.asList("aws.guardduty"))
+                        .detailType(Arrays.asList("GuardDuty Finding"))
+                        .detail(Map.of("severity", Arrays.asList(Map.of("numeric", Arrays.asList(">=", 4)))))
+                        .build())
+                    .targets(Arrays.asList(new SqsQueue(alertQueue)))
+                    .build()),
+
+            new Rule(this, "ConfigComplianceAlertRule",
+                RuleProps.builder()
+                    .eventPattern(EventPattern.builder()
+                        .source(Arrays.asList("aws.config"))
+                        .detailType(Arrays.asList("Config Rules Compliance Change"))
+                        .detail(Map.of("newEvaluationResult", Map.of(
+                            "complianceType", Arrays.asList("NON_COMPLIANT"))))
+                        .build())
+                    .targets(Arrays.asList(new SqsQueue(alertQueue)))
+                    .build())
+        };
+
+        // AlertRouter reports failed messages, so only they are retried; the short batching
+        // window keeps routing within seconds while a burst is drained in batches of 100
+        alertRouter.addEventSource(new SqsEventSource(alertQueue,
+            SqsEventSourceProps.builder()
+                .batchSize(100)
+                .maxBatchingWindow(Duration.seconds(1))
+                .reportBatchItemFailures(true)
+                .build()));
+
+        // Refresh the rolling alert metrics; each run reads at most a day of counters
+        this.alertAnalyticsRule = new Rule(this, "AlertAnalyticsRule",
             RuleProps.builder()
                 .schedule(Schedule.rate(Duration.minutes(5)))
-                .targets(Arrays.asList(new LambdaFunction(alertRouter)))
+                .targets(Arrays.asList(new LambdaFunction(alertAnalytics)))
                 .build());
 
         // Create CloudWatch dashboard for alert analytics
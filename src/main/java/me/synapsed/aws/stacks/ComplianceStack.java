@@ -135,8 +135,8 @@ public class ComplianceStack extends Stack {
                 .role(complianceRole)
                 .memorySize(128) // Reduce memory to minimum required
                 .timeout(Duration.seconds(30)) // Reduce timeout to minimum required
+                .logGroup(loggingStack.getAuditLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getAuditLogs().getLogGroupName(),
                     "NOTIFICATION_TOPIC_ARN", complianceNotificationsTopic.getTopicArn(),
                     "COMPLIANCE_BUCKET", complianceBucket.getBucketName()
                 ))
@@ -37,6 +37,10 @@ import lombok.Getter;
  */
 @Getter
 public class ConfigurationManagementStack extends SynapsedStack {
+    // AppConfig names, which functions use to read configuration with the AppConfig Data API
+    static final String APP_CONFIG_APPLICATION = "synapsed-app";
+    static final String APP_CONFIG_ENVIRONMENT = "production";
+    static final String APP_CONFIG_PROFILE = "synapsed-config";
 
     private final Key configKey;
     private final StringParameter appConfigParam;
@@ -80,7 +84,7 @@ public class ConfigurationManagementStack extends SynapsedStack {
 
         // Create AppConfig application
         CfnApplicationProps appProps = CfnApplicationProps.builder()
-            .name("synapsed-app")
+            .name(APP_CONFIG_APPLICATION)
             .description("Synapsed application configuration")
             .build();
         this.appConfigApp = new CfnApplication(this, NamingUtils.resourceName(this, "AppConfigApp"), appProps);
@@ -88,7 +92,7 @@ public class ConfigurationManagementStack extends SynapsedStack {
         // Create AppConfig environment
         CfnEnvironmentProps envProps = CfnEnvironmentProps.builder()
             .applicationId(this.appConfigApp.getRef())
-            .name("production")
+            .name(APP_CONFIG_ENVIRONMENT)
             .description("Production environment")
             .build();
         this.appConfigEnv = new CfnEnvironment(this, NamingUtils.resourceName(this, "AppConfigEnv"), envProps);
@@ -96,7 +100,7 @@ public class ConfigurationManagementStack extends SynapsedStack {
         // Create AppConfig configuration profile
         CfnConfigurationProfileProps profileProps = CfnConfigurationProfileProps.builder()
             .applicationId(this.appConfigApp.getRef())
-            .name("synapsed-config")
+            .name(APP_CONFIG_PROFILE)
             .description("Synapsed configuration profile")
             .locationUri("hosted")
             .retrievalRoleArn(createAppConfigRole().getRoleArn())
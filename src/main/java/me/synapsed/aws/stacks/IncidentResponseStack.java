@@ -97,8 +97,8 @@ public class IncidentResponseStack extends Stack {
                 .role(incidentRole)
                 .memorySize(256)
                 .timeout(Duration.seconds(60))
+                .logGroup(loggingStack.getAuditLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getAuditLogs().getLogGroupName(),
                     "NOTIFICATION_TOPIC_ARN", incidentNotificationsTopic.getTopicArn()
                 ))
                 .build());
@@ -112,8 +112,8 @@ public class IncidentResponseStack extends Stack {
                 .role(incidentRole)
                 .memorySize(512)
                 .timeout(Duration.seconds(300))
+                .logGroup(loggingStack.getAuditLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getAuditLogs().getLogGroupName(),
                     "NOTIFICATION_TOPIC_ARN", incidentNotificationsTopic.getTopicArn()
                 ))
                 .build());
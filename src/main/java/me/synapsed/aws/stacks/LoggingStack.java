@@ -1,19 +1,40 @@
 package me.synapsed.aws.stacks;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import lombok.Getter;
+import me.synapsed.aws.lambda.LogSchema;
 import software.amazon.awscdk.Duration;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.services.athena.CfnWorkGroup;
 import software.amazon.awscdk.services.athena.CfnWorkGroupProps;
+import software.amazon.awscdk.services.glue.CfnDatabase;
+import software.amazon.awscdk.services.glue.CfnDatabaseProps;
+import software.amazon.awscdk.services.glue.CfnTable;
+import software.amazon.awscdk.services.glue.CfnTableProps;
+import software.amazon.awscdk.services.iam.Effect;
+import software.amazon.awscdk.services.iam.PolicyStatement;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.RoleProps;
 import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.kinesis.Stream;
+import software.amazon.awscdk.services.kinesis.StreamEncryption;
+import software.amazon.awscdk.services.kinesis.StreamProps;
 import software.amazon.awscdk.services.kinesisfirehose.CfnDeliveryStream;
 import software.amazon.awscdk.services.kinesisfirehose.CfnDeliveryStreamProps;
 import software.amazon.awscdk.services.kms.Key;
 import software.amazon.awscdk.services.kms.KeyProps;
+import software.amazon.awscdk.services.lambda.Code;
+import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.FunctionProps;
+import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.lambda.StartingPosition;
+import software.amazon.awscdk.services.lambda.eventsources.KinesisEventSource;
+import software.amazon.awscdk.services.lambda.eventsources.KinesisEventSourceProps;
+import software.amazon.awscdk.services.lambda.eventsources.SqsDlq;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.LogGroupProps;
 import software.amazon.awscdk.services.logs.RetentionDays;
@@ -28,15 +49,32 @@ import software.amazon.awscdk.services.s3.BucketProps;
 import software.amazon.awscdk.services.s3.LifecycleRule;
 import software.amazon.awscdk.services.s3.StorageClass;
 import software.amazon.awscdk.services.s3.Transition;
+import software.amazon.awscdk.services.sqs.Queue;
+import software.amazon.awscdk.services.sqs.QueueEncryption;
+import software.amazon.awscdk.services.sqs.QueueProps;
 import software.constructs.Construct;
 import software.amazon.awscdk.Tags;
 
 @Getter
 public class LoggingStack extends Stack {
+    static final String LOG_PARTITION_PREFIX = "logs/category=!{partitionKeyFromQuery:category}"
+        + "/service=!{partitionKeyFromQuery:service}/level=!{partitionKeyFromQuery:level}"
+        + "/dt=!{timestamp:yyyy-MM-dd}/hour=!{timestamp:HH}/";
+    static final String LOG_TABLE_NAME = "logs";
+    // Services with their own partition; the log processor files any other service under "other"
+    static final List<String> LOG_SERVICES = Arrays.asList(
+        "relay-server", "signaling", "subscription", "authentication", "alerting",
+        "incident-response", "security-monitoring", "compliance", "logging", "webapp");
+
     private final Key logEncryptionKey;
     private final Bucket logBucket;
     private final Role firehoseRole;
+    private final CfnDatabase logDatabase;
+    private final CfnTable logTable;
     private final CfnDeliveryStream logDeliveryStream;
+    private final Stream logStream;
+    private final Queue logProcessorDeadLetterQueue;
+    private final Function logProcessorFunction;
     private final LogGroup applicationLogs;
     private final LogGroup securityLogs;
     private final LogGroup auditLogs;
@@ -94,6 +132,96 @@ public class LoggingStack extends Stack {
         logBucket.grantReadWrite(firehoseRole);
         logEncryptionKey.grantEncryptDecrypt(firehoseRole);
 
+        // Glue table for the Parquet logs; partition projection computes partitions from the
+        // S3 prefix layout, so Athena needs no crawler or MSCK REPAIR
+        this.logDatabase = new CfnDatabase(this, "LogDatabase",
+            CfnDatabaseProps.builder()
+                .catalogId(getAccount())
+                .databaseInput(CfnDatabase.DatabaseInputProperty.builder()
+                    .name("synapsed_logs")
+                    .description("Archived platform logs")
+                    .build())
+                .build()
+        );
+
+        List<CfnTable.ColumnProperty> logColumns = new ArrayList<>();
+        for (LogSchema.Column column : LogSchema.COLUMNS) {
+            logColumns.add(CfnTable.ColumnProperty.builder()
+                .name(column.name())
+                .type(column.type().glueType())
+                .build());
+        }
+        logColumns.add(CfnTable.ColumnProperty.builder()
+            .name(LogSchema.ATTRIBUTES.name())
+            .type(LogSchema.ATTRIBUTES.type().glueType())
+            .build());
+        List<String> levels = new ArrayList<>(LogSchema.LEVELS);
+        levels.sort(null);
+        levels.addAll(Arrays.asList("other", "unknown"));
+        List<String> services = new ArrayList<>(LOG_SERVICES);
+        services.addAll(Arrays.asList("other", "unknown"));
+        String logLocation = "s3://" + logBucket.getBucketName() + "/logs/";
+        this.logTable = new CfnTable(this, "LogTable",
+            CfnTableProps.builder()
+                .catalogId(getAccount())
+                .databaseName(logDatabase.getRef())
+                .tableInput(CfnTable.TableInputProperty.builder()
+                    .name(LOG_TABLE_NAME)
+                    .tableType("EXTERNAL_TABLE")
+                    .partitionKeys(Arrays.asList(
+                        partitionColumn("category", "string"),
+                        partitionColumn("service", "string"),
+                        partitionColumn("level", "string"),
+                        partitionColumn("dt", "string"),
+                        partitionColumn("hour", "string")
+                    ))
+                    .parameters(Map.ofEntries(
+                        Map.entry("classification", "parquet"),
+                        Map.entry("projection.enabled", "true"),
+                        Map.entry("projection.category.type", "enum"),
+                        Map.entry("projection.category.values", "application,security,audit,performance"),
+                        Map.entry("projection.service.type", "enum"),
+                        Map.entry("projection.service.values", String.join(",", services)),
+                        Map.entry("projection.level.type", "enum"),
+                        Map.entry("projection.level.values", String.join(",", levels)),
+                        Map.entry("projection.dt.type", "date"),
+                        Map.entry("projection.dt.format", "yyyy-MM-dd"),
+                        Map.entry("projection.dt.range", "2024-01-01,NOW"),
+                        Map.entry("projection.hour.type", "integer"),
+                        Map.entry("projection.hour.range", "0,23"),
+                        Map.entry("projection.hour.digits", "2"),
+                        Map.entry("storage.location.template", logLocation
+                            + "category=${category}/service=${service}/level=${level}/dt=${dt}/hour=${hour}/")
+                    ))
+                    .storageDescriptor(CfnTable.StorageDescriptorProperty.builder()
+                        .columns(logColumns)
+                        .location(logLocation)
+                        .inputFormat("org.apache.hadoop.hive.ql.io.parquet.MapredParquetInputFormat")
+                        .outputFormat("org.apache.hadoop.hive.ql.io.parquet.MapredParquetOutputFormat")
+                        .serdeInfo(CfnTable.SerdeInfoProperty.builder()
+                            .serializationLibrary("org.apache.hadoop.hive.ql.io.parquet.serde.ParquetHiveSerDe")
+                            .build())
+                        .build())
+                    .build())
+                .build()
+        );
+
+        // Firehose reads the table schema for record format conversion
+        String glueArnPrefix = "arn:" + getPartition() + ":glue:" + getRegion() + ":" + getAccount() + ":";
+        firehoseRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "glue:GetTable",
+                "glue:GetTableVersion",
+                "glue:GetTableVersions"
+            ))
+            .resources(Arrays.asList(
+                glueArnPrefix + "catalog",
+                glueArnPrefix + "database/" + logDatabase.getRef(),
+                glueArnPrefix + "table/" + logDatabase.getRef() + "/" + LOG_TABLE_NAME
+            ))
+            .build());
+
         // Create Firehose delivery stream
         this.logDeliveryStream = new CfnDeliveryStream(this, "LogDeliveryStream",
             CfnDeliveryStreamProps.builder()
@@ -102,21 +230,153 @@ public class LoggingStack extends Stack {
                     .keyType("CUSTOMER_MANAGED_CMK")
                     .keyArn(logEncryptionKey.getKeyArn())
                     .build())
-                .s3DestinationConfiguration(CfnDeliveryStream.S3DestinationConfigurationProperty.builder()
+                .extendedS3DestinationConfiguration(CfnDeliveryStream.ExtendedS3DestinationConfigurationProperty.builder()
                     .bucketArn(logBucket.getBucketArn())
                     .roleArn(firehoseRole.getRoleArn())
+                    // Dynamic partitioning needs a buffer of at least 64 MB
                     .bufferingHints(CfnDeliveryStream.BufferingHintsProperty.builder()
                         .intervalInSeconds(300)
-                        .sizeInMBs(5)
+                        .sizeInMBs(64)
                         .build())
+                    // Parquet compresses its own column chunks, so the S3 objects are not compressed again
+                    .compressionFormat("UNCOMPRESSED")
                     .encryptionConfiguration(CfnDeliveryStream.EncryptionConfigurationProperty.builder()
                         .kmsEncryptionConfig(CfnDeliveryStream.KMSEncryptionConfigProperty.builder()
                             .awskmsKeyArn(logEncryptionKey.getKeyArn())
                             .build())
                         .build())
+                    // Partition keys are written into each entry by the log processor
+                    .dynamicPartitioningConfiguration(CfnDeliveryStream.DynamicPartitioningConfigurationProperty.builder()
+                        .enabled(true)
+                        .retryOptions(CfnDeliveryStream.RetryOptionsProperty.builder()
+                            .durationInSeconds(300)
+                            .build())
+                        .build())
+                    .prefix(LOG_PARTITION_PREFIX)
+                    .errorOutputPrefix("errors/!{firehose:error-output-type}/dt=!{timestamp:yyyy-MM-dd}/")
+                    .processingConfiguration(CfnDeliveryStream.ProcessingConfigurationProperty.builder()
+                        .enabled(true)
+                        .processors(Arrays.asList(
+                            // Aggregated records hold several log lines that may belong to different partitions
+                            CfnDeliveryStream.ProcessorProperty.builder()
+                                .type("RecordDeAggregation")
+                                .parameters(Arrays.asList(
+                                    processorParameter("SubRecordType", "JSON")
+                                ))
+                                .build(),
+                            CfnDeliveryStream.ProcessorProperty.builder()
+                                .type("MetadataExtraction")
+                                .parameters(Arrays.asList(
+                                    processorParameter("MetadataExtractionQuery",
+                                        "{category: .partition_keys.category, service: .partition_keys.service, level: .partition_keys.level}"),
+                                    processorParameter("JsonParsingEngine", "JQ-1.6")
+                                ))
+                                .build()
+                        ))
+                        .build())
+                    // Convert JSON records to Parquet against the Glue table schema
+                    .dataFormatConversionConfiguration(CfnDeliveryStream.DataFormatConversionConfigurationProperty.builder()
+                        .enabled(true)
+                        .inputFormatConfiguration(CfnDeliveryStream.InputFormatConfigurationProperty.builder()
+                            .deserializer(CfnDeliveryStream.DeserializerProperty.builder()
+                                .openXJsonSerDe(CfnDeliveryStream.OpenXJsonSerDeProperty.builder()
+                                    .caseInsensitive(true)
+                                    .build())
+                                .build())
+                            .build())
+                        .outputFormatConfiguration(CfnDeliveryStream.OutputFormatConfigurationProperty.builder()
+                            .serializer(CfnDeliveryStream.SerializerProperty.builder()
+                                .parquetSerDe(CfnDeliveryStream.ParquetSerDeProperty.builder()
+                                    // SNAPPY by default; LOG_COMPRESSION_FORMAT=GZIP trades CPU for smaller files
+                                    .compression(System.getenv().getOrDefault("LOG_COMPRESSION_FORMAT", "SNAPPY"))
+                                    .build())
+                                .build())
+                            .build())
+                        .schemaConfiguration(CfnDeliveryStream.SchemaConfigurationProperty.builder()
+                            .catalogId(getAccount())
+                            .region(getRegion())
+                            .databaseName(logDatabase.getRef())
+                            .tableName(logTable.getRef())
+                            .roleArn(firehoseRole.getRoleArn())
+                            .versionId("LATEST")
+                            .build())
+                        .build())
                     .build())
                 .build()
         );
+        // The role policy must exist before Firehose validates access to the table and bucket
+        logDeliveryStream.getNode().addDependency(firehoseRole);
+
+        // Create Kinesis stream for real-time log shipping
+        this.logStream = new Stream(this, "LogStream",
+            StreamProps.builder()
+                .shardCount(2)
+                .retentionPeriod(Duration.hours(48))
+                .encryption(StreamEncryption.KMS)
+                .encryptionKey(logEncryptionKey)
+                .build()
+        );
+
+        // Records that still fail after retries and bisection are parked here
+        this.logProcessorDeadLetterQueue = new Queue(this, "LogProcessorDeadLetterQueue",
+            QueueProps.builder()
+                .encryption(QueueEncryption.KMS)
+                .encryptionMasterKey(logEncryptionKey)
+                .retentionPeriod(Duration.days(14))
+                .build()
+        );
+
+        // Create log processor that enriches Kinesis records and forwards them to Firehose
+        this.logProcessorFunction = new Function(this, "LogProcessorFunction",
+            FunctionProps.builder()
+                .runtime(Runtime.JAVA_17)
+                .handler("me.synapsed.aws.lambda.LogProcessor")
+                .code(Code.fromAsset("target/classes"))
+                .timeout(Duration.minutes(1))
+                .memorySize(1024)
+                .environment(Map.of(
+                    "DELIVERY_STREAM_NAME", logDeliveryStream.getRef(),
+                    // Pack log lines into 256 KiB newline-delimited Firehose records
+                    "RECORD_AGGREGATION_MAX_BYTES", "262144",
+                    "FIREHOSE_MAX_IN_FLIGHT", "4",
+                    "LOG_PARTITION_SERVICES", String.join(",", LOG_SERVICES),
+                    // Remembers the last 100k-200k delivered records to skip Kinesis redeliveries
+                    "DEDUP_WINDOW_RECORDS", "100000",
+                    // Sampling and per-source rate limits are off unless set at synth time; they can
+                    // also be changed on the function during an incident without a deployment
+                    "LOG_SAMPLE_RATES", System.getenv().getOrDefault("LOG_SAMPLE_RATES", ""),
+                    "LOG_SERVICE_SAMPLE_RATES", System.getenv().getOrDefault("LOG_SERVICE_SAMPLE_RATES", ""),
+                    "LOG_RATE_LIMIT_PER_SOURCE", System.getenv().getOrDefault("LOG_RATE_LIMIT_PER_SOURCE", ""),
+                    "LOG_RATE_LIMIT_BURST", System.getenv().getOrDefault("LOG_RATE_LIMIT_BURST", "")
+                ))
+                .build()
+        );
+        logProcessorFunction.addToRolePolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "firehose:PutRecordBatch"
+            ))
+            .resources(Arrays.asList(
+                logDeliveryStream.getAttrArn()
+            ))
+            .build());
+        logEncryptionKey.grantEncryptDecrypt(logProcessorFunction);
+
+        // The processor reports failed sequence numbers, so only the failed tail of a batch
+        // is retried; bisection isolates poison records before they reach the dead-letter queue
+        logProcessorFunction.addEventSource(new KinesisEventSource(logStream,
+            KinesisEventSourceProps.builder()
+                .startingPosition(StartingPosition.TRIM_HORIZON)
+                .batchSize(500)
+                .maxBatchingWindow(Duration.seconds(5))
+                .parallelizationFactor(10)
+                .reportBatchItemFailures(true)
+                .bisectBatchOnError(true)
+                .retryAttempts(10)
+                .maxRecordAge(Duration.hours(24))
+                .onFailure(new SqsDlq(logProcessorDeadLetterQueue))
+                .build()
+        ));
 
         // Create CloudWatch log groups with appropriate retention
         this.applicationLogs = new LogGroup(this, "ApplicationLogs",
@@ -179,4 +439,18 @@ public class LoggingStack extends Stack {
         // Review: Log retention is set to 1 month (application, performance), 1 year (security), 2 years (audit). Consider reducing further for privacy if possible.
         // NOTE: Use Athena or OpenSearch to analyze logs for privacy violations or anomalous access patterns.
     }
-} 
\ No newline at end of file
+
+    private static CfnTable.ColumnProperty partitionColumn(String name, String type) {
+        return CfnTable.ColumnProperty.builder()
+            .name(name)
+            .type(type)
+            .build();
+    }
+
+    private static CfnDeliveryStream.ProcessorParameterProperty processorParameter(String name, String value) {
+        return CfnDeliveryStream.ProcessorParameterProperty.builder()
+            .parameterName(name)
+            .parameterValue(value)
+            .build();
+    }
+}
@@ -19,18 +19,28 @@ import software.amazon.awscdk.services.backup.BackupPlanRule;
 import software.amazon.awscdk.services.dynamodb.Attribute;
 import software.amazon.awscdk.services.dynamodb.AttributeType;
 import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
+import software.amazon.awscdk.services.dynamodb.ProjectionType;
 import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.ec2.FlowLog;
 import software.amazon.awscdk.services.ec2.FlowLogDestination;
 import software.amazon.awscdk.services.ec2.GatewayVpcEndpointAwsService;
 import software.amazon.awscdk.services.ec2.GatewayVpcEndpointOptions;
+import software.amazon.awscdk.services.ec2.InterfaceVpcEndpointAwsService;
+import software.amazon.awscdk.services.ec2.InterfaceVpcEndpointOptions;
 import software.amazon.awscdk.services.ec2.Peer;
 import software.amazon.awscdk.services.ec2.Port;
 import software.amazon.awscdk.services.ec2.SecurityGroup;
 import software.amazon.awscdk.services.ec2.Vpc;
 import software.amazon.awscdk.services.ec2.VpcProps;
+import software.amazon.awscdk.services.events.Rule;
+import software.amazon.awscdk.services.events.RuleProps;
 import software.amazon.awscdk.services.events.Schedule;
+import software.amazon.awscdk.services.events.targets.LambdaFunction;
 import software.amazon.awscdk.services.iam.Effect;
+import software.amazon.awscdk.services.iam.Grant;
+import software.amazon.awscdk.services.iam.GrantOnPrincipalOptions;
+import software.amazon.awscdk.services.iam.IGrantable;
 import software.amazon.awscdk.services.iam.PolicyStatement;
 import software.amazon.awscdk.services.iam.Role;
 import software.amazon.awscdk.services.iam.RoleProps;
@@ -47,6 +57,9 @@ import software.amazon.awscdk.services.lambda.UtilizationScalingOptions;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.LogGroupProps;
 import software.amazon.awscdk.services.logs.RetentionDays;
+import software.amazon.awscdk.services.secretsmanager.Secret;
+import software.amazon.awscdk.services.secretsmanager.SecretProps;
+import software.amazon.awscdk.services.secretsmanager.SecretStringGenerator;
 import software.constructs.Construct;
 
 /**
@@ -55,7 +68,11 @@ import software.constructs.Construct;
  */
 @Getter
 public class RelayStack extends Stack {
+    static final String TURN_SHARED_SECRET_NAME = "synapsed/relay/turn-shared-secret";
+    // Parameter Store resolves this name to the Secrets Manager secret
+    static final String TURN_SHARED_SECRET_PARAMETER = "/aws/reference/secretsmanager/" + TURN_SHARED_SECRET_NAME;
     private final Function relayFunction;
+    private final Function peerConnectionSweeperFunction;
     private final RestApi relayApi;
     private final Table peerConnectionsTable;
     private final Role relayRole;
@@ -96,6 +113,13 @@ public class RelayStack extends Stack {
             .service(GatewayVpcEndpointAwsService.S3)
             .build());
 
+        // The VPC has no NAT gateway, so the relay function reaches Parameter Store
+        // for the TURN shared secret through an interface endpoint
+        vpc.addInterfaceEndpoint("SsmEndpoint", InterfaceVpcEndpointOptions.builder()
+            .service(InterfaceVpcEndpointAwsService.SSM)
+            .privateDnsEnabled(true)
+            .build());
+
         // Create security group for the relay function
         SecurityGroup relaySecurityGroup = SecurityGroup.Builder.create(this, "RelaySecurityGroup")
             .vpc(vpc)
@@ -180,8 +204,21 @@ public class RelayStack extends Stack {
             .billingMode(BillingMode.PAY_PER_REQUEST)
             .removalPolicy(software.amazon.awscdk.RemovalPolicy.DESTROY)
             .encryptionKey(relayKmsKey)
+            .timeToLiveAttribute("expiresAt")
             .build();
 
+        // DID lookups only need the peerId key, connectedAt and expiresAt, so the
+        // index projects nothing else and connect/status reads stay one small item
+        peerConnectionsTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+            .indexName("DidIndex")
+            .partitionKey(Attribute.builder()
+                .name("did")
+                .type(AttributeType.STRING)
+                .build())
+            .projectionType(ProjectionType.INCLUDE)
+            .nonKeyAttributes(Arrays.asList("connectedAt", "expiresAt"))
+            .build());
+
         // Create an IAM role for the relay function
         this.relayRole = new Role(this, "RelayRole",
             RoleProps.builder()
@@ -214,6 +251,29 @@ public class RelayStack extends Stack {
             ))
             .build());
 
+        // Shared with the TURN server, which validates the per-DID credentials signed with it
+        Secret turnSharedSecret = new Secret(this, "TurnSharedSecret", SecretProps.builder()
+            .secretName(TURN_SHARED_SECRET_NAME)
+            .description("TURN REST API shared secret")
+            .encryptionKey(relayKmsKey)
+            .generateSecretString(SecretStringGenerator.builder()
+                .excludePunctuation(true)
+                .passwordLength(32)
+                .build())
+            .build());
+        turnSharedSecret.grantRead(relayRole);
+
+        // The relay function reads the secret through its Parameter Store reference
+        relayRole.addToPolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "ssm:GetParameter"
+            ))
+            .resources(Arrays.asList(
+                "arn:aws:ssm:" + getRegion() + ":" + getAccount() + ":parameter" + TURN_SHARED_SECRET_PARAMETER
+            ))
+            .build());
+
         // Create the relay Lambda function
         this.relayFunction = new Function(this, "RelayFunction",
             FunctionProps.builder()
@@ -230,11 +290,41 @@ public class RelayStack extends Stack {
                     "PEER_CONNECTIONS_TABLE", peerConnectionsTable.getTableName(),
                     "STUN_SERVER", "stun:stun.l.google.com:19302",
                     "TURN_SERVER", "turn:your-turn-server.com:3478",
-                    "TURN_USERNAME", "your-turn-username", // Replace with SSM/SecretsManager reference
-                    "TURN_CREDENTIAL", "your-turn-credential" // Replace with SSM/SecretsManager reference
+                    // Per-DID credentials are the only TURN credentials; without the secret clients get STUN alone
+                    "TURN_SHARED_SECRET_PARAMETER", TURN_SHARED_SECRET_PARAMETER,
+                    "TURN_CREDENTIAL_TTL_SECONDS", "3600"
                 ))
                 .build());
 
+        // DynamoDB TTL can lag behind expiresAt, so sweep stragglers every 15 minutes
+        this.peerConnectionSweeperFunction = new Function(this, "PeerConnectionSweeperFunction",
+            FunctionProps.builder()
+                .runtime(Runtime.JAVA_17)
+                .handler("me.synapsed.aws.lambda.PeerConnectionSweeper")
+                .code(software.amazon.awscdk.services.lambda.Code.fromAsset("target/classes"))
+                .timeout(Duration.minutes(5))
+                .memorySize(512)
+                .environment(Map.of(
+                    "PEER_CONNECTIONS_TABLE", peerConnectionsTable.getTableName()
+                ))
+                .build());
+        peerConnectionSweeperFunction.addToRolePolicy(PolicyStatement.Builder.create()
+            .effect(Effect.ALLOW)
+            .actions(Arrays.asList(
+                "dynamodb:Scan",
+                "dynamodb:DeleteItem"
+            ))
+            .resources(Arrays.asList(
+                peerConnectionsTable.getTableArn()
+            ))
+            .build());
+        relayKmsKey.grantEncryptDecrypt(peerConnectionSweeperFunction);
+        new Rule(this, "PeerConnectionSweepRule",
+            RuleProps.builder()
+                .schedule(Schedule.rate(Duration.minutes(15)))
+                .targets(Arrays.asList(new LambdaFunction(peerConnectionSweeperFunction)))
+                .build());
+
         // Create the REST API Gateway
         this.relayApi = RestApi.Builder.create(this, "RelayApi")
             .restApiName("relay-api")
@@ -264,6 +354,26 @@ public class RelayStack extends Stack {
                 ))
                 .build());
 
+        // Add POST method for batched signaling (e.g. trickled ICE candidates)
+        signalingResource.addResource("batch").addMethod("POST",
+            new LambdaIntegration(relayFunction),
+            MethodOptions.builder()
+                .methodResponses(Arrays.asList(
+                    MethodResponse.builder()
+                        .statusCode("200")
+                        .build(),
+                    MethodResponse.builder()
+                        .statusCode("400")
+                        .build(),
+                    MethodResponse.builder()
+                        .statusCode("403")
+                        .build(),
+                    MethodResponse.builder()
+                        .statusCode("500")
+                        .build()
+                ))
+                .build());
+
         // Add auto-scaling policy for concurrent executions
         Alias prodAlias = Alias.Builder.create(this, "ProdAlias")
             .aliasName("prod")
@@ -330,4 +440,16 @@ public class RelayStack extends Stack {
         // NOTE: For AWS Budgets and Cost Anomaly Detection, create a separate stack or script at the account level.
         // These services are not typically provisioned per-stack in CDK, but can be managed via CloudFormation or the AWS Console.
     }
-} 
\ No newline at end of file
+
+    /**
+     * Allows the function serving peer connection actions to look peers up by DID.
+     * The relay function only reads peers by peerId, so it is not granted this.
+     */
+    public void grantDidIndexQuery(IGrantable grantee) {
+        Grant.addToPrincipal(GrantOnPrincipalOptions.builder()
+            .grantee(grantee)
+            .actions(Arrays.asList("dynamodb:Query"))
+            .resourceArns(Arrays.asList(peerConnectionsTable.getTableArn() + "/index/DidIndex"))
+            .build());
+    }
+}
@@ -112,8 +112,8 @@ public class SecurityMonitoringStack extends Stack {
                 .handler("me.synapsed.aws.lambda.SecurityEventProcessor::handleRequest")
                 .code(Code.fromAsset("src/main/java/me/synapsed/aws/lambda"))
                 .role(securityMonitoringRole)
+                .logGroup(loggingStack.getSecurityLogs())
                 .environment(Map.of(
-                    "LOG_GROUP_NAME", loggingStack.getSecurityLogs().getLogGroupName(),
                     "NOTIFICATION_TOPIC_ARN", securityNotificationsTopic.getTopicArn()
                 ))
                 .build());
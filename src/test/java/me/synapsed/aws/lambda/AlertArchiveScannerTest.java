@@ -0,0 +1,216 @@
+package me.synapsed.aws.lambda;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class AlertArchiveScannerTest {
+    private static final String BUCKET = "test-alerts";
+    private static final Instant START = Instant.parse("2026-10-15T12:00:00Z");
+    private static final Instant END = Instant.parse("2026-10-16T12:00:00Z");
+
+    private S3AsyncClient s3Client;
+    private AlertArchiveScanner scanner;
+    private final List<ListObjectsV2Request> listRequests = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        s3Client = mock(S3AsyncClient.class);
+        scanner = new AlertArchiveScanner(s3Client, BUCKET, 4);
+
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            listRequests.add(request);
+            return completedFuture(page(request));
+        });
+        when(s3Client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class))).thenAnswer(invocation -> {
+            String key = ((GetObjectRequest) invocation.getArgument(0)).key();
+            byte[] body;
+            if (key.startsWith("alerts/year=")) {
+                body = gzip("{\"severity\":\"CRITICAL\",\"source\":\"aws.guardduty\",\"routedAt\":\"2026-10-16T10:05:00Z\"}\n"
+                    + "{\"severity\":\"INFO\",\"source\":\"aws.config\",\"routedAt\":\"2026-10-16T10:06:00Z\"}\n"
+                    // Outside the window
+                    + "{\"severity\":\"INFO\",\"source\":\"aws.config\",\"routedAt\":\"2026-10-16T12:00:00Z\"}\n");
+            } else if (key.contains("legacy")) {
+                body = "{id=1, source=aws.config, detail={}}".getBytes(StandardCharsets.UTF_8);
+            } else {
+                body = "{\"id\":\"1\",\"source\":\"aws.guardduty\"}".getBytes(StandardCharsets.UTF_8);
+            }
+            return completedFuture(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), body));
+        });
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(completedFuture(PutObjectResponse.builder().build()));
+    }
+
+    private static byte[] gzip(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static S3Object object(String key, Instant lastModified) {
+        return S3Object.builder().key(key).lastModified(lastModified).build();
+    }
+
+    /**
+     * One hour partition with an archive object, and two older severity prefixes:
+     * critical has two pages, warning one page that runs past the end of the window.
+     */
+    private static ListObjectsV2Response page(ListObjectsV2Request request) {
+        if ("/".equals(request.delimiter())) {
+            return ListObjectsV2Response.builder()
+                .commonPrefixes(CommonPrefix.builder().prefix("alerts/critical/").build(),
+                    CommonPrefix.builder().prefix("alerts/warning/").build(),
+                    CommonPrefix.builder().prefix("alerts/year=2026/").build())
+                .isTruncated(false)
+                .build();
+        }
+        if ("alerts/year=2026/month=10/day=16/hour=10/".equals(request.prefix())) {
+            return ListObjectsV2Response.builder()
+                .contents(object("alerts/year=2026/month=10/day=16/hour=10/alert-archive-1.gz",
+                    Instant.parse("2026-10-16T12:10:00Z")))
+                .isTruncated(false)
+                .build();
+        }
+        if (request.prefix().startsWith("alerts/year=")) {
+            return ListObjectsV2Response.builder().isTruncated(false).build();
+        }
+        if ("alerts/critical/".equals(request.prefix()) && request.continuationToken() == null) {
+            return ListObjectsV2Response.builder()
+                .contents(object("alerts/critical/2026-10-15T13:00:00Z-a.json", Instant.parse("2026-10-15T13:00:00Z")),
+                    object("alerts/critical/2026-10-15T14:00:00Z-legacy.json", Instant.parse("2026-10-15T14:00:00Z")))
+                .isTruncated(true)
+                .nextContinuationToken("critical-2")
+                .build();
+        }
+        if ("alerts/critical/".equals(request.prefix())) {
+            return ListObjectsV2Response.builder()
+                .contents(object("alerts/critical/2026-10-16T11:00:00Z-b.json", Instant.parse("2026-10-16T11:00:00Z")))
+                .isTruncated(false)
+                .build();
+        }
+        return ListObjectsV2Response.builder()
+            .contents(object("alerts/warning/2026-10-16T10:00:00Z-legacy.json", Instant.parse("2026-10-16T10:00:00Z")),
+                object("alerts/warning/2026-10-16T13:00:00Z-c.json", Instant.parse("2026-10-16T13:00:00Z")))
+            .isTruncated(true)
+            .nextContinuationToken("warning-2")
+            .build();
+    }
+
+    @Test
+    void scanCountsAlertsInWindowAcrossPrefixesAndPages() {
+        AlertArchiveScanner.Checkpoint checkpoint = scanner.scan(scanner.start(START, END), () -> 60_000L);
+
+        assertTrue(checkpoint.finished());
+        assertEquals(6, checkpoint.total());
+        assertEquals(Map.of("CRITICAL", 4L, "WARNING", 1L, "INFO", 1L), checkpoint.bySeverity());
+        assertEquals(Map.of("aws.guardduty", 3L, "aws.config", 3L), checkpoint.bySource());
+
+        // Every hour of the window and the one before it, which holds alerts routed
+        // just before the start, are listed once, and the year prefix itself never
+        assertEquals(25, listRequests.stream()
+            .filter(request -> request.prefix().startsWith("alerts/year=") && request.delimiter() == null)
+            .count());
+        assertTrue(listRequests.stream()
+            .anyMatch(request -> "alerts/year=2026/month=10/day=15/hour=11/".equals(request.prefix())));
+        assertFalse(listRequests.stream()
+            .anyMatch(request -> "alerts/year=2026/month=10/day=16/hour=12/".equals(request.prefix())));
+        assertFalse(listRequests.stream().anyMatch(request -> "alerts/year=2026/".equals(request.prefix())));
+
+        // Older alerts are skipped by the listing itself
+        ListObjectsV2Request first = listRequests.stream()
+            .filter(request -> "alerts/critical/".equals(request.prefix()))
+            .findFirst()
+            .orElseThrow();
+        assertEquals("alerts/critical/2026-10-15T11:59:00Z", first.startAfter());
+        // The warning prefix is not listed past the end of the window
+        assertEquals(1, listRequests.stream().filter(request -> "alerts/warning/".equals(request.prefix())).count());
+        // One checkpoint per round
+        verify(s3Client, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    @Test
+    void scanStopsWhenOutOfTimeAndResumes() {
+        // Wide enough to list the whole first round as one chunk
+        AlertArchiveScanner scanner = new AlertArchiveScanner(s3Client, BUCKET, 32);
+        AtomicLong remaining = new AtomicLong(60_000L);
+        AlertArchiveScanner.Checkpoint checkpoint = scanner.scan(scanner.start(START, END), () -> remaining.getAndSet(1_000L));
+
+        assertFalse(checkpoint.finished());
+        assertEquals(Map.of("alerts/critical/", "critical-2"), checkpoint.pending());
+        assertEquals(5, checkpoint.total());
+
+        ArgumentCaptor<PutObjectRequest> saved = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3Client).putObject(saved.capture(), any(AsyncRequestBody.class));
+        assertEquals(AlertArchiveScanner.CHECKPOINT_KEY, saved.getValue().key());
+
+        checkpoint = scanner.scan(checkpoint, () -> 60_000L);
+
+        assertTrue(checkpoint.finished());
+        assertEquals(6, checkpoint.total());
+        assertTrue(listRequests.stream().anyMatch(request -> "critical-2".equals(request.continuationToken())));
+    }
+
+    @Test
+    void scanStopsPartWayThroughRound() {
+        AtomicLong remaining = new AtomicLong(60_000L);
+        AlertArchiveScanner.Checkpoint started = scanner.start(START, END);
+        listRequests.clear();
+        AlertArchiveScanner.Checkpoint checkpoint = scanner.scan(started, () -> remaining.getAndSet(1_000L));
+
+        // Only the first chunk of prefixes was listed, and the rest wait for the next invocation
+        assertEquals(4, listRequests.size());
+        assertEquals(started.pending().size() - 4, checkpoint.pending().size());
+        assertTrue(checkpoint.pending().containsKey("alerts/critical/"));
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+
+        checkpoint = scanner.scan(checkpoint, () -> 60_000L);
+
+        assertTrue(checkpoint.finished());
+        assertEquals(6, checkpoint.total());
+    }
+
+    @Test
+    void sourceReadFromJsonOrLegacyAlerts() {
+        assertEquals("aws.securityhub", scanner.sourceOf("{\"id\":\"1\",\"source\":\"aws.securityhub\"}"));
+        assertEquals("aws.config", scanner.sourceOf("{detail={}, source=aws.config, id=1}"));
+        assertEquals("unknown", scanner.sourceOf("{id=1, source=null}"));
+        assertEquals("unknown", scanner.sourceOf("{\"id\":\"1\"}"));
+    }
+}
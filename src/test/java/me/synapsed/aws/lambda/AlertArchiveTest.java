@@ -0,0 +1,108 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.firehose.FirehoseClient;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchRequest;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponse;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponseEntry;
+import software.amazon.awssdk.services.firehose.model.ServiceUnavailableException;
+
+class AlertArchiveTest {
+    private static final String STREAM = "test-alert-archive";
+
+    private FirehoseClient firehoseClient;
+    private AlertArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        firehoseClient = mock(FirehoseClient.class);
+        archive = new AlertArchive(firehoseClient, STREAM);
+    }
+
+    private static List<Map<String, Object>> alerts(int count) {
+        List<Map<String, Object>> alerts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            alerts.add(Map.of("id", "alert-" + i, "severity", "CRITICAL", "source", "aws.guardduty"));
+        }
+        return alerts;
+    }
+
+    private static PutRecordBatchResponse delivered(PutRecordBatchRequest request) {
+        List<PutRecordBatchResponseEntry> entries = new ArrayList<>();
+        for (int i = 0; i < request.records().size(); i++) {
+            entries.add(PutRecordBatchResponseEntry.builder().recordId("record-" + i).build());
+        }
+        return PutRecordBatchResponse.builder().failedPutCount(0).requestResponses(entries).build();
+    }
+
+    @Test
+    void alertsWrittenAsJsonLinesInBatches() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenAnswer(invocation -> delivered(invocation.getArgument(0)));
+
+        List<Map<String, Object>> failed = archive.archive(alerts(1200));
+
+        assertTrue(failed.isEmpty());
+        ArgumentCaptor<PutRecordBatchRequest> requests = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(3)).putRecordBatch(requests.capture());
+        assertEquals(STREAM, requests.getAllValues().get(0).deliveryStreamName());
+        assertEquals(500, requests.getAllValues().get(0).records().size());
+        assertEquals(200, requests.getAllValues().get(2).records().size());
+
+        String line = requests.getAllValues().get(0).records().get(0).data().asUtf8String();
+        assertTrue(line.endsWith("\n"));
+        Map<String, Object> alert = new ObjectMapper().readValue(line, new TypeReference<Map<String, Object>>() {});
+        assertEquals("alert-0", alert.get("id"));
+        assertEquals("aws.guardduty", alert.get("source"));
+    }
+
+    @Test
+    void rejectedEntriesRetriedOnce() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(PutRecordBatchResponse.builder()
+                .failedPutCount(1)
+                .requestResponses(
+                    PutRecordBatchResponseEntry.builder().recordId("record-0").build(),
+                    PutRecordBatchResponseEntry.builder().errorCode("ServiceUnavailableException").build(),
+                    PutRecordBatchResponseEntry.builder().recordId("record-2").build())
+                .build())
+            .thenAnswer(invocation -> delivered(invocation.getArgument(0)));
+
+        List<Map<String, Object>> failed = archive.archive(alerts(3));
+
+        assertTrue(failed.isEmpty());
+        ArgumentCaptor<PutRecordBatchRequest> requests = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(2)).putRecordBatch(requests.capture());
+        assertEquals(1, requests.getAllValues().get(1).records().size());
+        assertTrue(requests.getAllValues().get(1).records().get(0).data().asUtf8String().contains("alert-1"));
+    }
+
+    @Test
+    void alertsReturnedWhenFirehoseUnavailable() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenThrow(ServiceUnavailableException.builder().message("Slow down").build());
+
+        List<Map<String, Object>> failed = archive.archive(alerts(2));
+
+        assertEquals(alerts(2), failed);
+        verify(firehoseClient, times(2)).putRecordBatch(any(PutRecordBatchRequest.class));
+    }
+}
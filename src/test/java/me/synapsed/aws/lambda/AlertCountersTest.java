@@ -0,0 +1,109 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+class AlertCountersTest {
+    private static final String TABLE = "test-alert-counters";
+
+    private DynamoDbClient dynamoDbClient;
+    private AlertCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDbClient = mock(DynamoDbClient.class);
+        counters = new AlertCounters(dynamoDbClient, TABLE);
+    }
+
+    private static Map<String, AttributeValue> counter(String minuteKey, String severity, String source, long count) {
+        return Map.of(
+            "minuteKey", AttributeValue.builder().s(minuteKey).build(),
+            "severity", AttributeValue.builder().s(severity).build(),
+            "alertSource", AttributeValue.builder().s(source).build(),
+            "alertCount", AttributeValue.builder().n(String.valueOf(count)).build());
+    }
+
+    @Test
+    void incrementAddsToMinuteCounter() {
+        Instant routedAt = Instant.parse("2026-10-16T12:34:56Z");
+
+        counters.increment(routedAt, "CRITICAL", "aws.guardduty");
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDbClient).updateItem(request.capture());
+        assertEquals(TABLE, request.getValue().tableName());
+        assertEquals("2026-10-16T12", request.getValue().key().get("hourKey").s());
+        assertEquals("34#CRITICAL#aws.guardduty", request.getValue().key().get("minuteKey").s());
+        assertEquals("1", request.getValue().expressionAttributeValues().get(":count").n());
+        assertEquals(String.valueOf(routedAt.plus(AlertCounters.RETENTION).getEpochSecond()),
+            request.getValue().expressionAttributeValues().get(":expiresAt").n());
+    }
+
+    @Test
+    void missingSourceCountedAsUnknown() {
+        counters.increment(Instant.parse("2026-10-16T12:05:00Z"), "INFO", null);
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDbClient).updateItem(request.capture());
+        assertEquals("05#INFO#unknown", request.getValue().key().get("minuteKey").s());
+    }
+
+    @Test
+    void rollUpReadsOnePartitionPerHourWithinWindow() {
+        Map<String, AttributeValue> page = Map.of("hourKey", AttributeValue.builder().s("2026-10-16T11").build());
+        when(dynamoDbClient.query(any(QueryRequest.class))).thenAnswer(invocation -> {
+            QueryRequest query = invocation.getArgument(0);
+            String hour = query.expressionAttributeValues().get(":hour").s();
+            switch (hour) {
+                case "2026-10-16T10":
+                    return QueryResponse.builder().items(List.of(
+                        // Before the window starts at 10:30
+                        counter("29#CRITICAL#aws.guardduty", "CRITICAL", "aws.guardduty", 7),
+                        counter("30#CRITICAL#aws.guardduty", "CRITICAL", "aws.guardduty", 2))).build();
+                case "2026-10-16T11":
+                    if (query.exclusiveStartKey() == null || query.exclusiveStartKey().isEmpty()) {
+                        return QueryResponse.builder()
+                            .items(List.of(counter("00#WARNING#aws.config", "WARNING", "aws.config", 3)))
+                            .lastEvaluatedKey(page)
+                            .build();
+                    }
+                    return QueryResponse.builder().items(List.of(
+                        counter("59#INFO#aws.config", "INFO", "aws.config", 1))).build();
+                case "2026-10-16T12":
+                    return QueryResponse.builder().items(List.of(
+                        counter("29#INFO#aws.config", "INFO", "aws.config", 4),
+                        // At or after the window ends at 12:30
+                        counter("30#INFO#aws.config", "INFO", "aws.config", 5))).build();
+                default:
+                    return QueryResponse.builder().items(List.of()).build();
+            }
+        });
+
+        AlertCounters.Totals totals = counters.rollUp(
+            Instant.parse("2026-10-16T10:30:00Z"), Instant.parse("2026-10-16T12:30:00Z"));
+
+        assertEquals(10, totals.total());
+        assertEquals(Map.of("CRITICAL", 2L, "WARNING", 3L, "INFO", 5L), totals.bySeverity());
+        assertEquals(Map.of("aws.guardduty", 2L, "aws.config", 8L), totals.bySource());
+        // Three hours, one of them over two pages
+        verify(dynamoDbClient, times(4)).query(any(QueryRequest.class));
+    }
+}
@@ -0,0 +1,136 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.SnsException;
+
+class AlertRouterTest {
+    private SnsClient snsClient;
+    private AlertArchive alertArchive;
+    private AlertCounters alertCounters;
+    private AlertRouter router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        snsClient = mock(SnsClient.class);
+        alertArchive = mock(AlertArchive.class);
+        alertCounters = mock(AlertCounters.class);
+        StructuredLogger logger = mock(StructuredLogger.class);
+        router = new AlertRouter(logger, snsClient, "critical-topic", "warning-topic", "info-topic",
+            alertArchive, alertCounters, new SeverityRulesLoader(null, null, null, null, logger));
+        when(alertArchive.archive(anyList())).thenReturn(List.of());
+    }
+
+    private static SQSMessage message(String messageId, String source) {
+        SQSMessage message = new SQSMessage();
+        message.setMessageId(messageId);
+        message.setBody("{\"version\": \"0\", \"id\": \"event-" + messageId + "\", \"detail-type\": \"Finding\","
+            + " \"source\": \"" + source + "\", \"account\": \"123456789012\", \"time\": \"2026-10-16T12:00:00Z\","
+            + " \"region\": \"us-east-1\", \"resources\": [], \"detail\": {\"severity\": 8}}");
+        return message;
+    }
+
+    private static SQSEvent event(SQSMessage... messages) {
+        SQSEvent event = new SQSEvent();
+        event.setRecords(List.of(messages));
+        return event;
+    }
+
+    @Test
+    void batchRoutedArchivedAndCountedTogether() throws Exception {
+        SQSBatchResponse response = router.handleRequest(event(
+            message("1", "aws.guardduty"), message("2", "aws.guardduty"), message("3", "aws.config")),
+            mock(Context.class));
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<PublishRequest> published = ArgumentCaptor.forClass(PublishRequest.class);
+        verify(snsClient, times(3)).publish(published.capture());
+        assertEquals("critical-topic", published.getAllValues().get(0).topicArn());
+        assertEquals("warning-topic", published.getAllValues().get(2).topicArn());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Map<String, Object>>> archived = ArgumentCaptor.forClass(List.class);
+        verify(alertArchive).archive(archived.capture());
+        assertEquals(3, archived.getValue().size());
+        assertEquals("event-1", archived.getValue().get(0).get("id"));
+        assertEquals("Finding", archived.getValue().get(0).get("detailType"));
+        assertEquals("CRITICAL", archived.getValue().get(0).get("severity"));
+
+        verify(alertCounters).increment(any(Instant.class), eq("CRITICAL"), eq("aws.guardduty"), eq(2L));
+        verify(alertCounters).increment(any(Instant.class), eq("WARNING"), eq("aws.config"), eq(1L));
+    }
+
+    @Test
+    void onlyFailedMessagesReported() throws Exception {
+        SQSMessage malformed = new SQSMessage();
+        malformed.setMessageId("2");
+        malformed.setBody("not json");
+        when(alertArchive.archive(anyList())).thenAnswer(invocation -> {
+            List<Map<String, Object>> alerts = invocation.getArgument(0);
+            return new ArrayList<>(alerts.subList(1, 2));
+        });
+
+        SQSBatchResponse response = router.handleRequest(event(
+            message("1", "aws.guardduty"), malformed, message("3", "aws.config")), mock(Context.class));
+
+        assertEquals(List.of("2", "3"), response.getBatchItemFailures().stream()
+            .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+            .toList());
+        // The unarchived alert is not published until it has been archived on retry
+        verify(snsClient, times(1)).publish(any(PublishRequest.class));
+        verify(alertCounters).increment(any(Instant.class), eq("CRITICAL"), eq("aws.guardduty"), eq(1L));
+        verify(alertCounters, times(1)).increment(any(Instant.class), anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void failedPublishRetriedAndNotCounted() throws Exception {
+        when(snsClient.publish(any(PublishRequest.class)))
+            .thenThrow(SnsException.builder().message("Throttled").build())
+            .thenReturn(PublishResponse.builder().messageId("sns-2").build());
+
+        SQSBatchResponse response = router.handleRequest(event(
+            message("1", "aws.guardduty"), message("2", "aws.guardduty")), mock(Context.class));
+
+        assertEquals(List.of("1"), response.getBatchItemFailures().stream()
+            .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+            .toList());
+        verify(alertArchive).archive(anyList());
+        verify(alertCounters).increment(any(Instant.class), eq("CRITICAL"), eq("aws.guardduty"), eq(1L));
+    }
+
+    @Test
+    void emptyEventRoutesNothing() {
+        SQSBatchResponse response = router.handleRequest(new SQSEvent(), mock(Context.class));
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        verifyNoInteractions(snsClient, alertCounters);
+    }
+}
@@ -0,0 +1,57 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class DeduplicationWindowTest {
+
+    @Test
+    void rememberedKeysFound() {
+        DeduplicationWindow window = new DeduplicationWindow(1000);
+        for (int i = 0; i < 1000; i++) {
+            window.add(DeduplicationWindow.key("shardId-000000000000", String.valueOf(i)));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(window.contains(DeduplicationWindow.key("shardId-000000000000", String.valueOf(i))));
+            assertFalse(window.contains(DeduplicationWindow.key("shardId-000000000001", String.valueOf(i))));
+        }
+    }
+
+    @Test
+    void oldestGenerationDiscardedWhenFull() {
+        DeduplicationWindow window = new DeduplicationWindow(3);
+        for (long key = 1; key <= 7; key++) {
+            window.add(key);
+        }
+
+        // 1-3 were rotated out twice; 4-6 are the previous generation and 7 the current one
+        for (long key = 1; key <= 3; key++) {
+            assertFalse(window.contains(key));
+        }
+        for (long key = 4; key <= 7; key++) {
+            assertTrue(window.contains(key));
+        }
+    }
+
+    @Test
+    void keysDistinguishShardAndSequenceNumber() {
+        Set<Long> keys = new HashSet<>();
+        for (int shard = 0; shard < 10; shard++) {
+            for (int sequence = 0; sequence < 10_000; sequence++) {
+                long key = DeduplicationWindow.key(String.format("shardId-%012d", shard),
+                    "4959033827149025660855969253836157109592157598913658" + sequence);
+                assertNotEquals(0L, key);
+                keys.add(key);
+            }
+        }
+        assertEquals(100_000, keys.size());
+    }
+}
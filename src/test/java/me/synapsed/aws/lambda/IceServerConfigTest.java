@@ -0,0 +1,88 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class IceServerConfigTest {
+
+    private ObjectMapper objectMapper;
+    private AtomicLong now;
+    private Map<String, String> env;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        now = new AtomicLong(1_000_000L);
+        env = new HashMap<>();
+        env.put("STUN_SERVER", "stun:stun.test-server.com:19302");
+        env.put("TURN_SERVER", "turn:test-turn-server.com:3478");
+        env.put("TURN_USERNAME", "static-user");
+        env.put("TURN_CREDENTIAL", "static-credential");
+    }
+
+    @Test
+    void staticConfig_SerializedOnce() throws Exception {
+        IceServerConfig config = new IceServerConfig(env, objectMapper, null);
+
+        IceServerConfig.Snapshot snapshot = config.current();
+
+        assertSame(snapshot, config.current());
+        List<Map<String, String>> servers = objectMapper.readValue(snapshot.getJson(), new TypeReference<List<Map<String, String>>>() {});
+        assertEquals(snapshot.getServers(), servers);
+        assertEquals("static-user", servers.get(1).get("username"));
+    }
+
+    @Test
+    void ephemeralCredentials_ReplaceStaticTurnEntries() throws Exception {
+        env.put("TURN_SERVER", "turn:turn1.test-server.com:3478,turn:turn2.test-server.com:3478");
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(() -> "test-secret".getBytes(), 600, now::get);
+        IceServerConfig config = new IceServerConfig(env, objectMapper, generator);
+
+        List<Map<String, String>> servers = objectMapper.readValue(config.jsonFor("did:key:\"alice\""),
+            new TypeReference<List<Map<String, String>>>() {});
+
+        assertEquals(3, servers.size());
+        assertEquals(Map.of("urls", "stun:stun.test-server.com:19302"), servers.get(0));
+        TurnCredentialGenerator.Credentials expected = generator.generate("did:key:\"alice\"");
+        for (Map<String, String> turn : servers.subList(1, 3)) {
+            assertEquals(expected.username(), turn.get("username"));
+            assertEquals(expected.credential(), turn.get("credential"));
+        }
+        assertEquals("turn:turn2.test-server.com:3478", servers.get(2).get("urls"));
+        // The shared snapshot carries no TURN entries once credentials are issued per user
+        assertEquals(1, config.current().getServers().size());
+    }
+
+    @Test
+    void unavailableSharedSecret_FallsBackToStunServers() throws Exception {
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(() -> {
+            throw new IllegalStateException("ParameterNotFound");
+        }, 600, now::get);
+        IceServerConfig config = new IceServerConfig(env, objectMapper, generator);
+
+        List<Map<String, String>> servers = objectMapper.readValue(config.jsonFor("did:key:alice"),
+            new TypeReference<List<Map<String, String>>>() {});
+
+        assertEquals(List.of(Map.of("urls", "stun:stun.test-server.com:19302")), servers);
+    }
+
+    @Test
+    void malformedStunUrl_DefaultsToGoogleStun() {
+        env.put("STUN_SERVER", "invalid-stun-url");
+        env.remove("TURN_SERVER");
+        IceServerConfig config = new IceServerConfig(env, objectMapper, null);
+
+        assertEquals(List.of(Map.of("urls", IceServerConfig.DEFAULT_STUN_SERVER)), config.current().getServers());
+    }
+}
@@ -0,0 +1,73 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import me.synapsed.aws.lambda.LogClassifier.Category;
+import me.synapsed.aws.lambda.LogClassifier.Rule;
+
+class LogClassifierTest {
+
+    private final LogClassifier classifier = new LogClassifier();
+
+    @Test
+    void explicitCategoryWins() {
+        assertEquals(Category.AUDIT, classifier.classify(Map.of("category", "Audit", "latencyMs", "12")));
+        assertEquals(Category.APPLICATION, classifier.classify(Map.of("category", "app", "message", "Unauthorized")));
+        assertEquals(Category.PERFORMANCE, classifier.classify(Map.of("log_type", "metrics")));
+    }
+
+    @Test
+    void auditRecognizedByCloudTrailFields() {
+        Map<String, String> fields = new HashMap<>();
+        // userIdentity is an object, captured as present without a value
+        fields.put("userIdentity", null);
+        assertEquals(Category.AUDIT, classifier.classify(fields));
+        assertEquals(Category.AUDIT, classifier.classify(Map.of("eventName", "DeleteBucket")));
+    }
+
+    @Test
+    void securityRecognizedByServiceOrMessage() {
+        assertEquals(Category.SECURITY, classifier.classify(Map.of("service", "security-event-processor")));
+        assertEquals(Category.SECURITY, classifier.classify(Map.of("message", "Request rejected: invalid proof for did:key:abc")));
+        assertEquals(Category.SECURITY, classifier.classify(Map.of("message", "Access Denied", "latencyMs", "3")));
+    }
+
+    @Test
+    void performanceRecognizedByTimingFields() {
+        assertEquals(Category.PERFORMANCE, classifier.classify(Map.of("service", "relay-server", "latencyMs", "42")));
+        assertEquals(Category.PERFORMANCE, classifier.classify(Map.of("message", "Cold start took 900 ms")));
+    }
+
+    @Test
+    void unmatchedEntriesAreApplicationLogs() {
+        assertEquals(Category.APPLICATION, classifier.classify(Map.of("service", "relay-server", "message", "Peer connected")));
+        assertEquals(Category.APPLICATION, classifier.classify(Map.of()));
+    }
+
+    @Test
+    void customRulesReplaceDefaults() {
+        LogClassifier custom = new LogClassifier(List.of(Rule.matching(Category.SECURITY, "level", "^fatal$")));
+
+        assertEquals(Category.SECURITY, custom.classify(Map.of("level", "FATAL")));
+        assertEquals(Category.APPLICATION, custom.classify(Map.of("eventName", "DeleteBucket")));
+        assertEquals(List.of("level"), List.copyOf(custom.getFieldNames()));
+        assertTrue(classifier.getFieldNames().contains("message"));
+    }
+
+    @Test
+    void partitionValueNormalized() {
+        assertEquals("unknown", LogClassifier.partitionValue(null));
+        assertEquals("unknown", LogClassifier.partitionValue(""));
+        assertEquals("relay-server", LogClassifier.partitionValue("Relay Server"));
+        assertEquals("warn", LogClassifier.partitionValue("WARN"));
+        assertEquals("a-b-c", LogClassifier.partitionValue("a/b=c"));
+        assertEquals(64, LogClassifier.partitionValue("x".repeat(100)).length());
+    }
+}
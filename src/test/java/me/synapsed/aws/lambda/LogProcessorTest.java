@@ -0,0 +1,491 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.firehose.FirehoseAsyncClient;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchRequest;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponse;
+import software.amazon.awssdk.services.firehose.model.PutRecordBatchResponseEntry;
+import software.amazon.awssdk.services.firehose.model.Record;
+import software.amazon.awssdk.services.firehose.model.ServiceUnavailableException;
+
+public class LogProcessorTest {
+    private static final String STREAM = "test-delivery-stream";
+
+    private FirehoseAsyncClient firehoseClient;
+    private Context context;
+    private LogProcessor logProcessor;
+
+    @BeforeEach
+    void setUp() {
+        firehoseClient = mock(FirehoseAsyncClient.class);
+        context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        when(context.getAwsRequestId()).thenReturn("test-request");
+        logProcessor = new LogProcessor(firehoseClient, STREAM);
+    }
+
+    /**
+     * Reads the fields outside the schema from a record's attributes column.
+     */
+    private static Map<String, Object> attributes(Map<String, Object> enriched) throws Exception {
+        return new ObjectMapper().readValue((String) enriched.get("attributes"), new TypeReference<Map<String, Object>>() {});
+    }
+
+    @Test
+    void testRecordsSentInBatchesOf500() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+
+        logProcessor.handleRequest(kinesisEvent(1200, "{\"level\":\"INFO\"}"), context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batches = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(3)).putRecordBatch(batches.capture());
+        assertEquals(500, batches.getAllValues().get(0).records().size());
+        assertEquals(500, batches.getAllValues().get(1).records().size());
+        assertEquals(200, batches.getAllValues().get(2).records().size());
+        assertEquals(STREAM, batches.getAllValues().get(0).deliveryStreamName());
+
+        Map<String, Object> enriched = new ObjectMapper().readValue(
+            batches.getAllValues().get(0).records().get(0).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals("INFO", attributes(enriched).get("level"));
+        assertEquals("kinesis", enriched.get("source"));
+        assertEquals("test-request", enriched.get("processor_id"));
+    }
+
+    @Test
+    void testBatchesSplitAtFourMebibytes() {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        // Each record is about 900 KiB, so only four fit under the 4 MiB batch limit
+        String large = "{\"message\":\"" + "x".repeat(900 * 1024) + "\"}";
+
+        logProcessor.handleRequest(kinesisEvent(6, large), context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batches = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(2)).putRecordBatch(batches.capture());
+        assertEquals(4, batches.getAllValues().get(0).records().size());
+        assertEquals(2, batches.getAllValues().get(1).records().size());
+    }
+
+    @Test
+    void testOversizedRecordReportedAsFailure() {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        List<KinesisEvent.KinesisEventRecord> records = new ArrayList<>(kinesisEvent(1, "{\"level\":\"INFO\"}").getRecords());
+        records.addAll(kinesisEvent(1, "{\"message\":\"" + "x".repeat(LogProcessor.MAX_RECORD_BYTES) + "\"}").getRecords());
+        records.get(1).getKinesis().setSequenceNumber("oversized");
+        KinesisEvent event = new KinesisEvent();
+        event.setRecords(records);
+
+        StreamsEventResponse response = logProcessor.handleRequest(event, context);
+
+        assertEquals(List.of("oversized"), failedSequenceNumbers(response));
+
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        assertEquals(1, batch.getValue().records().size());
+    }
+
+    @Test
+    void testFailedEntriesRetried() {
+        PutRecordBatchResponseEntry ok = PutRecordBatchResponseEntry.builder().recordId("ok").build();
+        PutRecordBatchResponseEntry throttled = PutRecordBatchResponseEntry.builder()
+            .errorCode("ServiceUnavailableException").errorMessage("Slow down.").build();
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(2)
+                .requestResponses(ok, throttled, ok, throttled).build()))
+            .thenReturn(CompletableFuture.failedFuture(ServiceUnavailableException.builder().message("Slow down.").build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).requestResponses(ok, ok).build()));
+
+        StreamsEventResponse response = logProcessor.handleRequest(kinesisEvent(4, "{\"level\":\"INFO\"}"), context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<PutRecordBatchRequest> batches = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(3)).putRecordBatch(batches.capture());
+        PutRecordBatchRequest first = batches.getAllValues().get(0);
+        PutRecordBatchRequest retry = batches.getAllValues().get(2);
+        assertEquals(2, retry.records().size());
+        assertEquals(first.records().get(1), retry.records().get(0));
+        assertEquals(first.records().get(3), retry.records().get(1));
+    }
+
+    @Test
+    void testUndeliveredRecordsReportedAfterMaxAttempts() {
+        PutRecordBatchResponseEntry ok = PutRecordBatchResponseEntry.builder().recordId("ok").build();
+        PutRecordBatchResponseEntry throttled = PutRecordBatchResponseEntry.builder()
+            .errorCode("ServiceUnavailableException").build();
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(ok, throttled).build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(throttled).build()));
+
+        StreamsEventResponse response = logProcessor.handleRequest(kinesisEvent(2, "{\"level\":\"INFO\"}"), context);
+
+        verify(firehoseClient, times(5)).putRecordBatch(any(PutRecordBatchRequest.class));
+        assertEquals(List.of("1"), failedSequenceNumbers(response));
+    }
+
+    @Test
+    void testRedeliveredBatchSkipsRecordsAlreadyDelivered() throws Exception {
+        PutRecordBatchResponseEntry ok = PutRecordBatchResponseEntry.builder().recordId("ok").build();
+        PutRecordBatchResponseEntry throttled = PutRecordBatchResponseEntry.builder()
+            .errorCode("ServiceUnavailableException").build();
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(ok, throttled, ok).build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(throttled).build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(throttled).build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(throttled).build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(throttled).build()))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        LambdaLogger logger = mock(LambdaLogger.class);
+        when(context.getLogger()).thenReturn(logger);
+        KinesisEvent event = kinesisEvent(3, "{\"level\":\"INFO\"}");
+
+        assertEquals(List.of("1"), failedSequenceNumbers(logProcessor.handleRequest(event, context)));
+        // Lambda resumes from the failed record and redelivers everything after it
+        event.getRecords().remove(0);
+        StreamsEventResponse response = logProcessor.handleRequest(event, context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<PutRecordBatchRequest> batches = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(6)).putRecordBatch(batches.capture());
+        assertEquals(1, batches.getValue().records().size());
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        verify(logger, atLeastOnce()).log(lines.capture());
+        Map<String, Object> metrics = new ObjectMapper().readValue(
+            lines.getAllValues().get(lines.getAllValues().size() - 2), new TypeReference<Map<String, Object>>() {});
+        assertEquals(2, metrics.get("RecordsReceived"));
+        assertEquals(1, metrics.get("DuplicatesDropped"));
+    }
+
+    @Test
+    void testSameSequenceNumberOnAnotherShardNotDeduplicated() {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        KinesisEvent event = kinesisEvent(2, "{\"level\":\"INFO\"}");
+
+        logProcessor.handleRequest(event, context);
+        for (KinesisEvent.KinesisEventRecord record : event.getRecords()) {
+            record.setEventID(record.getEventID().replace("shardId-000000000000", "shardId-000000000001"));
+        }
+        logProcessor.handleRequest(event, context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batches = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient, times(2)).putRecordBatch(batches.capture());
+        assertEquals(2, batches.getAllValues().get(1).records().size());
+    }
+
+    @Test
+    void testUnparseableRecordReportedAsFailure() {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        KinesisEvent event = kinesisEvent(3, "{\"level\":\"INFO\"}");
+        event.getRecords().get(1).getKinesis().setData(ByteBuffer.wrap("not json".getBytes(StandardCharsets.UTF_8)));
+
+        StreamsEventResponse response = logProcessor.handleRequest(event, context);
+
+        assertEquals(List.of("1"), failedSequenceNumbers(response));
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        assertEquals(2, batch.getValue().records().size());
+    }
+
+    @Test
+    void testEnrichmentCopiesNestedFieldsAndReplacesReservedOnes() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        byte[] framed = "xx{\"source\":\"app\",\"meta\":{\"ids\":[1,2.5,null,true]},\"msg\":\"caf\u00e9\"}yy"
+            .getBytes(StandardCharsets.UTF_8);
+        KinesisEvent event = kinesisEvent(2, "{}");
+        // A buffer that is a slice of a larger array, as the Kinesis deserializer may produce
+        event.getRecords().get(0).getKinesis().setData(ByteBuffer.wrap(framed, 2, framed.length - 4).slice());
+        event.getRecords().get(1).getKinesis().setData(ByteBuffer.wrap("[1,2]".getBytes(StandardCharsets.UTF_8)));
+
+        StreamsEventResponse response = logProcessor.handleRequest(event, context);
+
+        assertEquals(List.of("1"), failedSequenceNumbers(response));
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        Map<String, Object> enriched = new ObjectMapper().readValue(
+            batch.getValue().records().get(0).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals("kinesis", enriched.get("source"));
+        assertEquals("test-request", enriched.get("processor_id"));
+        // Fields outside the schema are archived together in the attributes column
+        assertFalse(enriched.containsKey("msg"));
+        assertEquals("caf\u00e9", attributes(enriched).get("msg"));
+        assertEquals(Map.of("ids", Arrays.asList(1, 2.5, null, true)), attributes(enriched).get("meta"));
+    }
+
+    @Test
+    void testPartitionKeysAppendedFromClassification() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        KinesisEvent event = kinesisEvent(2, "{\"service\":\"Relay Server\",\"level\":\"WARN\",\"message\":\"Forbidden\"}");
+        event.getRecords().get(1).getKinesis().setData(ByteBuffer.wrap(
+            "{\"partition_keys\":{\"category\":\"spoofed\"},\"latencyMs\":12}".getBytes(StandardCharsets.UTF_8)));
+
+        logProcessor.handleRequest(event, context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> security = objectMapper.readValue(
+            batch.getValue().records().get(0).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals(Map.of("category", "security", "service", "relay-server", "level", "warn"), security.get("partition_keys"));
+        Map<String, Object> performance = objectMapper.readValue(
+            batch.getValue().records().get(1).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals(Map.of("category", "performance", "service", "unknown", "level", "unknown"), performance.get("partition_keys"));
+    }
+
+    @Test
+    void testSchemaColumnsCoercedForParquetConversion() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        logProcessor.handleRequest(kinesisEvent(1, "{\"statusCode\":\"404\",\"latencyMs\":\"12.5\","
+            + "\"event_time\":\"2024-05-01T10:00:00+02:00\",\"eventTime\":1714550400,\"error\":{\"code\":1},"
+            + "\"duration_ms\":\"slow\",\"trace_id\":42,\"Timestamp\":5,\"count\":\"7\"}"), context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        Map<String, Object> enriched = new ObjectMapper().readValue(
+            batch.getValue().records().get(0).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals(404, enriched.get("status_code"));
+        assertEquals(12.5, enriched.get("latency_ms"));
+        assertEquals(1714550400000L, ((Number) enriched.get("event_time")).longValue());
+        // A second spelling of a column is dropped rather than written as a second value
+        assertFalse(enriched.containsKey("eventTime"));
+        assertEquals("{\"code\":1}", enriched.get("error"));
+        assertTrue(enriched.containsKey("duration_ms"));
+        assertNull(enriched.get("duration_ms"));
+        assertEquals("42", enriched.get("trace_id"));
+        assertTrue(enriched.get("timestamp") instanceof Long);
+        assertFalse(enriched.containsKey("Timestamp"));
+        // Fields outside the schema are kept uncoerced in the attributes column
+        assertEquals(Map.of("count", "7"), attributes(enriched));
+    }
+
+    @Test
+    void testPartitionValuesBoundedToKnownServicesAndLevels() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", STREAM, "LOG_PARTITION_SERVICES", "relay-server, alerting"));
+        KinesisEvent event = kinesisEvent(2, "{\"service\":\"relay-server\",\"level\":\"Warning\"}");
+        event.getRecords().get(1).getKinesis().setData(ByteBuffer.wrap(
+            "{\"service\":\"scratch-job\",\"level\":\"notice\"}".getBytes(StandardCharsets.UTF_8)));
+
+        logProcessor.handleRequest(event, context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> known = objectMapper.readValue(
+            batch.getValue().records().get(0).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals(Map.of("category", "application", "service", "relay-server", "level", "warn"), known.get("partition_keys"));
+        Map<String, Object> other = objectMapper.readValue(
+            batch.getValue().records().get(1).data().asUtf8String(), new TypeReference<Map<String, Object>>() {});
+        assertEquals(Map.of("category", "application", "service", "other", "level", "other"), other.get("partition_keys"));
+        assertEquals("scratch-job", attributes(other).get("service"));
+    }
+
+    @Test
+    void testSampledRecordsDroppedAndCountedInEmf() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        LambdaLogger logger = mock(LambdaLogger.class);
+        when(context.getLogger()).thenReturn(logger);
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", STREAM, "LOG_SAMPLE_RATES", "debug=0"));
+        KinesisEvent event = kinesisEvent(3, "{\"service\":\"relay-server\",\"level\":\"DEBUG\",\"request_id\":\"r-1\"}");
+        event.getRecords().get(2).getKinesis().setData(ByteBuffer.wrap(
+            "{\"service\":\"relay-server\",\"level\":\"ERROR\",\"request_id\":\"r-1\"}".getBytes(StandardCharsets.UTF_8)));
+
+        StreamsEventResponse response = logProcessor.handleRequest(event, context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        assertEquals(1, batch.getValue().records().size());
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        verify(logger, atLeastOnce()).log(lines.capture());
+        Map<String, Object> metrics = null;
+        for (String line : lines.getAllValues()) {
+            if (line.startsWith("{\"_aws\"") && line.contains("\"Service\"")) {
+                metrics = new ObjectMapper().readValue(line, new TypeReference<Map<String, Object>>() {});
+            }
+        }
+        assertNotNull(metrics);
+        assertEquals("relay-server", metrics.get("Service"));
+        assertEquals(2, metrics.get("LogsSampledOut"));
+        assertEquals(0, metrics.get("LogsRateLimited"));
+    }
+
+    @Test
+    void testAggregationPacksLinesIntoNewlineDelimitedRecords() throws Exception {
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(0).build()));
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", STREAM, "RECORD_AGGREGATION_MAX_BYTES", "512"));
+
+        logProcessor.handleRequest(kinesisEvent(10, "{\"level\":\"INFO\"}"), context);
+
+        ArgumentCaptor<PutRecordBatchRequest> batch = ArgumentCaptor.forClass(PutRecordBatchRequest.class);
+        verify(firehoseClient).putRecordBatch(batch.capture());
+        List<String> lines = new ArrayList<>();
+        for (Record record : batch.getValue().records()) {
+            String data = record.data().asUtf8String();
+            assertTrue(data.length() <= 512);
+            assertTrue(data.endsWith("\n"));
+            lines.addAll(Arrays.asList(data.split("\n")));
+        }
+        assertTrue(batch.getValue().records().size() > 1);
+        assertTrue(batch.getValue().records().size() < 10);
+        assertEquals(10, lines.size());
+        Map<String, Object> enriched = new ObjectMapper().readValue(lines.get(9), new TypeReference<Map<String, Object>>() {});
+        assertEquals("INFO", attributes(enriched).get("level"));
+    }
+
+    @Test
+    void testAggregatedRecordFailureReportsEverySourceRecord() {
+        PutRecordBatchResponseEntry throttled = PutRecordBatchResponseEntry.builder()
+            .errorCode("ServiceUnavailableException").build();
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class)))
+            .thenReturn(completedFuture(PutRecordBatchResponse.builder().failedPutCount(1).requestResponses(throttled).build()));
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", STREAM, "RECORD_AGGREGATION_MAX_BYTES", "65536"));
+
+        StreamsEventResponse response = logProcessor.handleRequest(kinesisEvent(3, "{\"level\":\"INFO\"}"), context);
+
+        assertEquals(List.of("0", "1", "2"), failedSequenceNumbers(response));
+    }
+
+    @Test
+    void testParseInt() {
+        assertEquals(4, LogProcessor.parseInt(Map.of(), "FIREHOSE_MAX_IN_FLIGHT", 4));
+        assertEquals(4, LogProcessor.parseInt(Map.of("FIREHOSE_MAX_IN_FLIGHT", "lots"), "FIREHOSE_MAX_IN_FLIGHT", 4));
+        assertEquals(262144, LogProcessor.parseInt(Map.of("RECORD_AGGREGATION_MAX_BYTES", " 262144 "), "RECORD_AGGREGATION_MAX_BYTES", 0));
+    }
+
+    @Test
+    void testInFlightCallsBoundedByConfiguredLimit() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+        // The first two calls hold until both have started, so the limit is actually reached
+        CountDownLatch started = new CountDownLatch(2);
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class))).thenAnswer(invocation -> {
+            maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                started.countDown();
+                try {
+                    started.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sleep(5);
+                inFlight.decrementAndGet();
+                return PutRecordBatchResponse.builder().failedPutCount(0).build();
+            });
+        });
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", STREAM, "FIREHOSE_MAX_IN_FLIGHT", "2"));
+
+        StreamsEventResponse response = logProcessor.handleRequest(kinesisEvent(3000, "{\"level\":\"INFO\"}"), context);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        verify(firehoseClient, times(6)).putRecordBatch(any(PutRecordBatchRequest.class));
+        assertEquals(2, maxObserved.get());
+    }
+
+    @Test
+    void testPreserveOrderSendsBatchesSequentially() {
+        List<String> completed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger calls = new AtomicInteger();
+        when(firehoseClient.putRecordBatch(any(PutRecordBatchRequest.class))).thenAnswer(invocation -> {
+            int call = calls.incrementAndGet();
+            PutRecordBatchRequest request = invocation.getArgument(0);
+            return CompletableFuture.supplyAsync(() -> {
+                // Earlier calls take longer, so concurrent sends would complete out of order
+                sleep(call == 1 ? 60 : 5);
+                completed.add(request.records().get(0).data().asUtf8String());
+                return PutRecordBatchResponse.builder().failedPutCount(0).build();
+            });
+        });
+        logProcessor = new LogProcessor(firehoseClient, Map.of(
+            "DELIVERY_STREAM_NAME", STREAM, "FIREHOSE_MAX_IN_FLIGHT", "4", "FIREHOSE_PRESERVE_ORDER", "true"));
+        KinesisEvent event = kinesisEvent(1000, "{\"level\":\"INFO\"}");
+        event.getRecords().get(0).getKinesis().setData(ByteBuffer.wrap("{\"batch\":1}".getBytes(StandardCharsets.UTF_8)));
+        event.getRecords().get(500).getKinesis().setData(ByteBuffer.wrap("{\"batch\":2}".getBytes(StandardCharsets.UTF_8)));
+
+        logProcessor.handleRequest(event, context);
+
+        assertEquals(2, completed.size());
+        assertTrue(completed.get(0).contains("\"batch\":1"));
+        assertTrue(completed.get(1).contains("\"batch\":2"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<String> failedSequenceNumbers(StreamsEventResponse response) {
+        List<String> sequenceNumbers = new ArrayList<>();
+        for (StreamsEventResponse.BatchItemFailure failure : response.getBatchItemFailures()) {
+            sequenceNumbers.add(failure.getItemIdentifier());
+        }
+        return sequenceNumbers;
+    }
+
+    private static KinesisEvent kinesisEvent(int count, String data) {
+        List<KinesisEvent.KinesisEventRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            KinesisEvent.Record kinesis = new KinesisEvent.Record();
+            kinesis.setData(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+            kinesis.setSequenceNumber(String.valueOf(i));
+            KinesisEvent.KinesisEventRecord record = new KinesisEvent.KinesisEventRecord();
+            record.setEventID("shardId-000000000000:" + i);
+            record.setKinesis(kinesis);
+            records.add(record);
+        }
+        KinesisEvent event = new KinesisEvent();
+        event.setRecords(records);
+        return event;
+    }
+}
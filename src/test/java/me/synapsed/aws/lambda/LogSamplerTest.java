@@ -0,0 +1,91 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import me.synapsed.aws.lambda.LogSampler.Decision;
+
+class LogSamplerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void disabledWithoutConfiguration() {
+        assertFalse(new LogSampler(Map.of()).isEnabled());
+        assertTrue(new LogSampler(Map.of("LOG_RATE_LIMIT_PER_SOURCE", "100")).isEnabled());
+    }
+
+    @Test
+    void sampledByRequestSoRequestsAreKeptTogether() {
+        LogSampler sampler = new LogSampler(Map.of("LOG_SAMPLE_RATES", "debug=0.1, info=0.5"), nanos::get);
+
+        int keptInfo = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String requestId = "request-" + i;
+            Decision info = sampler.decide("application", "relay-server", "info", requestId);
+            Decision debug = sampler.decide("application", "relay-server", "debug", requestId);
+            assertEquals(info, sampler.decide("application", "signaling", "info", requestId));
+            // A request kept at the lower debug rate is kept at the info rate too
+            if (debug == Decision.KEEP) {
+                assertEquals(Decision.KEEP, info);
+            }
+            if (info == Decision.KEEP) {
+                keptInfo++;
+            }
+            assertEquals(Decision.KEEP, sampler.decide("application", "relay-server", "warn", requestId));
+        }
+        assertTrue(keptInfo > 4_500 && keptInfo < 5_500, "kept " + keptInfo);
+    }
+
+    @Test
+    void lowerOfLevelAndServiceRateApplies() {
+        LogSampler sampler = new LogSampler(Map.of(
+            "LOG_SAMPLE_RATES", "info=0.5", "LOG_SERVICE_SAMPLE_RATES", "Relay-Server=0"), nanos::get);
+
+        assertEquals(Decision.SAMPLED, sampler.decide("application", "relay-server", "info", "request-1"));
+        assertEquals(Decision.SAMPLED, sampler.decide("application", "relay-server", "debug", "request-1"));
+    }
+
+    @Test
+    void errorsAndSecurityRecordsAlwaysKept() {
+        LogSampler sampler = new LogSampler(Map.of(
+            "LOG_SERVICE_SAMPLE_RATES", "relay-server=0", "LOG_RATE_LIMIT_PER_SOURCE", "1"), nanos::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Decision.KEEP, sampler.decide("application", "relay-server", "error", "request-" + i));
+            assertEquals(Decision.KEEP, sampler.decide("security", "relay-server", "info", "request-" + i));
+            assertEquals(Decision.KEEP, sampler.decide("audit", "relay-server", "debug", "request-" + i));
+        }
+    }
+
+    @Test
+    void tokenBucketLimitsEachSource() {
+        LogSampler sampler = new LogSampler(Map.of(
+            "LOG_RATE_LIMIT_PER_SOURCE", "10", "LOG_RATE_LIMIT_BURST", "3"), nanos::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Decision.KEEP, sampler.decide("application", "relay-server", "info", "request"));
+        }
+        assertEquals(Decision.RATE_LIMITED, sampler.decide("application", "relay-server", "info", "request"));
+        // Other sources have their own bucket
+        assertEquals(Decision.KEEP, sampler.decide("application", "alerting", "info", "request"));
+
+        // 10 per second refills one token every 100 ms
+        nanos.addAndGet(100_000_000L);
+        assertEquals(Decision.KEEP, sampler.decide("application", "relay-server", "info", "request"));
+        assertEquals(Decision.RATE_LIMITED, sampler.decide("application", "relay-server", "info", "request"));
+    }
+
+    @Test
+    void malformedRatesIgnored() {
+        Map<String, Double> rates = LogSampler.parseRates("debug=0.1,info,=0.5,trace=abc,warn=2");
+
+        assertEquals(Map.of("debug", 0.1, "warn", 1.0), rates);
+    }
+}
@@ -3,7 +3,10 @@ package me.synapsed.aws.lambda;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -26,12 +29,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
 public class PeerConnectionHandlerTest {
     private static final String TEST_DID = "test-did";
@@ -244,6 +249,46 @@ public class PeerConnectionHandlerTest {
         Map<String, String> responseBody = objectMapper.readValue(response.getBody(), new TypeReference<Map<String, String>>() {});
         assertEquals(TEST_PEER_ID, responseBody.get("peerId"));
         assertEquals("reconnected", responseBody.get("status"));
+
+        // The DID lookup reads a single projected item and the heartbeat only touches connectedAt
+        verify(dynamoDbClient).query(argThat((QueryRequest query) ->
+            query.limit() == 1 && "peerId, connectedAt, expiresAt".equals(query.projectionExpression())));
+        verify(dynamoDbClient).updateItem(argThat((UpdateItemRequest update) ->
+            "SET connectedAt = :connectedAt, expiresAt = :expiresAt".equals(update.updateExpression())
+                && update.expressionAttributeValues().get(":expiresAt").n() != null
+                && "attribute_exists(peerId)".equals(update.conditionExpression())));
+        verify(dynamoDbClient, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void testHandleConnectExistingConnectionDeletedConcurrently() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-DID", TEST_DID);
+        headers.put("X-Subscription-Proof", TEST_PROOF);
+
+        Map<String, String> pathParams = new HashMap<>();
+        pathParams.put("action", "connect");
+
+        Map<String, AttributeValue> proofItem = new HashMap<>();
+        proofItem.put("expiresAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis() + 3600000)).build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(proofItem).build());
+
+        Map<String, AttributeValue> existingConnection = new HashMap<>();
+        existingConnection.put("peerId", AttributeValue.builder().s(TEST_PEER_ID).build());
+        existingConnection.put("connectedAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis())).build());
+        when(dynamoDbClient.query(any(QueryRequest.class)))
+            .thenReturn(QueryResponse.builder().items(Collections.singletonList(existingConnection)).build());
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build());
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(createRequest(headers, pathParams), context);
+        assertEquals(200, response.getStatusCode());
+
+        // A disconnect that raced the index lookup leads to a fresh connection
+        Map<String, String> responseBody = objectMapper.readValue(response.getBody(), new TypeReference<Map<String, String>>() {});
+        assertEquals("connected", responseBody.get("status"));
+        verify(dynamoDbClient).putItem(any(PutItemRequest.class));
     }
 
     @Test
@@ -467,7 +512,7 @@ public class PeerConnectionHandlerTest {
     }
 
     @Test
-    void testConnectionTimeoutCleanup() throws Exception {
+    void testConnectionTimeoutLeftToTtl() throws Exception {
         // Set up headers and path parameters for status action
         Map<String, String> headers = new HashMap<>();
         headers.put("X-DID", TEST_DID);
@@ -498,9 +543,98 @@ public class PeerConnectionHandlerTest {
             .thenReturn(QueryResponse.builder().items(Collections.singletonList(existingConnection)).build());
         
         // Execute status action
-        handler.handleRequest(request, context);
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
         
-        // Verify that DeleteItem was called to clean up the timed out connection
-        verify(dynamoDbClient).deleteItem(any(DeleteItemRequest.class));
+        // The timed out connection is reported but left for DynamoDB TTL and the sweeper to delete
+        Map<String, String> responseBody = objectMapper.readValue(response.getBody(), new TypeReference<Map<String, String>>() {});
+        assertEquals("timeout", responseBody.get("status"));
+        verify(dynamoDbClient, never()).deleteItem(any(DeleteItemRequest.class));
+    }
+
+    @Test
+    void testHandleConnectWritesTtlAttribute() throws Exception {
+        mockHeartbeatConnection(null);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-DID", TEST_DID);
+        headers.put("X-Subscription-Proof", TEST_PROOF);
+        Map<String, String> pathParams = new HashMap<>();
+        pathParams.put("action", "connect");
+
+        long before = System.currentTimeMillis();
+        assertEquals(200, handler.handleRequest(createRequest(headers, pathParams), context).getStatusCode());
+
+        // expiresAt is numeric epoch seconds, 30 minutes after connectedAt
+        verify(dynamoDbClient).putItem(argThat((PutItemRequest put) -> {
+            long expiresAt = Long.parseLong(put.item().get("expiresAt").n());
+            long connectedAt = Long.parseLong(put.item().get("connectedAt").s());
+            return connectedAt >= before && expiresAt == (connectedAt + 30 * 60 * 1000) / 1000;
+        }));
+    }
+
+    @Test
+    void testHeartbeatWithinWriteInterval_AcknowledgedWithoutWrite() throws Exception {
+        mockHeartbeatConnection(System.currentTimeMillis() - 60000);
+
+        for (int i = 0; i < 3; i++) {
+            APIGatewayProxyResponseEvent response = handler.handleRequest(createHeartbeatRequest(), context);
+            assertEquals(200, response.getStatusCode());
+            Map<String, String> responseBody = objectMapper.readValue(response.getBody(), new TypeReference<Map<String, String>>() {});
+            assertEquals("connected", responseBody.get("status"));
+            assertEquals(TEST_PEER_ID, responseBody.get("peerId"));
+        }
+
+        // Only the first heartbeat reads the index, none of them write
+        verify(dynamoDbClient, times(1)).query(any(QueryRequest.class));
+        verify(dynamoDbClient, never()).updateItem(any(UpdateItemRequest.class));
+        verify(dynamoDbClient, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void testHeartbeatPastWriteInterval_RefreshesConnectedAtOnce() throws Exception {
+        mockHeartbeatConnection(System.currentTimeMillis() - 600000);
+
+        assertEquals(200, handler.handleRequest(createHeartbeatRequest(), context).getStatusCode());
+        assertEquals(200, handler.handleRequest(createHeartbeatRequest(), context).getStatusCode());
+
+        verify(dynamoDbClient, times(1)).updateItem(argThat((UpdateItemRequest update) ->
+            "SET connectedAt = :connectedAt, expiresAt = :expiresAt".equals(update.updateExpression())));
+        verify(dynamoDbClient, times(1)).query(any(QueryRequest.class));
+    }
+
+    @Test
+    void testHeartbeatNoConnection() throws Exception {
+        mockHeartbeatConnection(null);
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(createHeartbeatRequest(), context);
+
+        assertEquals(404, response.getStatusCode());
+        assertEquals("No active connection found for this DID", response.getBody());
+    }
+
+    private APIGatewayProxyRequestEvent createHeartbeatRequest() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-DID", TEST_DID);
+        headers.put("X-Subscription-Proof", TEST_PROOF);
+
+        Map<String, String> pathParams = new HashMap<>();
+        pathParams.put("action", "heartbeat");
+
+        return createRequest(headers, pathParams);
+    }
+
+    private void mockHeartbeatConnection(Long connectedAt) {
+        Map<String, AttributeValue> proofItem = new HashMap<>();
+        proofItem.put("expiresAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis() + 3600000)).build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(proofItem).build());
+
+        if (connectedAt == null) {
+            return;
+        }
+        Map<String, AttributeValue> connection = new HashMap<>();
+        connection.put("peerId", AttributeValue.builder().s(TEST_PEER_ID).build());
+        connection.put("connectedAt", AttributeValue.builder().s(String.valueOf(connectedAt)).build());
+        when(dynamoDbClient.query(any(QueryRequest.class)))
+            .thenReturn(QueryResponse.builder().items(Collections.singletonList(connection)).build());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,92 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.ScheduledEvent;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+public class PeerConnectionSweeperTest {
+    private static final String TABLE = "test-peer-connections-table";
+
+    private DynamoDbClient dynamoDbClient;
+    private Context context;
+    private PeerConnectionSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDbClient = mock(DynamoDbClient.class);
+        context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        sweeper = new PeerConnectionSweeper(dynamoDbClient, Map.of("PEER_CONNECTIONS_TABLE", TABLE));
+    }
+
+    @Test
+    void testSweepDeletesExpiredPeersAcrossScanPages() {
+        Map<String, AttributeValue> lastKey = Map.of("peerId", AttributeValue.builder().s("peer-19").build());
+        when(dynamoDbClient.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder().items(peerKeys(0, 20)).lastEvaluatedKey(lastKey).build())
+            .thenReturn(ScanResponse.builder().items(peerKeys(20, 30)).build());
+        when(dynamoDbClient.deleteItem(any(DeleteItemRequest.class)))
+            .thenReturn(DeleteItemResponse.builder().build());
+
+        String result = sweeper.handleRequest(new ScheduledEvent(), context);
+
+        assertEquals("Deleted 30 expired peer connections", result);
+        ArgumentCaptor<DeleteItemRequest> deletes = ArgumentCaptor.forClass(DeleteItemRequest.class);
+        verify(dynamoDbClient, times(30)).deleteItem(deletes.capture());
+        ArgumentCaptor<ScanRequest> scans = ArgumentCaptor.forClass(ScanRequest.class);
+        verify(dynamoDbClient, times(2)).scan(scans.capture());
+        assertEquals(lastKey, scans.getAllValues().get(1).exclusiveStartKey());
+        // The delete repeats the scan's expiry check
+        assertEquals(scans.getValue().filterExpression(), deletes.getValue().conditionExpression());
+        assertEquals(scans.getValue().expressionAttributeValues(), deletes.getValue().expressionAttributeValues());
+    }
+
+    @Test
+    void testSweepKeepsPeersRefreshedAfterScan() {
+        when(dynamoDbClient.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder().items(peerKeys(0, 3)).build());
+        when(dynamoDbClient.deleteItem(any(DeleteItemRequest.class)))
+            .thenReturn(DeleteItemResponse.builder().build())
+            .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build())
+            .thenThrow(ProvisionedThroughputExceededException.builder().message("Rate exceeded").build());
+
+        String result = sweeper.handleRequest(new ScheduledEvent(), context);
+
+        assertEquals("Deleted 1 expired peer connections, kept 1 refreshed since the scan, 1 left for the next sweep", result);
+        verify(dynamoDbClient, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    private static List<Map<String, AttributeValue>> peerKeys(int from, int to) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            items.add(Map.of("peerId", AttributeValue.builder().s("peer-" + i).build()));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,52 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class PeerPresenceCacheTest {
+
+    private AtomicLong now;
+    private PeerPresenceCache cache;
+    private Map<String, AttributeValue> peerItem;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000_000L);
+        cache = new PeerPresenceCache(2, 5_000L, now::get);
+        peerItem = Map.of("peerId", AttributeValue.builder().s("peer-1").build());
+    }
+
+    @Test
+    void get_ServedUntilStalenessBound() {
+        cache.put("peer-1", peerItem);
+
+        now.addAndGet(4_999L);
+        assertSame(peerItem, cache.get("peer-1"));
+
+        now.addAndGet(1L);
+        assertNull(cache.get("peer-1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void put_EvictsLeastRecentlyUsed() {
+        cache.put("peer-1", peerItem);
+        cache.put("peer-2", peerItem);
+        cache.get("peer-1");
+        cache.put("peer-3", peerItem);
+
+        assertEquals(2, cache.size());
+        assertSame(peerItem, cache.get("peer-1"));
+        assertNull(cache.get("peer-2"));
+    }
+}
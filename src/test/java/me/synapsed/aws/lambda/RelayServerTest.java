@@ -11,9 +11,12 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,6 +35,9 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
 
@@ -273,19 +279,18 @@ class RelayServerTest {
         // Mock subscription proofs and peer connections
         Map<String, AttributeValue> proofItem1 = createProofItem(initiatorId, "proof1");
         Map<String, AttributeValue> proofItem2 = createProofItem(responder1Id, "proof2");
-        Map<String, AttributeValue> proofItem3 = createProofItem(responder2Id, "proof3");
         
         Map<String, AttributeValue> peerItem1 = createPeerItem(initiatorId, "conn1", "endpoint1", "connected");
         Map<String, AttributeValue> peerItem2 = createPeerItem(responder1Id, "conn2", "endpoint2", "connected");
         Map<String, AttributeValue> peerItem3 = createPeerItem(responder2Id, "conn3", "endpoint3", "connected");
         
-        // Set up the chain of responses for all DynamoDB calls
+        // Set up the chain of responses for all DynamoDB calls. The initiator's proof is
+        // cached after the first request, so the third request only looks up the peer.
         when(dynamoDbClient.getItem(any(GetItemRequest.class)))
             .thenReturn(GetItemResponse.builder().item(proofItem1).build())
             .thenReturn(GetItemResponse.builder().item(peerItem1).build())
             .thenReturn(GetItemResponse.builder().item(proofItem2).build())
             .thenReturn(GetItemResponse.builder().item(peerItem2).build())
-            .thenReturn(GetItemResponse.builder().item(proofItem3).build())
             .thenReturn(GetItemResponse.builder().item(peerItem3).build());
         
         // Mock SQS message sending
@@ -340,6 +345,150 @@ class RelayServerTest {
         verify(sqsClient, times(3)).sendMessage(any(SendMessageRequest.class));
     }
 
+    @Test
+    void handleRequest_RepeatedProof_ServedFromCache() throws Exception {
+        Map<String, AttributeValue> proofItem = createProofItem("peer1", "proof1");
+        Map<String, AttributeValue> peerItem = createPeerItem("peer2", "conn2", "endpoint2", "connected");
+
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(proofItem).build())
+            .thenReturn(GetItemResponse.builder().item(peerItem).build());
+
+        Map<String, Object> iceData = new HashMap<>();
+        iceData.put("type", "ice-candidate");
+        iceData.put("peerId", "peer2");
+        iceData.put("fromPeerId", "peer1");
+        iceData.put("candidate", "candidate:1234567890 1 udp 2122260223 192.168.1.1 54321 typ host");
+
+        for (int i = 0; i < 3; i++) {
+            APIGatewayProxyResponseEvent response = handler.handleRequest(createRequest(iceData, "peer1", "proof1"), context);
+            assertEquals(200, response.getStatusCode());
+        }
+
+        // One proof lookup plus one peer lookup, both cached for the later requests
+        verify(dynamoDbClient, times(2)).getItem(any(GetItemRequest.class));
+        assertEquals(2, handler.getProofCache().getHits());
+        assertEquals(1, handler.getProofCache().getMisses());
+    }
+
+    @Test
+    void handleRequest_PeerPresence_CachedUntilStalenessBound() throws Exception {
+        AtomicLong now = new AtomicLong(1_000_000L);
+        Field peerPresenceCacheField = RelayServer.class.getDeclaredField("peerPresenceCache");
+        peerPresenceCacheField.setAccessible(true);
+        peerPresenceCacheField.set(handler, new PeerPresenceCache(10, 5_000L, now::get));
+
+        Map<String, AttributeValue> proofItem = createProofItem("peer1", "proof1");
+        Map<String, AttributeValue> peerItem = createPeerItem("peer2", "conn2", "endpoint2", "connected");
+        Map<String, AttributeValue> disconnectedItem = createPeerItem("peer2", "conn2", "endpoint2", "disconnected");
+
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(proofItem).build())
+            .thenReturn(GetItemResponse.builder().item(peerItem).build())
+            .thenReturn(GetItemResponse.builder().item(disconnectedItem).build());
+
+        Map<String, Object> iceData = new HashMap<>();
+        iceData.put("type", "ice-candidate");
+        iceData.put("peerId", "peer2");
+        iceData.put("fromPeerId", "peer1");
+        iceData.put("candidate", "candidate:1234567890 1 udp 2122260223 192.168.1.1 54321 typ host");
+
+        assertEquals(200, handler.handleRequest(createRequest(iceData, "peer1", "proof1"), context).getStatusCode());
+        assertEquals(200, handler.handleRequest(createRequest(iceData, "peer1", "proof1"), context).getStatusCode());
+        assertEquals(1, handler.getPeerPresenceCache().getHits());
+
+        // peer2 disconnects; other signaling sees it once the cached record is older than the bound
+        now.addAndGet(5_000L);
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(createRequest(iceData, "peer1", "proof1"), context);
+        assertEquals(400, response.getStatusCode());
+        assertEquals("Peer is not connected. Current status: disconnected", response.getBody());
+        verify(dynamoDbClient, times(3)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void handleRequest_RejectedProof_NegativelyCached() throws Exception {
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().build());
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("type", "offer");
+        body.put("peerId", "peer2");
+        body.put("sdp", "v=0\r\n...");
+
+        assertEquals(403, handler.handleRequest(createRequest(body, "peer1", "bad-proof"), context).getStatusCode());
+        assertEquals(403, handler.handleRequest(createRequest(body, "peer1", "bad-proof"), context).getStatusCode());
+
+        verify(dynamoDbClient, times(1)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void handleRequest_BatchSignaling_ForwardsInChunksOfTen() throws Exception {
+        Map<String, AttributeValue> proofItem = createProofItem("peer1", "proof1");
+        Map<String, AttributeValue> peerItem = createPeerItem("peer2", "conn2", "endpoint2", "connected");
+
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(proofItem).build())
+            .thenReturn(GetItemResponse.builder().item(peerItem).build());
+        when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+            .thenAnswer(invocation -> {
+                SendMessageBatchRequest batch = invocation.getArgument(0);
+                return SendMessageBatchResponse.builder()
+                    .successful(batch.entries().stream()
+                        .map(entry -> SendMessageBatchResultEntry.builder().id(entry.id()).messageId("msg-" + entry.id()).build())
+                        .collect(Collectors.toList()))
+                    .build();
+            });
+
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Map<String, Object> ice = new HashMap<>();
+            ice.put("type", "ice-candidate");
+            ice.put("peerId", "peer2");
+            ice.put("fromPeerId", "peer1");
+            ice.put("candidate", "candidate:" + i + " 1 udp 2122260223 192.168.1.1 54321 typ host");
+            messages.add(ice);
+        }
+        Map<String, Object> invalid = new HashMap<>();
+        invalid.put("type", "ice-candidate");
+        invalid.put("peerId", "peer2");
+        invalid.put("candidate", "not-a-candidate");
+        messages.add(invalid);
+
+        APIGatewayProxyRequestEvent request = createRequest(Map.of("messages", messages), "peer1", "proof1");
+        request.setPath("/signaling/batch");
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
+
+        assertEquals(200, response.getStatusCode());
+        Map<String, Object> responseBody = objectMapper.readValue(response.getBody(), new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {});
+        assertEquals(12, responseBody.get("forwarded"));
+        assertEquals(1, responseBody.get("failed"));
+        List<Map<String, Object>> results = objectMapper.convertValue(responseBody.get("results"),
+            new com.fasterxml.jackson.core.type.TypeReference<List<Map<String, Object>>>() {});
+        assertEquals(13, results.size());
+        assertEquals("msg-0", results.get(0).get("messageId"));
+        assertEquals(400, results.get(12).get("status"));
+        assertEquals("Invalid ICE candidate format", results.get(12).get("error"));
+
+        // The target peer is looked up once for the whole batch
+        verify(dynamoDbClient, times(2)).getItem(any(GetItemRequest.class));
+        verify(sqsClient, times(2)).sendMessageBatch(any(SendMessageBatchRequest.class));
+        verify(sqsClient, never()).sendMessage(any(SendMessageRequest.class));
+    }
+
+    @Test
+    void handleRequest_BatchSignalingMissingMessages_Returns400() throws Exception {
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(createProofItem("peer1", "proof1")).build());
+
+        APIGatewayProxyRequestEvent request = createRequest(new HashMap<>(), "peer1", "proof1");
+        request.setPath("/signaling/batch");
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
+
+        assertEquals(400, response.getStatusCode());
+        assertEquals("Missing required field: messages", response.getBody());
+    }
+
     @Test
     void testPeerConnectionTimeout() throws Exception {
         String peerId = "peer1";
@@ -371,6 +520,30 @@ class RelayServerTest {
         verify(sqsClient, never()).sendMessage(any(SendMessageRequest.class));
     }
 
+    @Test
+    void testPeerConnectionExpiredByTtlAttribute() throws Exception {
+        Map<String, AttributeValue> proofItem = createProofItem("peer1", "proof1");
+        // connectedAt is recent but the TTL attribute has already passed
+        Map<String, AttributeValue> peerItem = new HashMap<>(createPeerItem("peer2", "conn1", "endpoint1", "connected"));
+        peerItem.put("expiresAt", AttributeValue.builder().n(String.valueOf(System.currentTimeMillis() / 1000 - 1)).build());
+
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(proofItem).build())
+            .thenReturn(GetItemResponse.builder().item(peerItem).build());
+
+        Map<String, Object> iceData = new HashMap<>();
+        iceData.put("type", "ice-candidate");
+        iceData.put("peerId", "peer2");
+        iceData.put("fromPeerId", "peer1");
+        iceData.put("candidate", "candidate:1234567890 1 udp 2122260223 192.168.1.1 54321 typ host");
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(createRequest(iceData, "peer1", "proof1"), context);
+
+        assertEquals(400, response.getStatusCode());
+        assertEquals("Peer connection has timed out", response.getBody());
+        verify(sqsClient, never()).sendMessage(any(SendMessageRequest.class));
+    }
+
     @Test
     void testInvalidPeerState() throws Exception {
         String peerId = "peer1";
@@ -465,6 +638,49 @@ class RelayServerTest {
         assertTrue(hasTurnServer, "Response should include TURN server configuration");
     }
 
+    @Test
+    void handleRequest_WithSharedSecret_IssuesPerDidTurnCredentials() throws Exception {
+        Map<String, String> env = new HashMap<>();
+        env.put("TURN_SERVER", "turn:test-turn-server.com:3478");
+        env.put("TURN_USERNAME", "test-username");
+        env.put("TURN_CREDENTIAL", "test-credential");
+        env.put("TURN_SHARED_SECRET", "test-secret");
+        env.put("TURN_CREDENTIAL_TTL_SECONDS", "600");
+
+        RelayServer newHandler = new RelayServer(env);
+
+        Field dynamoDbClientField = RelayServer.class.getDeclaredField("dynamoDbClient");
+        dynamoDbClientField.setAccessible(true);
+        dynamoDbClientField.set(newHandler, dynamoDbClient);
+
+        Field sqsClientField = RelayServer.class.getDeclaredField("sqsClient");
+        sqsClientField.setAccessible(true);
+        sqsClientField.set(newHandler, sqsClient);
+
+        long before = System.currentTimeMillis() / 1000;
+        APIGatewayProxyResponseEvent response = newHandler.handleRequest(createValidRequest(), context);
+
+        assertEquals(200, response.getStatusCode());
+        Map<String, Object> responseBody = objectMapper.readValue(response.getBody(), new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {});
+        List<Map<String, String>> responseIceServers = objectMapper.convertValue(responseBody.get("iceServers"),
+            new com.fasterxml.jackson.core.type.TypeReference<List<Map<String, String>>>() {});
+
+        Map<String, String> turnServer = responseIceServers.stream()
+            .filter(server -> server.containsKey("username"))
+            .findFirst()
+            .orElseThrow();
+        String username = turnServer.get("username");
+        assertTrue(username.endsWith(":test-did"), "TURN username should be bound to the requesting DID");
+        long expiresAt = Long.parseLong(username.substring(0, username.indexOf(':')));
+        assertTrue(expiresAt >= before + 600 && expiresAt <= System.currentTimeMillis() / 1000 + 600);
+
+        javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA1");
+        mac.init(new javax.crypto.spec.SecretKeySpec("test-secret".getBytes(java.nio.charset.StandardCharsets.UTF_8), "HmacSHA1"));
+        String expectedCredential = java.util.Base64.getEncoder().encodeToString(
+            mac.doFinal(username.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        assertEquals(expectedCredential, turnServer.get("credential"));
+    }
+
     @Test
     void handleRequest_WithOnlyStunServer_IncludesStunServer() throws Exception {
         // Create environment variables with only STUN server configuration
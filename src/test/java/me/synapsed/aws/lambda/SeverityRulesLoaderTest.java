@@ -0,0 +1,103 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.appconfigdata.AppConfigDataClient;
+import software.amazon.awssdk.services.appconfigdata.model.BadRequestException;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationRequest;
+import software.amazon.awssdk.services.appconfigdata.model.GetLatestConfigurationResponse;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionRequest;
+import software.amazon.awssdk.services.appconfigdata.model.StartConfigurationSessionResponse;
+
+class SeverityRulesLoaderTest {
+    private static final String RULES = "{\"alertSeverityRules\": {\"rules\": ["
+        + "{\"source\": \"aws.events\", \"severity\": \"WARNING\"}]}}";
+
+    private AppConfigDataClient appConfigClient;
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private SeverityRulesLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        appConfigClient = mock(AppConfigDataClient.class);
+        loader = new SeverityRulesLoader(appConfigClient, "synapsed-app", "production", "synapsed-config",
+            mock(StructuredLogger.class), now::get);
+        when(appConfigClient.startConfigurationSession(any(StartConfigurationSessionRequest.class)))
+            .thenReturn(StartConfigurationSessionResponse.builder().initialConfigurationToken("token-0").build());
+    }
+
+    private static GetLatestConfigurationResponse configuration(String token, String body) {
+        return GetLatestConfigurationResponse.builder()
+            .nextPollConfigurationToken(token)
+            .nextPollIntervalInSeconds(60)
+            .configuration(SdkBytes.fromUtf8String(body))
+            .build();
+    }
+
+    @Test
+    void rulesPolledNoMoreOftenThanAppConfigAsks() {
+        when(appConfigClient.getLatestConfiguration(any(GetLatestConfigurationRequest.class)))
+            .thenReturn(configuration("token-1", RULES))
+            .thenReturn(configuration("token-2", ""));
+
+        assertEquals("WARNING", loader.rules().classify("aws.events", "Scheduled Event", Map.of()));
+        now.addAndGet(30_000L);
+        SeverityRules rules = loader.rules();
+        now.addAndGet(30_000L);
+
+        // An empty configuration leaves the rules unchanged
+        assertSame(rules, loader.rules());
+        verify(appConfigClient).startConfigurationSession(any(StartConfigurationSessionRequest.class));
+        ArgumentCaptor<GetLatestConfigurationRequest> requests = ArgumentCaptor.forClass(GetLatestConfigurationRequest.class);
+        verify(appConfigClient, times(2)).getLatestConfiguration(requests.capture());
+        assertEquals("token-0", requests.getAllValues().get(0).configurationToken());
+        assertEquals("token-1", requests.getAllValues().get(1).configurationToken());
+    }
+
+    @Test
+    void invalidRulesKeepCurrentRules() {
+        when(appConfigClient.getLatestConfiguration(any(GetLatestConfigurationRequest.class)))
+            .thenReturn(configuration("token-1", RULES))
+            .thenReturn(configuration("token-2", "{\"alertSeverityRules\": {\"rules\": [{\"severity\": \"URGENT\"}]}}"));
+
+        SeverityRules rules = loader.rules();
+        now.addAndGet(60_000L);
+
+        assertSame(rules, loader.rules());
+        assertEquals("WARNING", loader.rules().classify("aws.events", null, Map.of()));
+    }
+
+    @Test
+    void sessionRestartedAfterFailure() {
+        when(appConfigClient.getLatestConfiguration(any(GetLatestConfigurationRequest.class)))
+            .thenThrow(BadRequestException.builder().message("Token expired").build())
+            .thenReturn(configuration("token-1", RULES));
+
+        assertSame(SeverityRules.DEFAULT, loader.rules());
+        now.addAndGet(SeverityRulesLoader.MIN_POLL_INTERVAL_SECONDS * 1000L);
+
+        assertEquals("WARNING", loader.rules().classify("aws.events", null, Map.of()));
+        verify(appConfigClient, times(2)).startConfigurationSession(any(StartConfigurationSessionRequest.class));
+    }
+
+    @Test
+    void builtInRulesWithoutAppConfig() {
+        SeverityRulesLoader unconfigured = new SeverityRulesLoader(null, null, null, null, mock(StructuredLogger.class));
+
+        assertSame(SeverityRules.DEFAULT, unconfigured.rules());
+    }
+}
@@ -0,0 +1,97 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SeverityRulesTest {
+    private static final SeverityRules RULES = SeverityRules.parse("{\"default\": \"INFO\", \"rules\": ["
+        + "{\"source\": \"aws.guardduty\", \"detail\": {\"severity\": [7, 8]}, \"severity\": \"CRITICAL\"},"
+        + "{\"source\": \"aws.guardduty\", \"detail\": {\"severity\": [4, 5, 6]}, \"severity\": \"WARNING\"},"
+        + "{\"source\": \"aws.securityhub\", \"detailType\": \"Security Hub Findings - Imported\","
+        + " \"detail\": {\"findings.0.Severity.Label\": [\"CRITICAL\", \"HIGH\"]}, \"severity\": \"CRITICAL\"},"
+        + "{\"detailType\": \"Security Hub Findings - Imported\", \"severity\": \"WARNING\"},"
+        + "{\"source\": \"aws.config\", \"detail\": {\"newEvaluationResult.complianceType\": \"NON_COMPLIANT\","
+        + " \"configRuleName\": \"s3-bucket-public-read-prohibited\"}, \"severity\": \"CRITICAL\"},"
+        + "{\"source\": \"aws.config\", \"severity\": \"WARNING\"}]}");
+
+    private static Map<String, Object> finding(String label) {
+        return Map.of("findings", List.of(Map.of("Severity", Map.of("Label", label))));
+    }
+
+    @Test
+    void defaultsMatchSourceOnly() {
+        assertEquals("CRITICAL", SeverityRules.DEFAULT.classify("aws.guardduty", "GuardDuty Finding", Map.of()));
+        assertEquals("CRITICAL", SeverityRules.DEFAULT.classify("aws.securityhub", null, null));
+        assertEquals("WARNING", SeverityRules.DEFAULT.classify("aws.config", "Config Rules Compliance Change", Map.of()));
+        assertEquals("INFO", SeverityRules.DEFAULT.classify("aws.events", "Scheduled Event", Map.of()));
+    }
+
+    @Test
+    void detailValuesSelectRule() {
+        assertEquals("CRITICAL", RULES.classify("aws.guardduty", "GuardDuty Finding", Map.of("severity", 8.0)));
+        assertEquals("WARNING", RULES.classify("aws.guardduty", "GuardDuty Finding", Map.of("severity", 5)));
+        assertEquals("INFO", RULES.classify("aws.guardduty", "GuardDuty Finding", Map.of("severity", 2.5)));
+        assertEquals("INFO", RULES.classify("aws.guardduty", "GuardDuty Finding", Map.of()));
+    }
+
+    @Test
+    void dottedPathsIndexListsAndMaps() {
+        String type = "Security Hub Findings - Imported";
+        assertEquals("CRITICAL", RULES.classify("aws.securityhub", type, finding("HIGH")));
+        // Falls through to the rule for any source with this detail-type
+        assertEquals("WARNING", RULES.classify("aws.securityhub", type, finding("LOW")));
+        assertEquals("WARNING", RULES.classify("aws.securityhub", type, Map.of("findings", List.of())));
+        assertEquals("INFO", RULES.classify("aws.securityhub", "Security Hub Insight Results", finding("HIGH")));
+    }
+
+    @Test
+    void everyDetailConditionMustMatch() {
+        Map<String, Object> detail = Map.of(
+            "configRuleName", "s3-bucket-public-read-prohibited",
+            "newEvaluationResult", Map.of("complianceType", "NON_COMPLIANT"));
+        assertEquals("CRITICAL", RULES.classify("aws.config", null, detail));
+        assertEquals("WARNING", RULES.classify("aws.config", null,
+            Map.of("configRuleName", "s3-bucket-public-read-prohibited",
+                "newEvaluationResult", Map.of("complianceType", "COMPLIANT"))));
+    }
+
+    @Test
+    void firstMatchingRuleWinsAcrossBuckets() {
+        SeverityRules rules = SeverityRules.parse("{\"default\": \"warning\", \"rules\": ["
+            + "{\"detail\": {\"environment\": \"dev\"}, \"severity\": \"INFO\"},"
+            + "{\"source\": \"aws.guardduty\", \"severity\": \"CRITICAL\"}]}");
+
+        assertEquals("INFO", rules.classify("aws.guardduty", "GuardDuty Finding", Map.of("environment", "dev")));
+        assertEquals("CRITICAL", rules.classify("aws.guardduty", "GuardDuty Finding", Map.of("environment", "prod")));
+        assertEquals("WARNING", rules.classify("aws.config", null, Map.of()));
+    }
+
+    @Test
+    void configurationWithoutRulesUsesDefaults() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertSame(SeverityRules.DEFAULT,
+            SeverityRules.fromConfiguration(objectMapper.readTree("{\"featureFlags\": {\"newUI\": false}}")));
+        assertEquals(6, SeverityRules.fromConfiguration(objectMapper.readTree(
+            "{\"alertSeverityRules\": {\"rules\": [{}, {}, {}, {}, {}, {}]}}".replace("{}", "{\"severity\": \"INFO\"}"))).size());
+    }
+
+    @Test
+    void malformedRulesRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> SeverityRules.parse("{\"rules\": [{\"source\": \"aws.config\", \"severity\": \"URGENT\"}]}"));
+        assertThrows(IllegalArgumentException.class,
+            () -> SeverityRules.parse("{\"rules\": [{\"source\": \"aws.config\"}]}"));
+        assertThrows(IllegalArgumentException.class,
+            () -> SeverityRules.parse("{\"rules\": [{\"detail\": {\"a\": {\"b\": 1}}, \"severity\": \"INFO\"}]}"));
+        assertThrows(IllegalArgumentException.class,
+            () -> SeverityRules.parse("{\"rules\": {\"severity\": \"INFO\"}}"));
+    }
+}
@@ -0,0 +1,107 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SignalingCodecTest {
+
+    private ObjectMapper objectMapper;
+    private SignalingCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        codec = new SignalingCodec(objectMapper);
+    }
+
+    @Test
+    void readMessage_ValidOffer() throws Exception {
+        SignalingMessage message = codec.readMessage("{\"type\":\"offer\",\"peerId\":\"peer-1\",\"fromPeerId\":\"peer-0\",\"sdp\":\"v=0\\r\\n\"}");
+
+        assertNull(message.validate());
+        assertEquals("offer", message.getType());
+        assertEquals("peer-1", message.getPeerId());
+        assertEquals("peer-0", message.getFromPeerId());
+        assertTrue(message.carriesSessionDescription());
+    }
+
+    @Test
+    void readMessage_ValidationErrors() throws Exception {
+        assertEquals("Missing required fields: type, peerId",
+            codec.readMessage("{\"type\":\"offer\"}").validate());
+        assertEquals("Invalid signaling type: bye",
+            codec.readMessage("{\"type\":\"bye\",\"peerId\":\"peer-1\"}").validate());
+        assertEquals("Missing required field for answer: sdp",
+            codec.readMessage("{\"type\":\"answer\",\"peerId\":\"peer-1\"}").validate());
+        assertEquals("Invalid SDP format for offer",
+            codec.readMessage("{\"type\":\"offer\",\"peerId\":\"peer-1\",\"sdp\":\"o=- 1\"}").validate());
+        assertEquals("Invalid ICE candidate format",
+            codec.readMessage("{\"type\":\"ice-candidate\",\"peerId\":\"peer-1\",\"candidate\":\"typ host\"}").validate());
+        assertEquals("Invalid value for field: peerId",
+            codec.readMessage("{\"type\":\"offer\",\"peerId\":{\"id\":1},\"sdp\":\"v=0\"}").validate());
+    }
+
+    @Test
+    void readMessage_NotAnObject_Throws() {
+        assertThrows(JsonProcessingException.class, () -> codec.readMessage("[1,2]"));
+        assertThrows(JsonProcessingException.class, () -> codec.readMessage("{\"type\":"));
+    }
+
+    @Test
+    void readBatch_NonObjectEntriesReturnedAsNull() throws Exception {
+        List<SignalingMessage> messages = codec.readBatch(
+            "{\"messages\":[{\"type\":\"ice-candidate\",\"peerId\":\"peer-1\",\"candidate\":\"candidate:1\"},\"oops\"]}");
+
+        assertEquals(2, messages.size());
+        assertNull(messages.get(0).validate());
+        assertNull(messages.get(1));
+        assertNull(codec.readBatch("{\"other\":[]}"));
+    }
+
+    @Test
+    void writeForwarded_KeepsExtraFieldsAndOverridesRelayFields() throws Exception {
+        SignalingMessage message = codec.readMessage(
+            "{\"type\":\"offer\",\"peerId\":\"peer-1\",\"sdp\":\"v=0\",\"sdpMid\":\"0\",\"timestamp\":1,\"meta\":{\"a\":[1,2]}}");
+        List<Map<String, String>> iceServers = List.of(Map.of("urls", "stun:stun.l.google.com:19302"));
+
+        // Write twice to make sure the per-thread generator is reused cleanly
+        String iceServersJson = objectMapper.writeValueAsString(iceServers);
+        codec.writeForwarded(message, "peer-1", "conn-0", "endpoint-0", iceServersJson, 41L);
+        String body = codec.writeForwarded(message, "peer-1", "conn-1", "endpoint-1", iceServersJson, 42L);
+
+        Map<String, Object> forwarded = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        assertEquals("0", forwarded.get("sdpMid"));
+        assertEquals(Map.of("a", List.of(1, 2)), forwarded.get("meta"));
+        assertEquals(42, forwarded.get("timestamp"));
+        assertEquals("conn-1", forwarded.get("targetConnectionId"));
+        assertEquals("endpoint-1", forwarded.get("targetEndpoint"));
+        assertEquals(true, forwarded.get("attemptDirectConnection"));
+        assertEquals(iceServers, forwarded.get("iceServers"));
+    }
+
+    @Test
+    void writeForwarded_IceCandidateHasNoIceServers() throws Exception {
+        SignalingMessage message = codec.readMessage(
+            "{\"type\":\"ice-candidate\",\"peerId\":\"peer-1\",\"candidate\":\"candidate:1 1 udp 1 10.0.0.1 5000 typ host\"}");
+
+        String body = codec.writeForwarded(message, "peer-1", "conn-1", "endpoint-1",
+            "[{\"urls\":\"stun:stun.l.google.com:19302\"}]", 42L);
+
+        Map<String, Object> forwarded = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        assertFalse(forwarded.containsKey("iceServers"));
+        assertFalse(forwarded.containsKey("attemptDirectConnection"));
+    }
+}
@@ -0,0 +1,77 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StructuredLoggerTest {
+    private Context context;
+    private ByteArrayOutputStream out;
+    private StructuredLogger logger;
+
+    @BeforeEach
+    void setUp() {
+        context = mock(Context.class);
+        when(context.getAwsRequestId()).thenReturn("test-request");
+        out = new ByteArrayOutputStream();
+        logger = new StructuredLogger("alert-router",
+            new PrintStream(out, true, StandardCharsets.UTF_8), () -> 1_700_000_000_000L);
+    }
+
+    private static Map<String, Object> parse(String entry) throws Exception {
+        return new ObjectMapper().readValue(entry, new TypeReference<Map<String, Object>>() {});
+    }
+
+    private String[] lines() {
+        return out.toString(StandardCharsets.UTF_8).split("\\R");
+    }
+
+    @Test
+    void testEntriesWrittenToStdout() throws Exception {
+        logger.begin(context);
+        logger.info("Routing alert");
+        logger.warn("Retrying alert");
+        logger.error("Failed to route alert");
+
+        String[] lines = lines();
+        assertEquals(3, lines.length);
+        Map<String, Object> entry = parse(lines[0]);
+        assertEquals(1_700_000_000_000L, ((Number) entry.get("timestamp")).longValue());
+        assertEquals("INFO", entry.get("level"));
+        assertEquals("alert-router", entry.get("service"));
+        assertEquals("Routing alert", entry.get("message"));
+        assertEquals("test-request", entry.get("request_id"));
+        assertEquals("WARN", parse(lines[1]).get("level"));
+        assertEquals("ERROR", parse(lines[2]).get("level"));
+    }
+
+    @Test
+    void testEntriesWithoutInvocationOmitRequestId() throws Exception {
+        logger.info("Cold start");
+
+        assertFalse(parse(lines()[0]).containsKey("request_id"));
+    }
+
+    @Test
+    void testLongMessagesTruncated() throws Exception {
+        logger.info("x".repeat(StructuredLogger.MAX_MESSAGE_CHARS * 2));
+
+        String message = (String) parse(lines()[0]).get("message");
+        assertTrue(message.length() <= StructuredLogger.MAX_MESSAGE_CHARS + 3);
+        assertTrue(message.endsWith("..."));
+    }
+}
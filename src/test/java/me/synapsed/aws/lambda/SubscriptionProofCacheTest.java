@@ -0,0 +1,73 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SubscriptionProofCacheTest {
+
+    private AtomicLong now;
+    private SubscriptionProofCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000_000L);
+        cache = new SubscriptionProofCache(2, 60_000L, 5_000L, now::get);
+    }
+
+    @Test
+    void validProof_CachedUntilExpiresAt() {
+        cache.putValid("did-1", "proof-1", now.get() + 10_000L);
+
+        assertTrue(cache.get("did-1", "proof-1"));
+
+        now.addAndGet(10_000L);
+        assertNull(cache.get("did-1", "proof-1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void validProof_CappedByMaxTtl() {
+        cache.putValid("did-1", "proof-1", now.get() + 24 * 60 * 60 * 1000L);
+
+        now.addAndGet(60_000L);
+        assertNull(cache.get("did-1", "proof-1"));
+    }
+
+    @Test
+    void rejectedProof_CachedForNegativeTtl() {
+        cache.putRejected("did-1", "bad-proof");
+
+        assertFalse(cache.get("did-1", "bad-proof"));
+
+        now.addAndGet(5_000L);
+        assertNull(cache.get("did-1", "bad-proof"));
+    }
+
+    @Test
+    void alreadyExpiredProof_CachedAsRejected() {
+        cache.putValid("did-1", "proof-1", now.get() - 1);
+
+        assertFalse(cache.get("did-1", "proof-1"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntry_EvictedWhenFull() {
+        cache.putValid("did-1", "proof-1", now.get() + 10_000L);
+        cache.putValid("did-2", "proof-2", now.get() + 10_000L);
+        cache.get("did-1", "proof-1");
+        cache.putValid("did-3", "proof-3", now.get() + 10_000L);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.get("did-1", "proof-1"));
+        assertNull(cache.get("did-2", "proof-2"));
+    }
+}
@@ -0,0 +1,120 @@
+package me.synapsed.aws.lambda;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+class TurnCredentialGeneratorTest {
+
+    private static final byte[] SECRET = "test-secret".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void generate_FollowsTurnRestApiScheme() throws Exception {
+        AtomicLong now = new AtomicLong(1_700_000_000_500L);
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(() -> SECRET, 600, now::get);
+
+        TurnCredentialGenerator.Credentials credentials = generator.generate("did:key:alice");
+
+        assertEquals(1_700_000_600L, credentials.expiresAt());
+        assertEquals("1700000600:did:key:alice", credentials.username());
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(SECRET, "HmacSHA1"));
+        assertEquals(Base64.getEncoder().encodeToString(mac.doFinal(credentials.username().getBytes(StandardCharsets.UTF_8))),
+            credentials.credential());
+    }
+
+    @Test
+    void generate_ReusesMacAcrossCalls() {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        AtomicInteger secretLoads = new AtomicInteger();
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(() -> {
+            secretLoads.incrementAndGet();
+            return SECRET;
+        }, 600, now::get);
+
+        TurnCredentialGenerator.Credentials first = generator.generate("did:key:alice");
+        assertEquals(first, generator.generate("did:key:alice"));
+
+        now.addAndGet(1000L);
+        assertNotEquals(first.credential(), generator.generate("did:key:alice").credential());
+        assertEquals(1, secretLoads.get());
+    }
+
+    @Test
+    void generate_FailedSecretLoadRetriedAfterInterval() {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        AtomicInteger secretLoads = new AtomicInteger();
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(() -> {
+            if (secretLoads.incrementAndGet() == 1) {
+                throw new IllegalStateException("ThrottlingException");
+            }
+            return SECRET;
+        }, 600, now::get);
+
+        assertThrows(IllegalStateException.class, () -> generator.generate("did:key:alice"));
+        assertThrows(IllegalStateException.class, () -> generator.generate("did:key:alice"));
+        assertEquals(1, secretLoads.get());
+
+        now.addAndGet(TurnCredentialGenerator.RETRY_INTERVAL_MS);
+        assertEquals("1700000630:did:key:alice", generator.generate("did:key:alice").username());
+        assertEquals(2, secretLoads.get());
+    }
+
+    @Test
+    void generate_RotatedSecretPickedUpAfterRefreshInterval() throws Exception {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        AtomicReference<byte[]> secret = new AtomicReference<>(SECRET);
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(secret::get, 600, now::get);
+        generator.generate("did:key:alice");
+
+        byte[] rotated = "rotated-secret".getBytes(StandardCharsets.UTF_8);
+        secret.set(rotated);
+        now.addAndGet(TurnCredentialGenerator.KEY_REFRESH_INTERVAL_MS - 1);
+        assertEquals(sign(SECRET, generator.generate("did:key:alice").username()),
+            generator.generate("did:key:alice").credential());
+
+        now.addAndGet(1);
+        TurnCredentialGenerator.Credentials credentials = generator.generate("did:key:alice");
+        assertEquals(sign(rotated, credentials.username()), credentials.credential());
+    }
+
+    @Test
+    void generate_FailedReloadKeepsLoadedSecret() throws Exception {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        AtomicInteger secretLoads = new AtomicInteger();
+        TurnCredentialGenerator generator = new TurnCredentialGenerator(() -> {
+            if (secretLoads.incrementAndGet() == 2) {
+                throw new IllegalStateException("ThrottlingException");
+            }
+            return SECRET;
+        }, 600, now::get);
+        generator.generate("did:key:alice");
+
+        now.addAndGet(TurnCredentialGenerator.KEY_REFRESH_INTERVAL_MS);
+        TurnCredentialGenerator.Credentials credentials = generator.generate("did:key:alice");
+        assertEquals(sign(SECRET, credentials.username()), credentials.credential());
+        generator.generate("did:key:alice");
+        assertEquals(2, secretLoads.get());
+
+        now.addAndGet(TurnCredentialGenerator.RETRY_INTERVAL_MS);
+        generator.generate("did:key:alice");
+        assertEquals(3, secretLoads.get());
+    }
+
+    private static String sign(byte[] secret, String username) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(secret, "HmacSHA1"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(username.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -97,6 +97,57 @@ public class AlertingStackTest {
             "MemorySize", 256
         )));
         
+        template.hasResourceProperties("AWS::Lambda::Function", Match.objectLike(Map.of(
+            "Handler", "me.synapsed.aws.lambda.AlertAnalytics::handleRequest",
+            "Timeout", 300,
+            "Environment", Match.objectLike(Map.of(
+                "Variables", Match.objectLike(Map.of(
+                    "ALERT_COUNTERS_TABLE", Match.anyValue(),
+                    "ANALYTICS_WINDOW_HOURS", "24",
+                    "ALERT_SCAN_MAX_IN_FLIGHT", "64"
+                ))
+            ))
+        )));
+        
+        // Verify alerts are archived through Firehose into hourly partitions
+        template.hasResourceProperties("AWS::KinesisFirehose::DeliveryStream", Match.objectLike(Map.of(
+            "DeliveryStreamName", "synapsed-alert-archive",
+            "ExtendedS3DestinationConfiguration", Match.objectLike(Map.of(
+                "Prefix", AlertingStack.ALERT_ARCHIVE_PREFIX,
+                "CompressionFormat", "GZIP"
+            ))
+        )));
+        
+        template.hasResourceProperties("AWS::Lambda::Function", Match.objectLike(Map.of(
+            "Handler", "me.synapsed.aws.lambda.AlertRouter::handleRequest",
+            "Environment", Match.objectLike(Map.of(
+                "Variables", Match.objectLike(Map.of(
+                    "ALERT_ARCHIVE_STREAM", Match.anyValue(),
+                    "ALERT_COUNTERS_TABLE", Match.anyValue(),
+                    "APPCONFIG_APPLICATION", "synapsed-app",
+                    "APPCONFIG_ENVIRONMENT", "production",
+                    "APPCONFIG_PROFILE", "synapsed-config"
+                ))
+            )),
+            // Structured entries go to stdout and reach the audit log group through the runtime
+            "LoggingConfig", Match.objectLike(Map.of(
+                "LogGroup", Match.anyValue()
+            ))
+        )));
+
+        // Verify the alert counters table
+        template.hasResourceProperties("AWS::DynamoDB::Table", Match.objectLike(Map.of(
+            "TableName", "synapsed-alert-counters",
+            "KeySchema", List.of(
+                Map.of("AttributeName", "hourKey", "KeyType", "HASH"),
+                Map.of("AttributeName", "minuteKey", "KeyType", "RANGE")
+            ),
+            "TimeToLiveSpecification", Map.of(
+                "AttributeName", "expiresAt",
+                "Enabled", true
+            )
+        )));
+        
         // Verify Step Functions State Machine
         template.hasResourceProperties("AWS::StepFunctions::StateMachine", Match.objectLike(Map.of(
             "StateMachineName", "AlertWorkflow"
@@ -123,7 +174,48 @@ public class AlertingStackTest {
             ))
         )));
         
-        // Verify Alert Processing Rule
+        // Verify actionable findings are queued for AlertRouter as they are published
+        template.hasResourceProperties("AWS::Events::Rule", Match.objectLike(Map.of(
+            "EventPattern", Map.of(
+                "source", List.of("aws.securityhub"),
+                "detail-type", List.of("Security Hub Findings - Imported"),
+                "detail", Map.of("findings", Map.of(
+                    "Severity", Map.of("Label", List.of("CRITICAL", "HIGH", "MEDIUM")),
+                    "RecordState", List.of("ACTIVE")))
+            ),
+            "Targets", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                "Arn", Match.objectLike(Map.of("Fn::GetAtt", Match.arrayWith(List.of("Arn"))))
+            ))))
+        )));
+
+        template.hasResourceProperties("AWS::Events::Rule", Match.objectLike(Map.of(
+            "EventPattern", Map.of(
+                "source", List.of("aws.guardduty"),
+                "detail-type", List.of("GuardDuty Finding"),
+                "detail", Map.of("severity", List.of(Map.of("numeric", List.of(">=", 4))))
+            )
+        )));
+
+        template.hasResourceProperties("AWS::Events::Rule", Match.objectLike(Map.of(
+            "EventPattern", Map.of(
+                "source", List.of("aws.config"),
+                "detail-type", List.of("Config Rules Compliance Change"),
+                "detail", Map.of("newEvaluationResult", Map.of("complianceType", List.of("NON_COMPLIANT")))
+            )
+        )));
+        
+        template.hasResourceProperties("AWS::SQS::Queue", Match.objectLike(Map.of(
+            "VisibilityTimeout", 360,
+            "RedrivePolicy", Match.objectLike(Map.of("maxReceiveCount", 5))
+        )));
+        
+        template.hasResourceProperties("AWS::Lambda::EventSourceMapping", Match.objectLike(Map.of(
+            "BatchSize", 100,
+            "MaximumBatchingWindowInSeconds", 1,
+            "FunctionResponseTypes", List.of("ReportBatchItemFailures")
+        )));
+        
+        // Verify the analytics schedule
         template.hasResourceProperties("AWS::Events::Rule", Match.objectLike(Map.of(
             "ScheduleExpression", "rate(5 minutes)"
         )));
@@ -76,11 +76,36 @@ class LoggingStackTest {
                 "KeyType", "CUSTOMER_MANAGED_CMK",
                 "KeyARN", Match.anyValue()
             )),
-            "S3DestinationConfiguration", Match.objectLike(Map.of(
+            "ExtendedS3DestinationConfiguration", Match.objectLike(Map.of(
                 "BufferingHints", Match.objectLike(Map.of(
                     "IntervalInSeconds", 300,
-                    "SizeInMBs", 5
+                    "SizeInMBs", 64
                 )),
+                "DynamicPartitioningConfiguration", Match.objectLike(Map.of(
+                    "Enabled", true
+                )),
+                "Prefix", LoggingStack.LOG_PARTITION_PREFIX,
+                "ProcessingConfiguration", Match.objectLike(Map.of(
+                    "Enabled", true,
+                    "Processors", Match.arrayWith(List.of(
+                        Match.objectLike(Map.of("Type", "RecordDeAggregation")),
+                        Match.objectLike(Map.of("Type", "MetadataExtraction"))
+                    ))
+                )),
+                "DataFormatConversionConfiguration", Match.objectLike(Map.of(
+                    "Enabled", true,
+                    "OutputFormatConfiguration", Match.objectLike(Map.of(
+                        "Serializer", Match.objectLike(Map.of(
+                            "ParquetSerDe", Match.objectLike(Map.of(
+                                "Compression", "SNAPPY"
+                            ))
+                        ))
+                    )),
+                    "SchemaConfiguration", Match.objectLike(Map.of(
+                        "VersionId", "LATEST"
+                    ))
+                )),
+                "CompressionFormat", "UNCOMPRESSED",
                 "EncryptionConfiguration", Match.objectLike(Map.of(
                     "KMSEncryptionConfig", Match.objectLike(Map.of(
                         "AWSKMSKeyARN", Match.anyValue()
@@ -89,6 +114,72 @@ class LoggingStackTest {
             ))
         )));
 
+        // Test Glue table with partition projection over the Firehose prefix layout
+        template.hasResourceProperties("AWS::Glue::Table", Match.objectLike(Map.of(
+            "TableInput", Match.objectLike(Map.of(
+                "Name", LoggingStack.LOG_TABLE_NAME,
+                "PartitionKeys", List.of(
+                    Map.of("Name", "category", "Type", "string"),
+                    Map.of("Name", "service", "Type", "string"),
+                    Map.of("Name", "level", "Type", "string"),
+                    Map.of("Name", "dt", "Type", "string"),
+                    Map.of("Name", "hour", "Type", "string")
+                ),
+                "Parameters", Match.objectLike(Map.of(
+                    "classification", "parquet",
+                    "projection.enabled", "true",
+                    "projection.category.values", "application,security,audit,performance",
+                    "projection.hour.digits", "2"
+                )),
+                "StorageDescriptor", Match.objectLike(Map.of(
+                    "Columns", Match.arrayWith(List.of(
+                        Map.of("Name", "timestamp", "Type", "bigint"),
+                        Map.of("Name", "latency_ms", "Type", "double"),
+                        Map.of("Name", "attributes", "Type", "string")
+                    )),
+                    "SerdeInfo", Map.of(
+                        "SerializationLibrary", "org.apache.hadoop.hive.ql.io.parquet.serde.ParquetHiveSerDe"
+                    )
+                ))
+            ))
+        )));
+
+        // Test Kinesis log stream
+        template.hasResourceProperties("AWS::Kinesis::Stream", Match.objectLike(Map.of(
+            "ShardCount", 2,
+            "StreamEncryption", Match.objectLike(Map.of(
+                "EncryptionType", "KMS"
+            ))
+        )));
+
+        // Test log processor and its Kinesis event source mapping
+        template.hasResourceProperties("AWS::Lambda::Function", Match.objectLike(Map.of(
+            "Handler", "me.synapsed.aws.lambda.LogProcessor",
+            "Runtime", "java17",
+            "Environment", Match.objectLike(Map.of(
+                "Variables", Match.objectLike(Map.of(
+                    "RECORD_AGGREGATION_MAX_BYTES", "262144",
+                    "FIREHOSE_MAX_IN_FLIGHT", "4",
+                    "LOG_PARTITION_SERVICES", String.join(",", LoggingStack.LOG_SERVICES),
+                    "DEDUP_WINDOW_RECORDS", "100000"
+                ))
+            ))
+        )));
+
+        template.hasResourceProperties("AWS::Lambda::EventSourceMapping", Match.objectLike(Map.of(
+            "BatchSize", 500,
+            "ParallelizationFactor", 10,
+            "BisectBatchOnFunctionError", true,
+            "FunctionResponseTypes", List.of("ReportBatchItemFailures"),
+            "MaximumRetryAttempts", 10,
+            "StartingPosition", "TRIM_HORIZON",
+            "DestinationConfig", Match.objectLike(Map.of(
+                "OnFailure", Match.objectLike(Map.of(
+                    "Destination", Match.anyValue()
+                ))
+            ))
+        )));
+
         // Test CloudWatch log groups
         template.hasResourceProperties("AWS::Logs::LogGroup", Match.objectLike(Map.of(
             "RetentionInDays", 30
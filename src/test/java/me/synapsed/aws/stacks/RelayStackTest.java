@@ -1,6 +1,8 @@
 package me.synapsed.aws.stacks;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -10,7 +12,11 @@ import org.junit.jupiter.api.Test;
 import software.amazon.awscdk.App;
 import software.amazon.awscdk.StackProps;
 import software.amazon.awscdk.assertions.Match;
+import software.amazon.awscdk.assertions.Matcher;
 import software.amazon.awscdk.assertions.Template;
+import software.amazon.awscdk.services.iam.Role;
+import software.amazon.awscdk.services.iam.RoleProps;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
 
 public class RelayStackTest {
     @Test
@@ -31,6 +37,16 @@ public class RelayStackTest {
                 "EnableDnsSupport", true
             )));
 
+        // Verify the relay function can reach Parameter Store without a NAT gateway
+        template.hasResourceProperties("AWS::EC2::VPCEndpoint",
+            Match.objectLike(Map.of(
+                "VpcEndpointType", "Interface",
+                "PrivateDnsEnabled", true,
+                "ServiceName", Map.of("Fn::Join", Match.arrayWith(Arrays.asList(
+                    Match.arrayWith(Arrays.asList(".ssm"))
+                )))
+            )));
+
         // Verify Security Group
         template.hasResourceProperties("AWS::EC2::SecurityGroup", 
             Match.objectLike(Map.of(
@@ -78,6 +94,23 @@ public class RelayStackTest {
                 "Timeout", 30
             )));
 
+        // Verify TURN credentials are signed with a generated shared secret, the only TURN credential source
+        template.hasResourceProperties("AWS::SecretsManager::Secret",
+            Match.objectLike(Map.of(
+                "Name", RelayStack.TURN_SHARED_SECRET_NAME
+            )));
+        template.hasResourceProperties("AWS::Lambda::Function",
+            Match.objectLike(Map.of(
+                "Handler", "me.synapsed.aws.lambda.RelayServer",
+                "Environment", Match.objectLike(Map.of(
+                    "Variables", Match.objectLike(Map.of(
+                        "TURN_SHARED_SECRET_PARAMETER", RelayStack.TURN_SHARED_SECRET_PARAMETER,
+                        "TURN_CREDENTIAL_PARAMETER", Match.absent(),
+                        "TURN_USERNAME", Match.absent()
+                    ))
+                ))
+            )));
+
         // Verify Lambda Alias
         template.hasResourceProperties("AWS::Lambda::Alias",
             Match.objectLike(Map.of(
@@ -118,10 +151,80 @@ public class RelayStackTest {
                 "AuthorizationType", "NONE"
             )));
 
+        // Verify batch signaling resource
+        template.hasResourceProperties("AWS::ApiGateway::Resource",
+            Match.objectLike(Map.of(
+                "PathPart", "batch"
+            )));
+
+        // Verify the DID index projects only what the DID lookup reads
+        template.hasResourceProperties("AWS::DynamoDB::Table",
+            Match.objectLike(Map.of(
+                "TableName", "synapsed-peer-connections",
+                "TimeToLiveSpecification", Map.of(
+                    "AttributeName", "expiresAt",
+                    "Enabled", true
+                ),
+                "GlobalSecondaryIndexes", Match.arrayWith(Arrays.asList(
+                    Match.objectLike(Map.of(
+                        "IndexName", "DidIndex",
+                        "Projection", Map.of(
+                            "ProjectionType", "INCLUDE",
+                            "NonKeyAttributes", Arrays.asList("connectedAt", "expiresAt")
+                        )
+                    ))
+                ))
+            )));
+
+        // Verify the relay function is not allowed to query the DID index
+        assertEquals(0, template.findResources("AWS::IAM::Policy", didIndexQuery()).size());
+
+        // Verify the scheduled sweeper for expired peer connections
+        template.hasResourceProperties("AWS::Lambda::Function",
+            Match.objectLike(Map.of(
+                "Handler", "me.synapsed.aws.lambda.PeerConnectionSweeper"
+            )));
+        template.hasResourceProperties("AWS::Events::Rule",
+            Match.objectLike(Map.of(
+                "ScheduleExpression", "rate(15 minutes)"
+            )));
+
         // Verify stack outputs
         assertNotNull(stack.getRelayFunction());
         assertNotNull(stack.getRelayApi());
         assertNotNull(stack.getRelayRole());
         assertNotNull(stack.getRelayLogGroup());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDidIndexQueryGrant() {
+        App app = new App();
+        SecurityStack securityStack = new SecurityStack(app, "SecurityStack", StackProps.builder().build());
+        LoggingStack loggingStack = new LoggingStack(app, "LoggingStack");
+        RelayStack stack = new RelayStack(app, "RelayStack", StackProps.builder().build(), securityStack, loggingStack);
+        Role connectionsRole = new Role(stack, "ConnectionsRole", RoleProps.builder()
+            .assumedBy(new ServicePrincipal("lambda.amazonaws.com"))
+            .build());
+
+        stack.grantDidIndexQuery(connectionsRole);
+
+        Map<String, Map<String, Object>> policies = Template.fromStack(stack)
+            .findResources("AWS::IAM::Policy", didIndexQuery());
+        assertEquals(1, policies.size());
+        assertTrue(policies.keySet().iterator().next().startsWith("ConnectionsRole"));
+    }
+
+    private static Matcher didIndexQuery() {
+        return Match.objectLike(Map.of(
+            "Properties", Match.objectLike(Map.of(
+                "PolicyDocument", Match.objectLike(Map.of(
+                    "Statement", Match.arrayWith(Arrays.asList(
+                        Match.objectLike(Map.of(
+                            "Action", "dynamodb:Query"
+                        ))
+                    ))
+                ))
+            ))
+        ));
+    }
+}